@@ -0,0 +1,118 @@
+package com.example.lawrence.addressbook;
+
+import android.content.ContentValues;
+import android.os.SystemClock;
+import android.support.v7.widget.RecyclerView;
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import com.example.lawrence.addressbook.data.DatabaseDescription.Contact;
+
+/**
+ * Shows the contact list with each of ContactsFragment's loading modes, and checks that
+ * its rows show the right contacts at the top, middle and bottom of the list.
+ * The list is put in MainActivity in place of its own, and reads a database of the
+ * test's own (see {@link IsolatedAddressBook}).
+ */
+public class ContactListLoadingTest extends InstrumentationTestCase {
+
+    private static final String TAG = "ContactListLoadingTest";
+    private static final String DATABASE_NAME = "contact_list_loading_test.db";
+
+    // several of ContactPager's pages, so the bottom of the list is a page never read yet
+    private static final int CONTACTS = ContactPager.PAGE_SIZE * 10 + 1;
+
+    private static final long ROW_TIMEOUT_MILLIS = 10000;
+
+    private IsolatedAddressBook mAddressBook;
+    private MainActivity mActivity;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mAddressBook = new IsolatedAddressBook(getInstrumentation().getTargetContext(), DATABASE_NAME);
+        mAddressBook.open();
+        mAddressBook.addContacts(CONTACTS);
+        mActivity = launchActivity(getInstrumentation().getTargetContext().getPackageName(),
+            MainActivity.class, null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mActivity.finish();
+        getInstrumentation().waitForIdleSync();
+        mAddressBook.close();
+        super.tearDown();
+    }
+
+    public void testCursorLoading() throws Exception {
+        checkList(ContactsFragment.CURSOR_LOADING);
+    }
+
+    public void testPagedLoading() throws Exception {
+        checkList(ContactsFragment.PAGED_LOADING);
+    }
+
+    public void testSnapshotLoading() throws Exception {
+        RecyclerView list = checkList(ContactsFragment.SNAPSHOT_LOADING);
+
+        // ContactSnapshotLoader reloads when the contacts change, and the adapter
+        // swaps the new snapshot in
+        ContentValues values = new ContentValues();
+        values.put(Contact.COLUMN_NAME, IsolatedAddressBook.contactName(CONTACTS));
+        getInstrumentation().getTargetContext().getContentResolver().insert(Contact.CONTENT_URI, values);
+        assertRowShows(list, CONTACTS);
+    }
+
+    // show a list loaded with listLoading, check its rows, and return it
+    private RecyclerView checkList(int listLoading) throws Exception {
+        final ContactsFragment fragment = ContactsFragment.newInstance(listLoading);
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run(){
+                // the phone layout's only pane, or the tablet layout's right-hand one
+                int container = mActivity.findViewById(R.id.fragmentContainer) != null
+                    ? R.id.fragmentContainer : R.id.rightPaneContainer;
+                mActivity.getSupportFragmentManager().beginTransaction()
+                    .replace(container, fragment).commit();
+                mActivity.getSupportFragmentManager().executePendingTransactions();
+            }
+        });
+
+        RecyclerView list = (RecyclerView) fragment.getView().findViewById(R.id.recyclerView);
+        long start = SystemClock.uptimeMillis();
+        assertRowShows(list, 0);
+        assertRowShows(list, CONTACTS - 1);
+        assertRowShows(list, CONTACTS / 2);
+        Log.i(TAG, "list loading " + listLoading + " checked in " +
+            (SystemClock.uptimeMillis() - start) + " ms");
+        return list;
+    }
+
+    // scroll list to position, and wait for the row there to show its contact's name
+    private void assertRowShows(final RecyclerView list, final int position) throws InterruptedException {
+        String expected = IsolatedAddressBook.contactName(position);
+        final String[] shown = new String[1];
+        long deadline = SystemClock.uptimeMillis() + ROW_TIMEOUT_MILLIS;
+        do {
+            getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run(){
+                    // the list may still be empty, or only show the startup snapshot
+                    if( list.getAdapter().getItemCount() > position ){
+                        list.scrollToPosition(position);
+                    }
+                    ContactsAdapter.ViewHolder holder =
+                        (ContactsAdapter.ViewHolder) list.findViewHolderForAdapterPosition(position);
+                    shown[0] = holder == null ? null : holder.textView.getText().toString();
+                }
+            });
+            if( expected.equals(shown[0]) ){
+                return;
+            }
+            Thread.sleep(50);
+        } while( SystemClock.uptimeMillis() < deadline );
+
+        fail("row " + position + " shows " + shown[0] + " rather than " + expected);
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.lawrence.addressbook;
+
+import android.content.ContentProviderClient;
+import android.content.ContentValues;
+import android.content.Context;
+
+import com.example.lawrence.addressbook.data.AddressBookContentProvider;
+import com.example.lawrence.addressbook.data.DatabaseDescription;
+import com.example.lawrence.addressbook.data.DatabaseDescription.Contact;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Points the app's provider at a database of a test's own, so tests that drive the app's
+ * screens leave the user's contacts alone, and puts the user's startup snapshot back
+ * afterwards, since the contact list saves one whenever it loads.
+ * Call {@link #open()} in setUp() and {@link #close()} in tearDown().
+ */
+class IsolatedAddressBook {
+
+    private final Context mContext;
+    private final String mDatabaseName;
+
+    private ContentProviderClient mProviderClient;
+    private AddressBookContentProvider mProvider;
+
+    // the user's startup snapshot, or null if there was none
+    private byte[] mSavedSnapshot;
+
+    IsolatedAddressBook(Context context, String databaseName){
+        mContext = context;
+        mDatabaseName = databaseName;
+    }
+
+    // switch the provider to an empty database named databaseName
+    void open() throws IOException {
+        mSavedSnapshot = readFile(StartupSnapshot.getFile(mContext));
+
+        mContext.deleteDatabase(mDatabaseName);
+        mProviderClient = mContext.getContentResolver().acquireContentProviderClient(DatabaseDescription.AUTHORITY);
+        mProvider = (AddressBookContentProvider) mProviderClient.getLocalContentProvider();
+        mProvider.useDatabase(mDatabaseName);
+    }
+
+    // add count contacts named "Contact 00000", "Contact 00001" and so on, which is
+    // also the order the list shows them in
+    void addContacts(int count){
+        ContentValues[] values = new ContentValues[count];
+        for( int i = 0; i < count; ++i ){
+            values[i] = new ContentValues();
+            values[i].put(Contact.COLUMN_NAME, contactName(i));
+            values[i].put(Contact.COLUMN_PHONE, "555-" + i);
+        }
+        mContext.getContentResolver().bulkInsert(Contact.CONTENT_URI, values);
+    }
+
+    static String contactName(int i){
+        return String.format("Contact %05d", i);
+    }
+
+    // switch the provider back to the app's database, and put the user's snapshot back
+    void close() throws IOException {
+        if( mProvider != null ){
+            mProvider.useDatabase(null);
+            mProviderClient.release();
+            mProvider = null;
+        }
+        mContext.deleteDatabase(mDatabaseName);
+
+        StartupSnapshot.delete(mContext);
+        if( mSavedSnapshot != null ){
+            writeFile(StartupSnapshot.getFile(mContext), mSavedSnapshot);
+        }
+    }
+
+    // the contents of file, or null if it doesn't exist
+    private static byte[] readFile(File file) throws IOException {
+        if( !file.exists() ){
+            return null;
+        }
+        byte[] bytes = new byte[(int) file.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(bytes);
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+
+    private static void writeFile(File file, byte[] bytes) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+}
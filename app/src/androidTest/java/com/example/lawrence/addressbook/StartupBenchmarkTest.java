@@ -0,0 +1,88 @@
+package com.example.lawrence.addressbook;
+
+import android.app.Activity;
+import android.content.Context;
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import java.util.Arrays;
+
+/**
+ * Time to first list frame: how long MainActivity takes from being created to drawing
+ * the contact list with contacts in it, with and without a {@link StartupSnapshot}.
+ * Each launch time and the medians are written to logcat under the "StartupBenchmark" tag.
+ * <p>
+ * The launches run in the test's process, which is already up with its database open,
+ * so they measure a warm start. For a cold start, kill the app and launch it with
+ * {@code adb shell am start -W}, then read the "Startup" tag's "first list frame" line.
+ * <p>
+ * The app's provider is pointed at a database of the test's own while it runs, and the
+ * user's startup snapshot is put back afterwards, so the user's data is left as it was.
+ */
+public class StartupBenchmarkTest extends InstrumentationTestCase {
+
+    private static final String TAG = "StartupBenchmark";
+    private static final String DATABASE_NAME = "startup_benchmark_test.db";
+
+    private static final int CONTACTS = 2000;
+    private static final int LAUNCHES = 5;
+    private static final long FIRST_FRAME_TIMEOUT_MILLIS = 10000;
+
+    private Context mContext;
+    private IsolatedAddressBook mAddressBook;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext = getInstrumentation().getTargetContext();
+        mAddressBook = new IsolatedAddressBook(mContext, DATABASE_NAME);
+        mAddressBook.open();
+        mAddressBook.addContacts(CONTACTS);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mAddressBook.close();
+        super.tearDown();
+    }
+
+    public void testTimeToFirstListFrame() throws Exception {
+        launch(); // warm up: loads the classes and saves a startup snapshot
+
+        long[] withoutSnapshot = new long[LAUNCHES];
+        for( int i = 0; i < LAUNCHES; ++i ){
+            StartupSnapshot.delete(mContext);
+            withoutSnapshot[i] = launch();
+        }
+
+        // the last launch saved the snapshot again
+        long[] withSnapshot = new long[LAUNCHES];
+        for( int i = 0; i < LAUNCHES; ++i ){
+            withSnapshot[i] = launch();
+        }
+
+        Log.i(TAG, "without snapshot: " + Arrays.toString(withoutSnapshot) +
+            " ms, median " + median(withoutSnapshot) + " ms");
+        Log.i(TAG, "with snapshot: " + Arrays.toString(withSnapshot) +
+            " ms, median " + median(withSnapshot) + " ms");
+    }
+
+    // launch MainActivity and wait for its list's first frame; the time it took in ms
+    private long launch() throws Exception {
+        Activity activity = launchActivity(mContext.getPackageName(), MainActivity.class, null);
+        try {
+            long millis = StartupTimer.awaitFirstListFrame(FIRST_FRAME_TIMEOUT_MILLIS);
+            assertTrue("the contact list didn't show", millis >= 0);
+            return millis;
+        } finally {
+            activity.finish();
+            getInstrumentation().waitForIdleSync();
+        }
+    }
+
+    private static long median(long[] samples){
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,608 @@
+package com.example.lawrence.addressbook.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.test.ProviderTestCase2;
+import android.util.Log;
+
+import com.example.lawrence.addressbook.data.DatabaseDescription.Change;
+import com.example.lawrence.addressbook.data.DatabaseDescription.Contact;
+import com.example.lawrence.addressbook.data.DatabaseDescription.Duplicate;
+
+import java.io.StringWriter;
+import java.util.Locale;
+
+/**
+ * Instrumented tests for {@link AddressBookContentProvider}.
+ * Throughput numbers are written to logcat under the "ProviderThroughput" tag.
+ */
+public class AddressBookContentProviderTest extends ProviderTestCase2<AddressBookContentProvider> {
+
+    private static final String TAG = "ProviderThroughput";
+
+    public AddressBookContentProviderTest() {
+        super(AddressBookContentProvider.class, DatabaseDescription.AUTHORITY);
+    }
+
+    // DataLayerBenchmark times both paths on datasets of up to 100k contacts
+    public void testInsertAndBulkInsertStoreEveryRow() throws Exception {
+        compareInsertPaths(1000);
+    }
+
+    public void testSearchMatchesWordPrefixes() {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(Contact.COLUMN_NAME, "Zelda Quixote");
+        contentValues.put(Contact.COLUMN_EMAIL, "zq@zebrafish.example");
+        contentValues.put(Contact.COLUMN_CITY, "Xanadu Falls");
+        contentValues.put(Contact.COLUMN_PHONE, "555-867-5309");
+        long id = Long.parseLong(
+            getMockContentResolver().insert(Contact.CONTENT_URI, contentValues).getLastPathSegment());
+
+        assertSearchFinds("zel", id);          // name
+        assertSearchFinds("QUIX zel", id);     // several words, any case
+        assertSearchFinds("zebra", id);        // email
+        assertSearchFinds("xanadu fa", id);    // city
+        assertSearchFinds("8675309", -1);      // phone words are split on '-'
+        assertSearchFinds("867", id);
+        assertSearchFinds("\"OR*", -1);        // operators and quotes are not passed to FTS
+
+        // the index follows updates and deletes
+        contentValues.put(Contact.COLUMN_NAME, "Yorick Quixote");
+        getMockContentResolver().update(Contact.buildContactUri(id), contentValues, null, null);
+        assertSearchFinds("zel", -1);
+        assertSearchFinds("yor", id);
+
+        getMockContentResolver().delete(Contact.buildContactUri(id), null, null);
+        assertSearchFinds("yor", -1);
+    }
+
+    public void testSearchIgnoresTheDefaultLocale() {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(Contact.COLUMN_NAME, "Ivan Quixote");
+        long id = Long.parseLong(
+            getMockContentResolver().insert(Contact.CONTENT_URI, contentValues).getLastPathSegment());
+
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            assertSearchFinds("IVAN", id);
+            assertSearchFinds("QUIX", id);
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    public void testKeysetPagesMatchFullSortedList() {
+        // duplicate names make sure _id breaks ties between pages
+        ContentValues[] values = makeContacts(250);
+        for( int i = 0; i < values.length; i += 3 ){
+            values[i].put(Contact.COLUMN_NAME, "same name");
+        }
+        getMockContentResolver().bulkInsert(Contact.CONTENT_URI, values);
+
+        String[] projection = { Contact._ID, Contact.COLUMN_NAME };
+        Cursor all = getMockContentResolver().query(
+            Contact.CONTENT_URI, projection, null, null, Contact.PAGE_SORT_ORDER);
+        try {
+            String afterName = null;
+            long afterId = 0;
+            int position = 0;
+
+            while( true ){
+                Cursor page = getMockContentResolver().query(
+                    Contact.buildPageUri(afterName, afterId, 40), projection, null, null, null);
+                try {
+                    if( !page.moveToFirst() ){
+                        break;
+                    }
+                    assertTrue(page.getCount() <= 40);
+                    do {
+                        assertTrue(all.moveToPosition(position++));
+                        assertEquals(all.getLong(0), page.getLong(0));
+                        afterId = page.getLong(0);
+                        afterName = page.getString(1);
+                    } while( page.moveToNext() );
+                } finally {
+                    page.close();
+                }
+            }
+            assertEquals(all.getCount(), position);
+
+            // offset pages start at the same rows
+            Cursor page = getMockContentResolver().query(
+                Contact.buildPageUri(120, 40), projection, null, null, null);
+            try {
+                assertTrue(page.moveToFirst());
+                assertTrue(all.moveToPosition(120));
+                assertEquals(all.getLong(0), page.getLong(0));
+            } finally {
+                page.close();
+            }
+        } finally {
+            all.close();
+        }
+    }
+
+    public void testSectionsCountNamesByFirstCharacterIgnoringCase() {
+        String[] names = { "bob", "Alice", "anne", "Bea", "carl", "Amy" };
+        for( String name : names ){
+            ContentValues contentValues = new ContentValues();
+            contentValues.put(Contact.COLUMN_NAME, name);
+            getMockContentResolver().insert(Contact.CONTENT_URI, contentValues);
+        }
+
+        Cursor cursor = getMockContentResolver().query(Contact.SECTIONS_URI, null, null, null, null);
+        try {
+            assertEquals(3, cursor.getCount());
+            int sizeColumn = cursor.getColumnIndexOrThrow(Contact.COLUMN_SECTION_SIZE);
+            int sectionColumn = cursor.getColumnIndexOrThrow(Contact.COLUMN_SECTION);
+            int[] expectedSizes = { 3, 2, 1 };
+            String[] expectedSections = { "a", "b", "c" };
+            for( int i = 0; i < expectedSizes.length; ++i ){
+                assertTrue(cursor.moveToPosition(i));
+                assertEquals(expectedSections[i], cursor.getString(sectionColumn).toLowerCase());
+                assertEquals(expectedSizes[i], cursor.getInt(sizeColumn));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testBulkInsertKeepsEveryColumnInsertDoes() {
+        ContentValues[] values = makeContacts(2);
+        values[0].put(Contact.COLUMN_PHOTO, "photo-1.jpg");
+        getMockContentResolver().bulkInsert(Contact.CONTENT_URI, values);
+
+        Cursor cursor = getMockContentResolver().query(Contact.CONTENT_URI,
+            new String[]{ Contact.COLUMN_PHOTO }, null, null, Contact._ID);
+        try {
+            assertTrue(cursor.moveToNext());
+            assertEquals("photo-1.jpg", cursor.getString(0));
+            assertTrue(cursor.moveToNext());
+            assertNull(cursor.getString(0));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testExportWritesContactsWithoutNames() throws Exception {
+        // more null names than fit on one export page, so a page ends on one,
+        // and some empty names, which sort right after them
+        int nulls = VCardTransfer.EXPORT_PAGE_SIZE + 10;
+        ContentValues[] values = makeContacts(nulls + 20);
+        for( int i = 0; i < nulls; ++i ){
+            values[i].putNull(Contact.COLUMN_NAME);
+        }
+        for( int i = nulls; i < nulls + 10; ++i ){
+            values[i].put(Contact.COLUMN_NAME, "");
+        }
+        getMockContentResolver().bulkInsert(Contact.CONTENT_URI, values);
+
+        StringWriter writer = new StringWriter();
+        assertEquals(values.length, VCardTransfer.exportContacts(
+            getMockContentResolver(), writer, VCardWriter.VERSION_3_0));
+        int cards = 0;
+        for( int at = writer.toString().indexOf("BEGIN:VCARD"); at >= 0;
+             at = writer.toString().indexOf("BEGIN:VCARD", at + 1) ){
+            ++cards;
+        }
+        assertEquals(values.length, cards);
+    }
+
+    public void testDeleteLeavesTombstoneThatCanBeRestoredOrPurged() {
+        ContentValues[] values = makeContacts(3);
+        getMockContentResolver().bulkInsert(Contact.CONTENT_URI, values);
+        Uri contactUri = Contact.buildContactUri(2);
+
+        // a deleted contact disappears from every query but DELETED_URI
+        assertEquals(1, getMockContentResolver().delete(contactUri, null, null));
+        assertEquals(0, getMockContentResolver().delete(contactUri, null, null));
+        assertEquals(2, countContacts());
+        assertEquals(0, count(contactUri));
+        assertEquals(2, count(Contact.buildSearchUri("contact")));
+        assertEquals(1, count(Contact.DELETED_URI));
+        assertEquals(0, getMockContentResolver().update(contactUri, values[0], null, null));
+
+        // undelete it
+        ContentValues restore = new ContentValues();
+        restore.putNull(Contact.COLUMN_DELETED_AT);
+        assertEquals(1, getMockContentResolver().update(
+            Contact.buildDeletedContactUri(2), restore, null, null));
+        assertEquals(1, count(contactUri));
+        assertEquals(0, count(Contact.DELETED_URI));
+
+        // only tombstones older than the cutoff are purged
+        getMockContentResolver().delete(contactUri, null, null);
+        getMockContentResolver().delete(Contact.buildContactUri(3), null, null);
+        Bundle result = getMockContentResolver().call(Contact.CONTENT_URI, Contact.METHOD_PURGE,
+            String.valueOf(System.currentTimeMillis() - 60000), null);
+        assertEquals(0, result.getInt(Contact.METHOD_PURGE));
+        result = getMockContentResolver().call(Contact.CONTENT_URI, Contact.METHOD_PURGE,
+            String.valueOf(System.currentTimeMillis() + 1), null);
+        assertEquals(2, result.getInt(Contact.METHOD_PURGE));
+        assertEquals(0, count(Contact.DELETED_URI));
+        assertEquals(0, getMockContentResolver().update(
+            Contact.buildDeletedContactUri(2), restore, null, null));
+        assertEquals(1, countContacts());
+    }
+
+    public void testPurgeRejectsMissingOrNonNumericCutoff() {
+        String[] args = { null, "", "yesterday" };
+        for( String arg : args ){
+            try {
+                getMockContentResolver().call(Contact.CONTENT_URI, Contact.METHOD_PURGE, arg, null);
+                fail("purged with cutoff " + arg);
+            } catch( IllegalArgumentException expected ){
+                // expected
+            }
+        }
+    }
+
+    public void testChangeLogRecordsWritesUntilAcked() {
+        // register before writing anything, as a consumer would before its full sync
+        Uri consumerUri = Contact.buildChangeConsumerUri("sync");
+        assertEquals(1, ack(consumerUri, 0));
+
+        getMockContentResolver().bulkInsert(Contact.CONTENT_URI, makeContacts(2));
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(Contact.COLUMN_NAME, "Renamed");
+        getMockContentResolver().update(Contact.buildContactUri(1), contentValues, null, null);
+        getMockContentResolver().delete(Contact.buildContactUri(2), null, null);
+        ContentValues restore = new ContentValues();
+        restore.putNull(Contact.COLUMN_DELETED_AT);
+        getMockContentResolver().update(Contact.buildDeletedContactUri(2), restore, null, null);
+
+        // a restore comes back as an insert of the contact
+        long[] seqs = assertChanges(Contact.buildChangesUri(0),
+            "1:" + Change.OP_INSERT, "2:" + Change.OP_INSERT, "1:" + Change.OP_UPDATE,
+            "2:" + Change.OP_DELETE, "2:" + Change.OP_INSERT);
+        assertChanges(Contact.buildChangesUri(seqs[2]), "2:" + Change.OP_DELETE, "2:" + Change.OP_INSERT);
+
+        // acked changes are dropped; unregistering the last consumer drops the rest
+        assertEquals(1, ack(consumerUri, seqs[2]));
+        assertEquals(2, count(Contact.CHANGES_URI));
+        assertEquals(1, getMockContentResolver().delete(consumerUri, null, null));
+        assertEquals(0, count(Contact.CHANGES_URI));
+    }
+
+    public void testStructuredQueriesUseBoundPlans() {
+        String[][] contacts = {
+            // name, phone, state, zip
+            { "John Smith", "555-010-0001", "IL", "60601" },
+            { "joan Doe", "(555) 010-0002", "IL", "62701" },
+            { "JOE Bloggs", "555 010 0003", "CA", "90001" },
+            { "Jo@ Odd", null, "IL", "60602" },
+            { "Jz Last", null, "IL", "60603" }
+        };
+        for( String[] contact : contacts ){
+            ContentValues contentValues = new ContentValues();
+            contentValues.put(Contact.COLUMN_NAME, contact[0]);
+            contentValues.put(Contact.COLUMN_PHONE, contact[1]);
+            contentValues.put(Contact.COLUMN_STATE, contact[2]);
+            contentValues.put(Contact.COLUMN_ZIP, contact[3]);
+            getMockContentResolver().insert(Contact.CONTENT_URI, contentValues);
+        }
+
+        // prefixes ignore case for names; the plan is compiled on the first query only
+        QueryPlanner planner = AddressBookContentProvider.getQueryPlanner();
+        int misses = planner.getMisses();
+        assertNames(new ContactQuery().wherePrefix(Contact.COLUMN_NAME, "JO")
+            .orderBy(Contact.COLUMN_NAME, true), "Jo@ Odd", "joan Doe", "JOE Bloggs", "John Smith");
+        assertNames(new ContactQuery().wherePrefix(Contact.COLUMN_NAME, "jo@")
+            .orderBy(Contact.COLUMN_NAME, true), "Jo@ Odd");
+        assertNames(new ContactQuery().wherePrefix(Contact.COLUMN_NAME, "jz")
+            .orderBy(Contact.COLUMN_NAME, true), "Jz Last");
+        assertEquals(misses + 1, planner.getMisses());
+
+        // the same predicates in another order are the same shape
+        assertNames(new ContactQuery().whereRange(Contact.COLUMN_ZIP, "60000", "60699")
+            .whereEquals(Contact.COLUMN_STATE, "IL").orderBy(Contact.COLUMN_ZIP, false).limit(2),
+            "Jz Last", "Jo@ Odd");
+        assertNames(new ContactQuery().whereEquals(Contact.COLUMN_STATE, "IL")
+            .whereRange(Contact.COLUMN_ZIP, "60000", "60699").orderBy(Contact.COLUMN_ZIP, false),
+            "Jz Last", "Jo@ Odd", "John Smith");
+        assertEquals(misses + 2, planner.getMisses());
+
+        // phones match however they're written; deleted contacts never do
+        assertNames(new ContactQuery().whereEquals(Contact.COLUMN_PHONE, "+1 555 010 0002"), "joan Doe");
+        assertNames(new ContactQuery().whereEquals(Contact.COLUMN_PHONE, "not a number"));
+        getMockContentResolver().delete(Contact.buildContactUri(2), null, null);
+        assertNames(new ContactQuery().whereEquals(Contact.COLUMN_PHONE, "555-010-0002"));
+
+        try {
+            new ContactQuery().wherePrefix(Contact.COLUMN_PHONE, "555").query(getMockContentResolver(), null);
+            fail("phones can only be compared for equality");
+        } catch( IllegalArgumentException expected ){
+            // expected
+        }
+    }
+
+    // expected holds the names query returns, in order
+    private void assertNames(ContactQuery query, String... expected) {
+        Cursor cursor = query.query(getMockContentResolver(), new String[]{ Contact.COLUMN_NAME });
+        try {
+            assertEquals(expected.length, cursor.getCount());
+            for( String name : expected ){
+                assertTrue(cursor.moveToNext());
+                assertEquals(name, cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private int ack(Uri consumerUri, long seq) {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(Change.COLUMN_ACKED_SEQ, seq);
+        return getMockContentResolver().update(consumerUri, contentValues, null, null);
+    }
+
+    // expected holds "contact_id:op" for each change at changesUri, in order; returns their seqs
+    private long[] assertChanges(Uri changesUri, String... expected) {
+        Cursor cursor = getMockContentResolver().query(changesUri, null, null, null, null);
+        try {
+            assertEquals(expected.length, cursor.getCount());
+            long[] seqs = new long[expected.length];
+            for( int i = 0; i < expected.length; ++i ){
+                assertTrue(cursor.moveToNext());
+                assertEquals(expected[i],
+                    cursor.getLong(cursor.getColumnIndexOrThrow(Change.COLUMN_CONTACT_ID)) + ":" +
+                    cursor.getInt(cursor.getColumnIndexOrThrow(Change.COLUMN_OP)));
+                seqs[i] = cursor.getLong(cursor.getColumnIndexOrThrow(Change.COLUMN_SEQ));
+            }
+            return seqs;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private int count(Uri uri) {
+        Cursor cursor = getMockContentResolver().query(uri, null, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testRegionCountsGroupContacts() {
+        String[][] places = {
+            { "Springfield", "IL", "62701" }, { "Chicago", "IL", "60601" },
+            { "Springfield", "IL", "62701" }, { "Springfield", "MA", "01101" },
+            { null, null, null }
+        };
+        for( String[] place : places ){
+            ContentValues contentValues = new ContentValues();
+            contentValues.put(Contact.COLUMN_NAME, "Someone");
+            contentValues.put(Contact.COLUMN_CITY, place[0]);
+            contentValues.put(Contact.COLUMN_STATE, place[1]);
+            contentValues.put(Contact.COLUMN_ZIP, place[2]);
+            getMockContentResolver().insert(Contact.CONTENT_URI, contentValues);
+        }
+
+        // NULL sorts first
+        assertRegionCounts(Contact.BY_STATE_URI, "null=1", "IL=3", "MA=1");
+        assertRegionCounts(Contact.BY_ZIP_URI, "null=1", "01101=1", "60601=1", "62701=2");
+        assertRegionCounts(Contact.BY_CITY_URI, "null=1", "Chicago=1", "Springfield=2", "Springfield=1");
+    }
+
+    // expected holds "region=size" for each row of regionUri, in order
+    private void assertRegionCounts(Uri regionUri, String... expected) {
+        Cursor cursor = getMockContentResolver().query(regionUri, null, null, null, null);
+        try {
+            int regionColumn = cursor.getColumnIndexOrThrow(Contact.COLUMN_REGION);
+            int sizeColumn = cursor.getColumnIndexOrThrow(Contact.COLUMN_REGION_SIZE);
+            assertEquals(expected.length, cursor.getCount());
+            for( String row : expected ){
+                assertTrue(cursor.moveToNext());
+                assertEquals(row, cursor.getString(regionColumn) + "=" + cursor.getInt(sizeColumn));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testLookupByNormalizedPhoneAndEmail() {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(Contact.COLUMN_NAME, "Caller");
+        contentValues.put(Contact.COLUMN_PHONE, "555.010.0000");
+        contentValues.put(Contact.COLUMN_EMAIL, "Caller@Example.com");
+        long id = Long.parseLong(
+            getMockContentResolver().insert(Contact.CONTENT_URI, contentValues).getLastPathSegment());
+
+        assertLookupFinds(Contact.buildPhoneLookupUri("+1 (555) 010-0000"), id);
+        assertLookupFinds(Contact.buildEmailLookupUri(" caller@example.COM"), id);
+        assertLookupFinds(Contact.buildPhoneLookupUri("555-0100"), -1);
+        assertLookupFinds(Contact.buildPhoneLookupUri("not a number"), -1);
+
+        // the normalized columns follow updates, and bulk inserts fill them too
+        contentValues.clear();
+        contentValues.put(Contact.COLUMN_PHONE, "555 010 9999");
+        getMockContentResolver().update(Contact.buildContactUri(id), contentValues, null, null);
+        assertLookupFinds(Contact.buildPhoneLookupUri("5550100000"), -1);
+        assertLookupFinds(Contact.buildPhoneLookupUri("5550109999"), id);
+
+        ContentValues[] values = makeContacts(3);
+        values[1].put(Contact.COLUMN_EMAIL, "bulk@example.com");
+        getMockContentResolver().bulkInsert(Contact.CONTENT_URI, values);
+        Cursor cursor = getMockContentResolver().query(
+            Contact.buildEmailLookupUri("BULK@example.com"), null, null, null, null);
+        try {
+            assertEquals(1, cursor.getCount());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // expectedId is the only contact lookupUri should return, or -1 for none
+    private void assertLookupFinds(Uri lookupUri, long expectedId) {
+        Cursor cursor = getMockContentResolver().query(
+            lookupUri, new String[]{ Contact._ID }, null, null, null);
+        try {
+            if( expectedId < 0 ){
+                assertEquals(lookupUri.toString(), 0, cursor.getCount());
+            } else {
+                assertEquals(lookupUri.toString(), 1, cursor.getCount());
+                assertTrue(cursor.moveToFirst());
+                assertEquals(expectedId, cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testDuplicateScanGroupsMatchingContacts() {
+        String[][] contacts = {
+            { "John Smith", "(555) 123-4567", null },
+            { "Smith, Jon", "+1 555 123 4567", null },
+            { "Mary Jones", null, "mary@example.com" },
+            { "M. Jones", null, "Mary+work@Example.com" },
+            { "Zed Unique", "555-999-0000", null }
+        };
+        long[] ids = new long[contacts.length];
+        for( int i = 0; i < contacts.length; ++i ){
+            ContentValues contentValues = new ContentValues();
+            contentValues.put(Contact.COLUMN_NAME, contacts[i][0]);
+            contentValues.put(Contact.COLUMN_PHONE, contacts[i][1]);
+            contentValues.put(Contact.COLUMN_EMAIL, contacts[i][2]);
+            ids[i] = Long.parseLong(
+                getMockContentResolver().insert(Contact.CONTENT_URI, contentValues).getLastPathSegment());
+        }
+
+        assertEquals(2, new DuplicateScan().run(getMockContentResolver()));
+        assertDuplicates(ids[0], ids[0], ids[1], ids[2], ids[2], ids[3]);
+
+        // deleting a contact leaves its partner alone in its group, so the group goes away
+        getMockContentResolver().delete(Contact.buildContactUri(ids[1]), null, null);
+        assertDuplicates(ids[2], ids[2], ids[3]);
+
+        getMockContentResolver().delete(Contact.DUPLICATES_URI, null, null);
+        assertDuplicates();
+    }
+
+    // expectedRows holds group_id, contact _id, contact _id, ... for each group in order
+    private void assertDuplicates(long... expectedRows) {
+        Cursor cursor = getMockContentResolver().query(Contact.DUPLICATES_URI,
+            new String[]{ Contact._ID, Duplicate.COLUMN_GROUP_ID }, null, null,
+            Duplicate.COLUMN_GROUP_ID + ", " + Contact._ID);
+        try {
+            int position = 0;
+            long groupId = -1;
+            while( cursor.moveToNext() ){
+                if( cursor.getLong(1) != groupId ){
+                    groupId = cursor.getLong(1);
+                    assertEquals(expectedRows[position++], groupId);
+                }
+                assertEquals(expectedRows[position++], cursor.getLong(0));
+            }
+            assertEquals(expectedRows.length, position);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    public void testMetricsRecordEveryEntryPoint() {
+        InMemoryProviderMetrics metrics = new InMemoryProviderMetrics();
+        AddressBookContentProvider.setMetrics(metrics);
+        try {
+            ContentValues[] values = makeContacts(10);
+            assertEquals(10, getMockContentResolver().bulkInsert(Contact.CONTENT_URI, values));
+            Uri contactUri = getMockContentResolver().insert(Contact.CONTENT_URI, values[0]);
+            assertEquals(11, countContacts());
+            getMockContentResolver().update(contactUri, values[1], null, null);
+            getMockContentResolver().delete(contactUri, null, null);
+
+            InMemoryProviderMetrics.Snapshot bulkInsert = metrics.getSnapshot(
+                ProviderMetrics.BULK_INSERT, AddressBookContentProvider.CONTACTS);
+            assertEquals(1, bulkInsert.count);
+            assertEquals(10, bulkInsert.totalRows);
+
+            InMemoryProviderMetrics.Snapshot query = metrics.getSnapshot(
+                ProviderMetrics.QUERY, AddressBookContentProvider.CONTACTS);
+            assertEquals(1, query.count);
+            assertEquals(1, query.maxRows); // COUNT(*) returns one row
+            assertTrue(query.p50Nanos > 0);
+            assertTrue(query.p99Nanos >= query.p95Nanos && query.p95Nanos >= query.p50Nanos);
+
+            assertEquals(1, metrics.getSnapshot(
+                ProviderMetrics.UPDATE, AddressBookContentProvider.ONE_CONTACT).totalRows);
+            assertEquals(1, metrics.getSnapshot(
+                ProviderMetrics.DELETE, AddressBookContentProvider.ONE_CONTACT).totalRows);
+            assertEquals(2, metrics.getNotificationCount(AddressBookContentProvider.CONTACTS));
+            assertEquals(2, metrics.getNotificationCount(AddressBookContentProvider.ONE_CONTACT));
+            Log.i(TAG, metrics.dump());
+        } finally {
+            AddressBookContentProvider.setMetrics(null);
+        }
+    }
+
+    // expectedId -1 means the search should find nothing
+    private void assertSearchFinds(String term, long expectedId) {
+        Cursor cursor = getMockContentResolver().query(
+            Contact.buildSearchUri(term), new String[]{ Contact._ID }, null, null, null);
+        try {
+            if( expectedId < 0 ){
+                assertEquals(term, 0, cursor.getCount());
+            } else {
+                assertEquals(term, 1, cursor.getCount());
+                assertTrue(cursor.moveToFirst());
+                assertEquals(term, expectedId, cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // insert the same rows once with insert() per row and once with bulkInsert(),
+    // check both stored every row and log rows/second for each path
+    private void compareInsertPaths(int rows) {
+        ContentValues[] values = makeContacts(rows);
+
+        int before = countContacts();
+        long start = System.nanoTime();
+        for( ContentValues contentValues : values ){
+            getMockContentResolver().insert(Contact.CONTENT_URI, contentValues);
+        }
+        long singleNanos = System.nanoTime() - start;
+        assertEquals(before + rows, countContacts());
+
+        before = countContacts();
+        start = System.nanoTime();
+        int inserted = getMockContentResolver().bulkInsert(Contact.CONTENT_URI, values);
+        long bulkNanos = System.nanoTime() - start;
+        assertEquals(rows, inserted);
+        assertEquals(before + rows, countContacts());
+
+        Log.i(TAG, String.format("%d rows: insert() %.0f rows/s, bulkInsert() %.0f rows/s",
+            rows, rows * 1e9 / singleNanos, rows * 1e9 / bulkNanos));
+    }
+
+    static ContentValues[] makeContacts(int rows) {
+        ContentValues[] values = new ContentValues[rows];
+        for( int i = 0; i < rows; ++i ){
+            ContentValues contentValues = new ContentValues();
+            contentValues.put(Contact.COLUMN_NAME, "Contact " + i);
+            contentValues.put(Contact.COLUMN_PHONE, "555-" + (1000000 + i));
+            contentValues.put(Contact.COLUMN_EMAIL, "contact" + i + "@example.com");
+            contentValues.put(Contact.COLUMN_STREET, i + " Main St");
+            contentValues.put(Contact.COLUMN_CITY, "Springfield");
+            contentValues.put(Contact.COLUMN_STATE, "IL");
+            contentValues.put(Contact.COLUMN_ZIP, String.valueOf(60000 + i % 1000));
+            values[i] = contentValues;
+        }
+        return values;
+    }
+
+    private int countContacts() {
+        Cursor cursor = getMockContentResolver().query(
+            Contact.CONTENT_URI, new String[]{ "COUNT(*)" }, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
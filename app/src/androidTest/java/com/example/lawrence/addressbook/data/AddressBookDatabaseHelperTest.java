@@ -0,0 +1,205 @@
+package com.example.lawrence.addressbook.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+import com.example.lawrence.addressbook.data.DatabaseDescription.Contact;
+
+import java.io.File;
+
+/**
+ * Instrumented tests for the schema migrations and connection settings in {@link AddressBookDatabaseHelper}.
+ */
+public class AddressBookDatabaseHelperTest extends AndroidTestCase {
+
+    private static final String DATABASE_NAME = "upgrade_test.db";
+
+    private static final String LIST_QUERY =
+        "SELECT * FROM " + Contact.TABLE_NAME + " ORDER BY " + Contact.COLUMN_NAME + " COLLATE NOCASE ASC";
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getContext().deleteDatabase(DATABASE_NAME);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        getContext().deleteDatabase(DATABASE_NAME);
+        super.tearDown();
+    }
+
+    public void testUpgradeFromVersion1KeepsRowsAndIndexesList() {
+        createVersion1Database(500);
+
+        AddressBookDatabaseHelper helper = new AddressBookDatabaseHelper(getContext(), DATABASE_NAME);
+        try {
+            SQLiteDatabase db = helper.getReadableDatabase();
+
+            // rows survive the upgrade
+            Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + Contact.TABLE_NAME, null);
+            try {
+                assertTrue(cursor.moveToFirst());
+                assertEquals(500, cursor.getInt(0));
+            } finally {
+                cursor.close();
+            }
+
+            // the list query walks the name index instead of sorting in a temp B-tree
+            String plan = explainQueryPlan(db, LIST_QUERY);
+            assertFalse(plan, plan.contains("TEMP B-TREE"));
+
+            // per-region counts read only their covering index, already in group order
+            plan = explainQueryPlan(db, "SELECT " + Contact.COLUMN_STATE + ", COUNT(*) FROM " +
+                Contact.TABLE_NAME + " GROUP BY " + Contact.COLUMN_STATE + " ORDER BY " + Contact.COLUMN_STATE);
+            assertTrue(plan, plan.contains("COVERING INDEX"));
+            assertFalse(plan, plan.contains("TEMP B-TREE"));
+
+            // existing rows were added to the search index
+            cursor = db.rawQuery("SELECT COUNT(*) FROM " + Contact.FTS_TABLE_NAME +
+                " WHERE " + Contact.FTS_TABLE_NAME + " MATCH 'contact*'", null);
+            try {
+                assertTrue(cursor.moveToFirst());
+                assertEquals(500, cursor.getInt(0));
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            helper.close();
+        }
+    }
+
+    public void testUpgradeBackfillsNormalizedColumns() {
+        createVersion1Database(50);
+
+        AddressBookDatabaseHelper helper = new AddressBookDatabaseHelper(getContext(), DATABASE_NAME);
+        try {
+            SQLiteDatabase db = helper.getReadableDatabase();
+            Cursor cursor = db.rawQuery("SELECT " + Contact.COLUMN_PHONE_NORMALIZED + ", " +
+                Contact.COLUMN_EMAIL_NORMALIZED + " FROM " + Contact.TABLE_NAME +
+                " WHERE " + Contact.COLUMN_PHONE + " = '555-1007'", null);
+            try {
+                assertTrue(cursor.moveToFirst());
+                assertEquals("5551007", cursor.getString(0));
+                assertEquals("contact7@example.com", cursor.getString(1));
+            } finally {
+                cursor.close();
+            }
+
+            // a lookup is an index probe, not a scan
+            String plan = explainQueryPlan(db, "SELECT * FROM " + Contact.TABLE_NAME +
+                " WHERE " + Contact.COLUMN_PHONE_NORMALIZED + " = '5551007'");
+            assertTrue(plan, plan.contains("USING INDEX"));
+        } finally {
+            helper.close();
+        }
+    }
+
+    public void testNewDatabaseMatchesUpgradedSchema() {
+        createVersion1Database(0);
+        AddressBookDatabaseHelper upgraded = new AddressBookDatabaseHelper(getContext(), DATABASE_NAME);
+        String upgradedSchema = schema(upgraded.getReadableDatabase());
+        upgraded.close();
+
+        getContext().deleteDatabase(DATABASE_NAME);
+        AddressBookDatabaseHelper created = new AddressBookDatabaseHelper(getContext(), DATABASE_NAME);
+        String createdSchema = schema(created.getReadableDatabase());
+        created.close();
+
+        assertEquals(createdSchema, upgradedSchema);
+    }
+
+    public void testNewDatabaseUsesIncrementalVacuum() {
+        AddressBookDatabaseHelper helper = new AddressBookDatabaseHelper(getContext(), DATABASE_NAME);
+        try {
+            Cursor cursor = helper.getWritableDatabase().rawQuery("PRAGMA auto_vacuum", null);
+            try {
+                assertTrue(cursor.moveToFirst());
+                assertEquals(2, cursor.getInt(0)); // INCREMENTAL
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            helper.close();
+        }
+    }
+
+    public void testWalAutoCheckpointIsApplied() {
+        AddressBookDatabaseHelper helper = new AddressBookDatabaseHelper(getContext(), DATABASE_NAME,
+            true, 123, AddressBookDatabaseHelper.DEFAULT_MAX_CONCURRENT_READERS);
+        try {
+            // a PRAGMA isn't a SELECT, so it runs on the primary connection onOpen() configured
+            Cursor cursor = helper.getWritableDatabase().rawQuery("PRAGMA wal_autocheckpoint", null);
+            try {
+                assertTrue(cursor.moveToFirst());
+                assertEquals(123, cursor.getInt(0));
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            helper.close();
+        }
+    }
+
+    // write a database the way version 1 of the app did, with rows contacts in it
+    private void createVersion1Database(int rows) {
+        File file = getContext().getDatabasePath(DATABASE_NAME);
+        file.getParentFile().mkdirs();
+
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(file, null);
+        try {
+            db.execSQL("CREATE TABLE " + Contact.TABLE_NAME + "(" +
+                Contact._ID + " integer primary key, " +
+                Contact.COLUMN_NAME + " TEXT, " +
+                Contact.COLUMN_PHONE + " TEXT, " +
+                Contact.COLUMN_EMAIL + " TEXT, " +
+                Contact.COLUMN_STREET + " TEXT, " +
+                Contact.COLUMN_CITY + " TEXT, " +
+                Contact.COLUMN_STATE + " TEXT, " +
+                Contact.COLUMN_ZIP + " TEXT);");
+
+            for( int i = 0; i < rows; ++i ){
+                ContentValues values = new ContentValues();
+                values.put(Contact.COLUMN_NAME, "Contact " + (rows - i));
+                values.put(Contact.COLUMN_PHONE, "555-" + (1000 + i));
+                values.put(Contact.COLUMN_EMAIL, "contact" + i + "@example.com");
+                db.insert(Contact.TABLE_NAME, null, values);
+            }
+            db.setVersion(1);
+        } finally {
+            db.close();
+        }
+    }
+
+    // the "detail" column of every row of EXPLAIN QUERY PLAN, one per line
+    static String explainQueryPlan(SQLiteDatabase db, String sql) {
+        StringBuilder plan = new StringBuilder();
+        Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, null);
+        try {
+            int detailIdx = cursor.getColumnIndex("detail");
+            while( cursor.moveToNext() ){
+                plan.append(cursor.getString(detailIdx)).append('\n');
+            }
+        } finally {
+            cursor.close();
+        }
+        return plan.toString();
+    }
+
+    // the app's tables, indexes and triggers as stored in sqlite_master
+    private static String schema(SQLiteDatabase db) {
+        StringBuilder schema = new StringBuilder();
+        Cursor cursor = db.rawQuery("SELECT type, name FROM sqlite_master " +
+            "WHERE name NOT LIKE 'sqlite_%' AND name != 'android_metadata' ORDER BY type, name", null);
+        try {
+            while( cursor.moveToNext() ){
+                schema.append(cursor.getString(0)).append(' ').append(cursor.getString(1)).append('\n');
+            }
+        } finally {
+            cursor.close();
+        }
+        return schema.toString();
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.lawrence.addressbook.data;
+
+import android.test.AndroidTestCase;
+
+import com.example.lawrence.addressbook.data.DatabaseDescription.Contact;
+
+/**
+ * Tests for {@link ContactCache}'s invalidation and hit/miss counting.
+ */
+public class ContactCacheTest extends AndroidTestCase {
+
+    private ContactCache mCache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mCache = new ContactCache(ContactCache.DEFAULT_MAX_CONTACTS);
+    }
+
+    public void testHitsAndMissesAreCounted() {
+        assertNull(mCache.get(1));
+        mCache.put(contact(1), mCache.getGeneration());
+        assertEquals("Contact 1", mCache.get(1).getName());
+
+        assertEquals(1, mCache.getHitCount());
+        assertEquals(1, mCache.getMissCount());
+    }
+
+    public void testContactUriDropsOnlyThatContact() {
+        mCache.put(contact(1), mCache.getGeneration());
+        mCache.put(contact(2), mCache.getGeneration());
+
+        mCache.invalidate(Contact.buildContactUri(1));
+        assertNull(mCache.get(1));
+        assertNotNull(mCache.get(2));
+    }
+
+    public void testTableUriDropsEverything() {
+        mCache.put(contact(1), mCache.getGeneration());
+        mCache.put(contact(2), mCache.getGeneration());
+
+        mCache.invalidate(Contact.CONTENT_URI);
+        assertNull(mCache.get(1));
+        assertNull(mCache.get(2));
+    }
+
+    public void testDerivedUrisDropNothing() {
+        mCache.put(contact(1), mCache.getGeneration());
+
+        mCache.invalidate(Contact.DUPLICATES_URI);
+        assertNotNull(mCache.get(1));
+    }
+
+    public void testLoadStartedBeforeAChangeIsNotStored() {
+        long generation = mCache.getGeneration();
+        mCache.invalidate(Contact.buildContactUri(1)); // contact changes while it is loading
+        mCache.put(contact(1), generation);
+        assertNull(mCache.get(1));
+
+        // a local write replaces whatever was loading
+        generation = mCache.getGeneration();
+        mCache.replace(new ContactDetails(1, "New name", null, null, null, null, null, null, null));
+        mCache.put(contact(1), generation);
+        assertEquals("New name", mCache.get(1).getName());
+    }
+
+    public void testLeastRecentlyUsedContactIsDropped() {
+        ContactCache cache = new ContactCache(2);
+        cache.put(contact(1), cache.getGeneration());
+        cache.put(contact(2), cache.getGeneration());
+        cache.get(1);
+        cache.put(contact(3), cache.getGeneration());
+
+        assertNotNull(cache.get(1));
+        assertNull(cache.get(2));
+        assertNotNull(cache.get(3));
+    }
+
+    private static ContactDetails contact(long id) {
+        return new ContactDetails(id, "Contact " + id, "555-" + id, null, null, null, null, null, null);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.lawrence.addressbook.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.test.ProviderTestCase2;
+
+import com.example.lawrence.addressbook.data.DatabaseDescription.Contact;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Instrumented tests for {@link ContactWriter}.
+ */
+public class ContactWriterTest extends ProviderTestCase2<AddressBookContentProvider> {
+
+    public ContactWriterTest() {
+        super(AddressBookContentProvider.class, DatabaseDescription.AUTHORITY);
+    }
+
+    // records what one write's callback was told
+    private static class Recorder implements ContactWriter.Callback {
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile Uri uri;
+        volatile int count = -1;
+
+        @Override
+        public void onWriteCompleted(Uri uri, int count) {
+            this.uri = uri;
+            this.count = count;
+            done.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        }
+    }
+
+    public void testWritesCompleteInOrder() throws Exception {
+        ContactWriter writer = new ContactWriter(getMockContentResolver());
+
+        ContentValues[] values = AddressBookContentProviderTest.makeContacts(20);
+        Recorder[] inserts = new Recorder[values.length];
+        for( int i = 0; i < values.length; ++i ){
+            inserts[i] = new Recorder();
+            writer.insert(values[i], inserts[i]);
+        }
+        for( Recorder insert : inserts ){
+            insert.await();
+            assertEquals(1, insert.count);
+        }
+        assertEquals(20, countContacts());
+
+        // an update and a delete of the same contact queued back to back run in that order
+        Uri contactUri = inserts[0].uri;
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(Contact.COLUMN_NAME, "Renamed");
+        Recorder update = new Recorder();
+        Recorder delete = new Recorder();
+        writer.update(contactUri, contentValues, update);
+        writer.delete(contactUri, delete);
+        update.await();
+        delete.await();
+        assertEquals(1, update.count);
+        assertEquals(1, delete.count);
+        assertEquals(contactUri, delete.uri);
+        assertEquals(19, countContacts());
+    }
+
+    public void testFailedWriteDoesNotFailTheOthers() throws Exception {
+        ContactWriter writer = new ContactWriter(getMockContentResolver());
+
+        ContentValues[] values = AddressBookContentProviderTest.makeContacts(3);
+        Recorder first = new Recorder();
+        Recorder bad = new Recorder();
+        Recorder last = new Recorder();
+        writer.insert(values[0], first);
+        writer.update(Contact.SECTIONS_URI, values[1], bad); // not a writable Uri
+        writer.insert(values[2], last);
+
+        first.await();
+        bad.await();
+        last.await();
+        assertEquals(1, first.count);
+        assertEquals(0, bad.count);
+        assertEquals(1, last.count);
+        assertEquals(2, countContacts());
+    }
+
+    private int countContacts() {
+        Cursor cursor = getMockContentResolver().query(
+            Contact.CONTENT_URI, new String[]{ Contact._ID }, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+}
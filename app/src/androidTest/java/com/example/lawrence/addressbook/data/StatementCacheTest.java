@@ -0,0 +1,179 @@
+package com.example.lawrence.addressbook.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.lawrence.addressbook.data.DatabaseDescription.Contact;
+
+/**
+ * Tests for {@link StatementCache}, and the cost of a single-contact update/delete
+ * with the _id concatenated into the SQL versus a cached statement with the _id bound.
+ * Per-operation costs are written to logcat under the "StatementCache" tag.
+ */
+public class StatementCacheTest extends AndroidTestCase {
+
+    private static final String TAG = "StatementCache";
+    private static final String DATABASE_NAME = "statement_cache_test.db";
+
+    private static final int ROWS = 10000;
+    private static final int OPERATIONS = 100000;
+
+    private static final String UPDATE_SQL =
+        "UPDATE " + Contact.TABLE_NAME + " SET " + Contact.COLUMN_PHONE + "=? WHERE " + Contact._ID + "=?";
+    private static final String DELETE_SQL =
+        "DELETE FROM " + Contact.TABLE_NAME + " WHERE " + Contact._ID + "=?";
+
+    private AddressBookDatabaseHelper mHelper;
+    private SQLiteDatabase mDatabase;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        getContext().deleteDatabase(DATABASE_NAME);
+        mHelper = new AddressBookDatabaseHelper(getContext(), DATABASE_NAME);
+        mDatabase = mHelper.getWritableDatabase();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mHelper.close();
+        getContext().deleteDatabase(DATABASE_NAME);
+        super.tearDown();
+    }
+
+    public void testUpdateAndDeleteChangeOnlyTheirRow() {
+        insertRows(2);
+        StatementCache cache = new StatementCache();
+
+        assertEquals(1, cache.executeUpdateDelete(mDatabase, UPDATE_SQL, new Object[]{ "555-0000", 1L }));
+        assertEquals("555-0000", phoneOf(1));
+        assertEquals("555-1000001", phoneOf(2));
+
+        assertEquals(1, cache.executeUpdateDelete(mDatabase, DELETE_SQL, new Object[]{ 2L }));
+        assertEquals(0, cache.executeUpdateDelete(mDatabase, DELETE_SQL, new Object[]{ 2L }));
+        assertEquals(1, DatabaseUtils.queryNumEntries(mDatabase, Contact.TABLE_NAME));
+        cache.clear();
+    }
+
+    public void testLeastRecentlyUsedStatementIsEvicted() {
+        insertRows(1);
+        StatementCache cache = new StatementCache(1);
+
+        // a second statement pushes the first out; both must still run afterwards
+        assertEquals(1, cache.executeUpdateDelete(mDatabase, UPDATE_SQL, new Object[]{ "555-0001", 1L }));
+        assertEquals(0, cache.executeUpdateDelete(mDatabase, DELETE_SQL, new Object[]{ 99L }));
+        assertEquals(1, cache.executeUpdateDelete(mDatabase, UPDATE_SQL, new Object[]{ "555-0002", 1L }));
+        assertEquals("555-0002", phoneOf(1));
+        cache.clear();
+    }
+
+    public void testWriterWaitingForTheDatabaseDoesNotBlockTheCache() throws Exception {
+        insertRows(2);
+        final StatementCache cache = new StatementCache();
+
+        // this thread holds the primary connection, as a provider batch does, while another
+        // thread's write through the cache waits for it; this thread's own write through
+        // the cache must still go ahead, or neither would ever finish
+        mDatabase.beginTransaction();
+        final int[] otherUpdated = { -1 };
+        Thread other = new Thread() {
+            @Override
+            public void run() {
+                otherUpdated[0] = cache.executeUpdateDelete(mDatabase, UPDATE_SQL, new Object[]{ "555-0002", 2L });
+            }
+        };
+        try {
+            other.start();
+            Thread.sleep(200); // let it block on the connection
+            assertEquals(1, cache.executeUpdateDelete(mDatabase, UPDATE_SQL, new Object[]{ "555-0001", 1L }));
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+
+        other.join(5000);
+        assertFalse("the other writer is still blocked", other.isAlive());
+        assertEquals(1, otherUpdated[0]);
+        assertEquals("555-0001", phoneOf(1));
+        assertEquals("555-0002", phoneOf(2));
+        cache.clear();
+    }
+
+    public void testUpdateCost() {
+        insertRows(ROWS);
+
+        // the _id concatenated into the SQL: every id is new SQL that has to be compiled
+        ContentValues contentValues = new ContentValues();
+        long start = System.nanoTime();
+        for( int i = 0; i < OPERATIONS; ++i ){
+            long id = i % ROWS + 1;
+            contentValues.put(Contact.COLUMN_PHONE, "555-" + i);
+            mDatabase.update(Contact.TABLE_NAME, contentValues, Contact._ID + "=" + id, null);
+        }
+        long concatenatedNanos = System.nanoTime() - start;
+
+        // the _id bound to one cached statement
+        StatementCache cache = new StatementCache();
+        start = System.nanoTime();
+        for( int i = 0; i < OPERATIONS; ++i ){
+            long id = i % ROWS + 1;
+            cache.executeUpdateDelete(mDatabase, UPDATE_SQL, new Object[]{ "555-" + i, id });
+        }
+        long cachedNanos = System.nanoTime() - start;
+        cache.clear();
+
+        assertEquals("555-" + (OPERATIONS - 1), phoneOf((OPERATIONS - 1) % ROWS + 1));
+        Log.i(TAG, String.format("%d updates: concatenated %.1f us/op, cached statement %.1f us/op",
+            OPERATIONS, concatenatedNanos / 1e3 / OPERATIONS, cachedNanos / 1e3 / OPERATIONS));
+    }
+
+    public void testDeleteCost() {
+        insertRows(ROWS);
+        long start = System.nanoTime();
+        for( int id = 1; id <= ROWS / 2; ++id ){
+            mDatabase.delete(Contact.TABLE_NAME, Contact._ID + "=" + id, null);
+        }
+        long concatenatedNanos = System.nanoTime() - start;
+
+        StatementCache cache = new StatementCache();
+        start = System.nanoTime();
+        for( int id = ROWS / 2 + 1; id <= ROWS; ++id ){
+            cache.executeUpdateDelete(mDatabase, DELETE_SQL, new Object[]{ (long) id });
+        }
+        long cachedNanos = System.nanoTime() - start;
+        cache.clear();
+
+        assertEquals(0, DatabaseUtils.queryNumEntries(mDatabase, Contact.TABLE_NAME));
+        Log.i(TAG, String.format("%d deletes: concatenated %.1f us/op, cached statement %.1f us/op",
+            ROWS / 2, concatenatedNanos / 1e3 / (ROWS / 2), cachedNanos / 1e3 / (ROWS / 2)));
+    }
+
+    // insert rows with _ids 1..count, phones 555-1000000 onwards
+    private void insertRows(int count) {
+        mDatabase.beginTransaction();
+        try {
+            ContentValues[] values = AddressBookContentProviderTest.makeContacts(count);
+            for( ContentValues contentValues : values ){
+                mDatabase.insert(Contact.TABLE_NAME, null, contentValues);
+            }
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    private String phoneOf(long id) {
+        Cursor cursor = mDatabase.query(Contact.TABLE_NAME, new String[]{ Contact.COLUMN_PHONE },
+            Contact._ID + "=?", new String[]{ String.valueOf(id) }, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getString(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
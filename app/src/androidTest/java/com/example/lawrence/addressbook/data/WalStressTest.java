@@ -0,0 +1,134 @@
+package com.example.lawrence.addressbook.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.lawrence.addressbook.data.DatabaseDescription.Contact;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Read latency while a writer inserts continuously, with WAL on and off.
+ * The readers run the same query AddressBookContentProvider runs for the contact list.
+ * p50/p99 read latencies are written to logcat under the "WalStress" tag.
+ */
+public class WalStressTest extends AndroidTestCase {
+
+    private static final String TAG = "WalStress";
+    private static final String DATABASE_NAME = "wal_stress_test.db";
+
+    private static final int READERS = 4;
+    private static final int READS_PER_READER = 200;
+    private static final int INITIAL_ROWS = 5000;
+
+    @Override
+    protected void tearDown() throws Exception {
+        getContext().deleteDatabase(DATABASE_NAME);
+        super.tearDown();
+    }
+
+    public void testReadLatencyWithWal() throws Exception {
+        runStress(true);
+    }
+
+    public void testReadLatencyWithRollbackJournal() throws Exception {
+        runStress(false);
+    }
+
+    private void runStress(boolean walEnabled) throws Exception {
+        getContext().deleteDatabase(DATABASE_NAME);
+        final AddressBookDatabaseHelper helper = new AddressBookDatabaseHelper(
+            getContext(), DATABASE_NAME, walEnabled,
+            AddressBookDatabaseHelper.DEFAULT_WAL_AUTOCHECKPOINT_PAGES, READERS);
+        try {
+            final SQLiteDatabase db = helper.getWritableDatabase();
+            insertRows(db, 0, INITIAL_ROWS);
+
+            final AtomicBoolean writing = new AtomicBoolean(true);
+            final long[][] latencies = new long[READERS][READS_PER_READER];
+            final CountDownLatch readersDone = new CountDownLatch(READERS);
+
+            // writer: small insert transactions until the readers finish
+            Thread writer = new Thread() {
+                @Override
+                public void run() {
+                    int next = INITIAL_ROWS;
+                    while( writing.get() ){
+                        insertRows(db, next, 20);
+                        next += 20;
+                    }
+                }
+            };
+            writer.start();
+
+            for( int r = 0; r < READERS; ++r ){
+                final long[] readerLatencies = latencies[r];
+                new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            for( int i = 0; i < READS_PER_READER; ++i ){
+                                long start = System.nanoTime();
+                                readContactList(helper.getReadableDatabase());
+                                readerLatencies[i] = System.nanoTime() - start;
+                            }
+                        } finally {
+                            readersDone.countDown();
+                        }
+                    }
+                }.start();
+            }
+
+            readersDone.await();
+            writing.set(false);
+            writer.join();
+
+            long[] all = new long[READERS * READS_PER_READER];
+            for( int r = 0; r < READERS; ++r ){
+                System.arraycopy(latencies[r], 0, all, r * READS_PER_READER, READS_PER_READER);
+            }
+            Arrays.sort(all);
+
+            Log.i(TAG, String.format("WAL %s: read p50 %.2f ms, p99 %.2f ms",
+                walEnabled ? "on" : "off",
+                all[all.length / 2] / 1e6, all[all.length * 99 / 100] / 1e6));
+            assertTrue(all[0] > 0);
+        } finally {
+            helper.close();
+        }
+    }
+
+    // same query the provider runs for Contact.CONTENT_URI with the list's projection and sort
+    private static void readContactList(SQLiteDatabase db) {
+        SQLiteQueryBuilder queryBuilder = new SQLiteQueryBuilder();
+        queryBuilder.setTables(Contact.TABLE_NAME);
+        Cursor cursor = queryBuilder.query(db, ContactProjection.LIST, null, null, null, null,
+            Contact.COLUMN_NAME + " COLLATE NOCASE ASC");
+        try {
+            cursor.getCount(); // runs the query and fills the first window
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void insertRows(SQLiteDatabase db, int first, int count) {
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for( int i = first; i < first + count; ++i ){
+                values.put(Contact.COLUMN_NAME, "Contact " + i);
+                values.put(Contact.COLUMN_PHONE, "555-" + i);
+                db.insert(Contact.TABLE_NAME, null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
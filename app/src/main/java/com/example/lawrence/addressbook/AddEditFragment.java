@@ -1,13 +1,17 @@
 package com.example.lawrence.addressbook;
 
+import android.app.Activity;
+
+import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
-
-import android.database.Cursor;
+import android.content.Intent;
 
 import android.net.Uri;
 
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 
 import android.support.design.widget.CoordinatorLayout;
 import android.support.design.widget.FloatingActionButton;
@@ -16,24 +20,35 @@ import android.support.design.widget.TextInputLayout;
 
 import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
 
 import android.text.Editable;
 import android.text.TextWatcher;
 
+import android.util.Log;
+
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.inputmethod.InputMethodManager;
 
+import android.widget.ImageView;
+
+import com.example.lawrence.addressbook.data.ContactCache;
+import com.example.lawrence.addressbook.data.ContactDetails;
+import com.example.lawrence.addressbook.data.ContactWriter;
 import com.example.lawrence.addressbook.data.DatabaseDescription.Contact;
+import com.example.lawrence.addressbook.data.PhotoStore;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
 
 // provides a GUI for adding new or editing existing contacts
 // by managing the TextInputLayouts and FAB (for adding/editing contacts).
 public class AddEditFragment
    extends Fragment
-   implements LoaderManager.LoaderCallbacks<Cursor> {
+   implements LoaderManager.LoaderCallbacks<ContactDetails> {
 
     // Nested interface defines callback methods implemented by MainActivity 
     // so that it can respond when a new or updated contact is saved.
@@ -50,6 +65,14 @@ public class AddEditFragment
     // a task on a separate thread so that main GUI thread remains responsive.
     private static final int CONTACT_LOADER = 0;
 
+    private static final String TAG = "AddEditFragment";
+
+    // request code of the photo picker started by the photo's ImageView
+    private static final int PICK_PHOTO_REQUEST = 1;
+
+    // key of the contact's photo in the saved instance state
+    private static final String STATE_PHOTO = "photo";
+
     // notify MainActivity AddEditFragmentListener
     private AddEditFragmentListener mListener;
 
@@ -59,6 +82,9 @@ public class AddEditFragment
     // flag to determine if adding (boolean == true) or editing (boolean == false) contact
     private boolean mAddingNewContact = true;
 
+    // name of the contact's photo in PhotoStore, saved with the contact; null if it has none
+    private String mPhoto;
+
     // view widgets
     private TextInputLayout mNameTextInputLayout;
     private TextInputLayout mPhoneTextInputLayout;
@@ -68,6 +94,7 @@ public class AddEditFragment
     private TextInputLayout mStateTextInputLayout;
     private TextInputLayout mZipTextInputLayout;
     private FloatingActionButton mSaveContactFAB;
+    private ImageView mPhotoImageView;
 
     // view container, used with SnackBars
     private CoordinatorLayout mCoordinatorLayout;
@@ -106,6 +133,14 @@ public class AddEditFragment
         mStateTextInputLayout = (TextInputLayout) view.findViewById(R.id.stateTextInputLayout);
         mZipTextInputLayout = (TextInputLayout) view.findViewById(R.id.zipTextInputLayout);
 
+        // the photo picked before a rotation, if any; the ContactLoader doesn't replace it
+        if( savedInstanceState != null ){
+            mPhoto = savedInstanceState.getString(STATE_PHOTO);
+        }
+        mPhotoImageView = (ImageView) view.findViewById(R.id.photoImageView);
+        mPhotoImageView.setOnClickListener(photoClicked);
+        AvatarLoader.getInstance(getActivity()).load(mPhotoImageView, mPhoto);
+
         // set FAB's event listener
         mSaveContactFAB = (FloatingActionButton) view.findViewById(R.id.saveFloatingActionButton);
         mSaveContactFAB.setOnClickListener(saveContactButtonClicked);
@@ -129,6 +164,90 @@ public class AddEditFragment
         return view;
     } // end onCreateView
 
+    @Override
+    public void onSaveInstanceState(Bundle outState){
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_PHOTO, mPhoto);
+    }
+
+    // let the user pick a photo from the gallery, camera, files and so on
+    private final View.OnClickListener photoClicked =
+        new View.OnClickListener() {
+            @Override
+            public void onClick(View v){
+                Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
+                intent.setType("image/*");
+                intent.addCategory(Intent.CATEGORY_OPENABLE);
+                startActivityForResult(intent, PICK_PHOTO_REQUEST);
+            }
+        };
+
+    // called with the image the user picked
+    @Override
+    public void onActivityResult(int requestCode, int resultCode, Intent data){
+        if( requestCode != PICK_PHOTO_REQUEST ){
+            super.onActivityResult(requestCode, resultCode, data);
+            return;
+        }
+        if( resultCode == Activity.RESULT_OK && data != null && data.getData() != null ){
+            savePhoto(data.getData());
+        }
+    }
+
+    // copy the picked image into PhotoStore, on a thread of its own: it can be a
+    // full-size camera photo, or one the picker still has to download.
+    // the contact can't be saved until the copy is done, since it refers to the copy.
+    private void savePhoto(final Uri imageUri){
+        mSaveContactFAB.setEnabled(false);
+
+        final Context context = getActivity().getApplicationContext();
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        new Thread(new Runnable() {
+            @Override
+            public void run(){
+                String photo = null;
+                try {
+                    InputStream image = context.getContentResolver().openInputStream(imageUri);
+                    if( image == null ){
+                        throw new FileNotFoundException("can't open " + imageUri);
+                    }
+                    try {
+                        photo = PhotoStore.save(context, image);
+                    } finally {
+                        image.close();
+                    }
+                } catch( IOException | SecurityException e ){
+                    Log.w(TAG, "can't copy photo " + imageUri, e);
+                }
+
+                final String savedPhoto = photo;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run(){
+                        onPhotoSaved(savedPhoto);
+                    }
+                });
+            }
+        }, "PhotoCopy").start();
+    }
+
+    // called on the main thread once the picked image is copied, with its name in
+    // PhotoStore, or null if it couldn't be copied. if the user has left the screen the
+    // copy is simply never referred to, and PurgeService sweeps it.
+    private void onPhotoSaved(String photo){
+        if( !isAdded() ){
+            return;
+        }
+
+        mSaveContactFAB.setEnabled(true);
+        if( photo == null ){
+            Snackbar.make(mCoordinatorLayout, R.string.photo_not_added, Snackbar.LENGTH_LONG).show();
+            return;
+        }
+        mPhoto = photo;
+        AvatarLoader.getInstance(getActivity()).load(mPhotoImageView, mPhoto);
+    }
+
     // detects when the text in the nameTextInputLayout's EditText changes
     // to hide or show mSaveButton FAB
     private final TextWatcher nameChangeListener = new TextWatcher() {
@@ -203,62 +322,78 @@ public class AddEditFragment
                 Contact.COLUMN_ZIP,
                 mZipTextInputLayout.getEditText().getText().toString()
         );
+        if( mPhoto != null ){
+            contentValues.put(Contact.COLUMN_PHOTO, mPhoto);
+        }
 
-        if( mAddingNewContact ){
-            // use Activity's ContentResolver to invoke
-            // insert on the AddressBookContentProvider
+        // the write happens on ContactWriter's thread; keep the user from saving twice meanwhile
+        mSaveContactFAB.setEnabled(false);
 
-            // insert db
-            Uri newContactUri = getActivity().getContentResolver()
-                    .insert(Contact.CONTENT_URI, contentValues);
-
-            // display msg if contact created or error
-            if( newContactUri != null ){
-                Snackbar.make(mCoordinatorLayout, R.string.contact_added, Snackbar.LENGTH_LONG).show();
-                mListener.onAddEditCompleted(newContactUri);
-            } else {
-                Snackbar.make(mCoordinatorLayout, R.string.contact_not_added, Snackbar.LENGTH_LONG).show();
-            }
+        // the cache outlives this fragment, which may be gone by the time the write completes
+        final ContactCache cache = ContactCache.getInstance(getActivity());
+        final ContentValues savedValues = contentValues;
 
+        if( mAddingNewContact ){
+            // insert db
+            ContactWriter.getInstance(getActivity()).insert(contentValues, new ContactWriter.Callback() {
+                @Override
+                public void onWriteCompleted(Uri newContactUri, int count){
+                    if( count > 0 ){
+                        // the detail screen shown next (on tablets) can read it from memory
+                        cache.replace(ContactDetails.fromContentValues(
+                            ContentUris.parseId(newContactUri), savedValues));
+                    }
+                    onSaveCompleted(newContactUri, count > 0,
+                        R.string.contact_added, R.string.contact_not_added);
+                }
+            });
         } else {
-            // use Activity's ContentResolver to invoke
-            // insert on the AddressBookContentProvider
-
             // update db
-            int updateRows = getActivity().getContentResolver().update(
-                mContactUri, contentValues, null, null
-            );
-
-            if( updateRows > 0 ){
-                mListener.onAddEditCompleted(mContactUri);
-                Snackbar.make(mCoordinatorLayout,
-                       R.string.contact_updated, Snackbar.LENGTH_LONG).show();
-            } else {
-                Snackbar.make(mCoordinatorLayout,
-                       R.string.contact_not_updated, Snackbar.LENGTH_LONG).show();
-            }
+            ContactWriter.getInstance(getActivity()).update(mContactUri, contentValues, new ContactWriter.Callback() {
+                @Override
+                public void onWriteCompleted(Uri contactUri, int count){
+                    if( count > 0 ){
+                        // replace the cached copy now rather than when the provider's
+                        // notification arrives, so the detail screen never shows the old values
+                        cache.replace(ContactDetails.fromContentValues(
+                            ContentUris.parseId(contactUri), savedValues));
+                    }
+                    onSaveCompleted(contactUri, count > 0,
+                        R.string.contact_updated, R.string.contact_not_updated);
+                }
+            });
         }
     } // end saveContact()
 
+    // called on the main thread once ContactWriter has saved the contact (or failed to)
+    private void onSaveCompleted(Uri contactUri, boolean saved, int savedMessage, int failedMessage){
+        // the user may have left the screen while the contact was being written
+        if( !isAdded() ){
+            return;
+        }
+
+        if( saved ){
+            Snackbar.make(mCoordinatorLayout, savedMessage, Snackbar.LENGTH_LONG).show();
+            mListener.onAddEditCompleted(contactUri);
+        } else {
+            mSaveContactFAB.setEnabled(true);
+            Snackbar.make(mCoordinatorLayout, failedMessage, Snackbar.LENGTH_LONG).show();
+        }
+    }
+
     //**************************************************
-    // LoaderManager.LoaderCallbacks<Cursor> methods that need to be overriden
+    // LoaderManager.LoaderCallbacks<ContactDetails> methods that need to be overriden
     //**************************************************
 
     // called by LoaderManager to create a Loader
     @Override
-    public Loader<Cursor> onCreateLoader(int id, Bundle args){
-        // create an appropriate CursorLoader based on the id argument;
+    public Loader<ContactDetails> onCreateLoader(int id, Bundle args){
+        // create an appropriate Loader based on the id argument;
         // only one Loader in this fragment, so the switch is unnecessary
         switch( id ){
             case CONTACT_LOADER:
-                return new CursorLoader(
-                        getActivity(),      
-                        mContactUri,         // Uri of contact to display
-                        null,               // null projection returns all cols
-                        null,               // null selection returns all rows
-                        null,               // selection args
-                        null                // sort order
-                );
+                // usually a hit in ContactCache, since DetailFragment just showed the contact
+                return new ContactLoader(getActivity(), mContactUri);
             default:
                 return null;
         }
@@ -266,26 +401,23 @@ public class AddEditFragment
 
     // called by LoaderManger when loading completes
     @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data){
+    public void onLoadFinished(Loader<ContactDetails> loader, ContactDetails row){
         // if contact exists in db, display it's data
-        if( data != null && data.moveToFirst() ){
-            // get column idx for each data item
-            int nameIdx = data.getColumnIndex(Contact.COLUMN_NAME);
-            int phoneIdx = data.getColumnIndex(Contact.COLUMN_PHONE);
-            int emailIdx = data.getColumnIndex(Contact.COLUMN_EMAIL);
-            int streetIdx = data.getColumnIndex(Contact.COLUMN_STREET);
-            int cityIdx = data.getColumnIndex(Contact.COLUMN_CITY);
-            int stateIdx = data.getColumnIndex(Contact.COLUMN_STATE);
-            int zipIdx = data.getColumnIndex(Contact.COLUMN_ZIP);
-
+        if( row != null ){
             // fill EditTexts with data from db
-            mNameTextInputLayout.getEditText().setText(data.getString(nameIdx));
-            mPhoneTextInputLayout.getEditText().setText(data.getString(phoneIdx));
-            mEmailTextInputLayout.getEditText().setText(data.getString(emailIdx));
-            mStreetTextInputLayout.getEditText().setText(data.getString(streetIdx));
-            mCityTextInputLayout.getEditText().setText(data.getString(cityIdx));
-            mStateTextInputLayout.getEditText().setText(data.getString(stateIdx));
-            mZipTextInputLayout.getEditText().setText(data.getString(zipIdx));
+            mNameTextInputLayout.getEditText().setText(row.getName());
+            mPhoneTextInputLayout.getEditText().setText(row.getPhone());
+            mEmailTextInputLayout.getEditText().setText(row.getEmail());
+            mStreetTextInputLayout.getEditText().setText(row.getStreet());
+            mCityTextInputLayout.getEditText().setText(row.getCity());
+            mStateTextInputLayout.getEditText().setText(row.getState());
+            mZipTextInputLayout.getEditText().setText(row.getZip());
+
+            // unless the user has already picked a new photo
+            if( mPhoto == null ){
+                mPhoto = row.getPhoto();
+                AvatarLoader.getInstance(getActivity()).load(mPhotoImageView, mPhoto);
+            }
 
             updateSaveButtonFAB();
         }
@@ -293,7 +425,7 @@ public class AddEditFragment
 
     // called by LoaderManager when Loader is being reset
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) { /* not used */ }
+    public void onLoaderReset(Loader<ContactDetails> loader) { /* not used */ }
 
 }
 
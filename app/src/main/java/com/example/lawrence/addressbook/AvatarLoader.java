@@ -0,0 +1,282 @@
+package com.example.lawrence.addressbook;
+
+import android.app.ActivityManager;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import android.support.v4.util.LruCache;
+
+import android.util.Log;
+
+import android.widget.ImageView;
+
+import com.example.lawrence.addressbook.data.PhotoStore;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// shows contact photos in the list's avatar ImageViews.
+// photos are looked up in three tiers:
+//  - decoded avatars in memory, an LRU bounded to a share of the app's heap, so
+//    scrolling back over rows just shown is a lookup on the main thread;
+//  - avatar-sized thumbnails on disk (PhotoStore.getThumbnailDirectory()), so a photo
+//    that isn't in memory is a small file decode rather than a full-size one;
+//  - the photo itself, decoded downsampled to about the avatar size and then written
+//    out as a thumbnail for next time.
+// anything past the first tier is done on a small pool of background threads, newest
+// request first, and a request is cancelled as soon as its row is rebound or recycled,
+// so a fling only decodes the rows it stops on.
+public class AvatarLoader {
+
+    private static final String TAG = "AvatarLoader";
+
+    // decoding threads; more would only compete for the same CPU and disk
+    private static final int THREADS = 2;
+
+    // share of the app's heap the decoded avatars may use
+    private static final int MEMORY_CACHE_DIVISOR = 8;
+
+    private static final int THUMBNAIL_QUALITY = 85;
+
+    private static AvatarLoader sInstance;
+
+    private final Context mContext;
+
+    // avatar width and height in pixels, and where thumbnails of that size are kept
+    private final int mSize;
+    private final File mThumbnailDirectory;
+
+    // decoded avatars by photo name, sized in bytes
+    private final LruCache<String, Bitmap> mMemoryCache;
+
+    private final ExecutorService mExecutor;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // the loader shared by the whole app, so the decoded avatars outlive any one screen
+    public static synchronized AvatarLoader getInstance(Context context){
+        if( sInstance == null ){
+            Context appContext = context.getApplicationContext();
+            sInstance = new AvatarLoader(appContext,
+                appContext.getResources().getDimensionPixelSize(R.dimen.avatar_size));
+        }
+        return sInstance;
+    }
+
+    AvatarLoader(Context context, int size){
+        mContext = context;
+        mSize = size;
+        mThumbnailDirectory = PhotoStore.getThumbnailDirectory(context, size);
+
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int maxBytes = activityManager.getMemoryClass() * 1024 * 1024 / MEMORY_CACHE_DIVISOR;
+        mMemoryCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String photo, Bitmap bitmap){
+                return bitmap.getRowBytes() * bitmap.getHeight();
+            }
+        };
+
+        // give the memory back when the app is in the background or the system is short
+        context.registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level){
+                if( level >= TRIM_MEMORY_BACKGROUND ){
+                    mMemoryCache.evictAll();
+                } else if( level >= TRIM_MEMORY_RUNNING_LOW ){
+                    mMemoryCache.trimToSize(mMemoryCache.size() / 2);
+                }
+            }
+
+            @Override
+            public void onLowMemory(){
+                mMemoryCache.evictAll();
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig){ /* not used */ }
+        });
+
+        // a LIFO queue: the rows the user scrolled to last are the ones still on screen
+        mExecutor = new ThreadPoolExecutor(THREADS, THREADS, 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingDeque<Runnable>() {
+                @Override
+                public boolean offer(Runnable runnable){
+                    return offerFirst(runnable);
+                }
+            },
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable){
+                    return new Thread(new Runnable() {
+                        @Override
+                        public void run(){
+                            // below the main thread, so decoding never costs a frame
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            runnable.run();
+                        }
+                    }, TAG);
+                }
+            });
+    }
+
+    // show the photo named photo (Contact.COLUMN_PHOTO) in view, or the placeholder if
+    // it's null. replaces whatever view was loading before. must be called on the main thread.
+    public void load(ImageView view, String photo){
+        cancel(view);
+
+        Bitmap bitmap = photo == null ? null : mMemoryCache.get(photo);
+        if( bitmap != null ){
+            view.setImageBitmap(bitmap);
+            return;
+        }
+
+        view.setImageResource(R.drawable.avatar_placeholder);
+        if( photo != null ){
+            Request request = new Request(view, photo);
+            view.setTag(R.id.avatar_request, request);
+            mExecutor.execute(request);
+        }
+    }
+
+    // stop loading into view, e.g. because its row was recycled
+    public void cancel(ImageView view){
+        Request request = (Request) view.getTag(R.id.avatar_request);
+        if( request != null ){
+            request.mCancelled = true;
+            view.setTag(R.id.avatar_request, null);
+        }
+    }
+
+    // one photo being loaded into one view; runs on the pool, then on the main thread
+    private class Request implements Runnable {
+        private final ImageView mView;
+        private final String mPhoto;
+
+        // only set on the main thread, read on the pool as a hint to skip the work
+        private volatile boolean mCancelled = false;
+
+        Request(ImageView view, String photo){
+            mView = view;
+            mPhoto = photo;
+        }
+
+        @Override
+        public void run(){
+            if( mCancelled ){
+                return; // the row was rebound before its turn came
+            }
+
+            final Bitmap bitmap = decode(mPhoto);
+            if( bitmap == null ){
+                return; // keep the placeholder
+            }
+            mMemoryCache.put(mPhoto, bitmap);
+
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run(){
+                    if( !mCancelled && mView.getTag(R.id.avatar_request) == Request.this ){
+                        mView.setTag(R.id.avatar_request, null);
+                        mView.setImageBitmap(bitmap);
+                    }
+                }
+            });
+        }
+    }
+
+    // the avatar of photo from its thumbnail, or else from the photo itself; null if
+    // neither can be read. runs on the pool.
+    private Bitmap decode(String photo){
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        // avatars have no transparency; half the memory of ARGB_8888
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+
+        File thumbnail = new File(mThumbnailDirectory, photo);
+        Bitmap bitmap = BitmapFactory.decodeFile(thumbnail.getPath(), options);
+        if( bitmap != null ){
+            return bitmap;
+        }
+
+        // read the photo's dimensions only, then decode it at the smallest power of two
+        // scale that still covers the avatar
+        String path = PhotoStore.getFile(mContext, photo).getPath();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if( options.outWidth <= 0 || options.outHeight <= 0 ){
+            return null;
+        }
+        options.inSampleSize = computeSampleSize(options.outWidth, options.outHeight, mSize);
+        options.inJustDecodeBounds = false;
+        bitmap = BitmapFactory.decodeFile(path, options);
+        if( bitmap == null ){
+            return null;
+        }
+
+        // the sampled photo can still be up to twice the avatar size; shrink it the rest
+        // of the way so the memory cache and the thumbnail only hold what's drawn
+        float scale = (float) mSize / Math.min(bitmap.getWidth(), bitmap.getHeight());
+        if( scale < 1 ){
+            Bitmap scaled = Bitmap.createScaledBitmap(bitmap,
+                Math.max(1, Math.round(bitmap.getWidth() * scale)),
+                Math.max(1, Math.round(bitmap.getHeight() * scale)), true);
+            if( scaled != bitmap ){
+                bitmap.recycle();
+            }
+            bitmap = scaled;
+        }
+
+        writeThumbnail(thumbnail, bitmap);
+        return bitmap;
+    }
+
+    // save bitmap as photo's thumbnail; a failure only means decoding the photo again later
+    private void writeThumbnail(File thumbnail, Bitmap bitmap){
+        if( !mThumbnailDirectory.isDirectory() && !mThumbnailDirectory.mkdirs() ){
+            return;
+        }
+
+        // written under a temporary name, so a half-written thumbnail is never read
+        File temp = new File(mThumbnailDirectory, thumbnail.getName() + "." + Thread.currentThread().getId());
+        try {
+            OutputStream out = new FileOutputStream(temp);
+            try {
+                bitmap.compress(Bitmap.CompressFormat.JPEG, THUMBNAIL_QUALITY, out);
+            } finally {
+                out.close();
+            }
+            if( !temp.renameTo(thumbnail) ){
+                temp.delete();
+            }
+        } catch( IOException e ){
+            Log.w(TAG, "can't write " + thumbnail, e);
+            temp.delete();
+        }
+    }
+
+    // the largest power of two that width x height can be divided by while its shorter
+    // side still covers size pixels
+    static int computeSampleSize(int width, int height, int size){
+        int sampleSize = 1;
+        int shorter = Math.min(width, height);
+        while( shorter / (sampleSize * 2) >= size ){
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+}
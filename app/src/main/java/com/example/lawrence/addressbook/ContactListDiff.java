@@ -0,0 +1,238 @@
+package com.example.lawrence.addressbook;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// works out how one contact list turned into another, as the insert, remove,
+// move and change events that RecyclerView.Adapter's notifyItem*() methods expect.
+// rows are matched by _id; a matched row whose content hash differs is "changed".
+// rows that kept their relative order (the longest increasing run) stay put and
+// only the rest are moved, so renaming one contact produces a single move.
+// compute() is meant to run on a background thread; dispatch() on the main thread.
+public class ContactListDiff {
+
+    // receives the events of a diff, in the order they must be applied
+    public interface Callback {
+        void onInserted(int position);
+        void onRemoved(int position);
+        void onMoved(int fromPosition, int toPosition);
+        void onChanged(int position);
+    }
+
+    private static final int INSERT = 0;
+    private static final int REMOVE = 1;
+    private static final int MOVE = 2;
+    private static final int CHANGE = 3;
+
+    // events as (type, position, toPosition) triples
+    private final int[] mOperations;
+    private final int mOperationCount;
+
+    private final int mOldSize;
+    private final int mNewSize;
+
+    private ContactListDiff(int[] operations, int operationCount, int oldSize, int newSize){
+        mOperations = operations;
+        mOperationCount = operationCount;
+        mOldSize = oldSize;
+        mNewSize = newSize;
+    }
+
+    // size of the list the events apply to, and of the list they produce
+    public int getOldSize(){ return mOldSize; }
+    public int getNewSize(){ return mNewSize; }
+
+    // number of events
+    public int getOperationCount(){ return mOperationCount; }
+
+    // send every event to callback, in order
+    public void dispatch(Callback callback){
+        for( int i = 0; i < mOperationCount; ++i ){
+            int position = mOperations[i * 3 + 1];
+            switch( mOperations[i * 3] ){
+                case INSERT:
+                    callback.onInserted(position);
+                    break;
+                case REMOVE:
+                    callback.onRemoved(position);
+                    break;
+                case MOVE:
+                    callback.onMoved(position, mOperations[i * 3 + 2]);
+                    break;
+                case CHANGE:
+                    callback.onChanged(position);
+                    break;
+            }
+        }
+    }
+
+    // diff two lists given as parallel arrays of _ids and content hashes.
+    // returns null if the lists differ by more than maxOperations events; redrawing
+    // the whole list is cheaper than animating that many changes.
+    public static ContactListDiff compute(long[] oldIds, int[] oldHashes,
+                                          long[] newIds, int[] newHashes, int maxOperations){
+        int oldSize = oldIds.length;
+        int newSize = newIds.length;
+
+        // position of every old row, by _id
+        Map<Long, Integer> oldPositions = new HashMap<>(oldSize * 2);
+        for( int i = 0; i < oldSize; ++i ){
+            oldPositions.put(oldIds[i], i);
+        }
+
+        // old position of every new row (-1 for inserted rows), and whether each old row is kept
+        int[] oldPositionOfNew = new int[newSize];
+        boolean[] kept = new boolean[oldSize];
+        int keptCount = 0;
+        for( int j = 0; j < newSize; ++j ){
+            Integer oldPosition = oldPositions.get(newIds[j]);
+            oldPositionOfNew[j] = oldPosition == null ? -1 : oldPosition;
+            if( oldPosition != null ){
+                kept[oldPosition] = true;
+                ++keptCount;
+            }
+        }
+
+        // too many rows came or went to animate them
+        if( (oldSize - keptCount) + (newSize - keptCount) > maxOperations ){
+            return null;
+        }
+
+        boolean[] stays = longestIncreasingRun(oldPositionOfNew);
+
+        int[] operations = new int[maxOperations * 3];
+        int count = 0;
+
+        // the list as the events so far have left it
+        long[] current = new long[Math.max(oldSize, newSize)];
+        System.arraycopy(oldIds, 0, current, 0, oldSize);
+        int currentSize = oldSize;
+
+        // 1. remove deleted rows, from the back so earlier positions don't shift
+        for( int i = oldSize - 1; i >= 0; --i ){
+            if( !kept[i] ){
+                operations[count * 3] = REMOVE;
+                operations[count * 3 + 1] = i;
+                ++count;
+                currentSize = removeAt(current, currentSize, i);
+            }
+        }
+
+        // 2. move kept rows that are out of order to just after the kept row that precedes them
+        long previousKeptId = 0;
+        boolean hasPreviousKept = false;
+        for( int j = 0; j < newSize; ++j ){
+            if( oldPositionOfNew[j] < 0 ){
+                continue;
+            }
+
+            if( !stays[j] ){
+                if( count == maxOperations ){
+                    return null;
+                }
+                int from = indexOf(current, currentSize, newIds[j]);
+                currentSize = removeAt(current, currentSize, from);
+                int to = hasPreviousKept ? indexOf(current, currentSize, previousKeptId) + 1 : 0;
+                currentSize = insertAt(current, currentSize, to, newIds[j]);
+
+                if( from != to ){
+                    operations[count * 3] = MOVE;
+                    operations[count * 3 + 1] = from;
+                    operations[count * 3 + 2] = to;
+                    ++count;
+                }
+            }
+
+            previousKeptId = newIds[j];
+            hasPreviousKept = true;
+        }
+
+        // 3. insert new rows; everything before position j is already in its final place
+        for( int j = 0; j < newSize; ++j ){
+            if( oldPositionOfNew[j] < 0 ){
+                if( count == maxOperations ){
+                    return null;
+                }
+                operations[count * 3] = INSERT;
+                operations[count * 3 + 1] = j;
+                ++count;
+                currentSize = insertAt(current, currentSize, j, newIds[j]);
+            }
+        }
+
+        // 4. rows that are still there but whose content changed
+        for( int j = 0; j < newSize; ++j ){
+            int oldPosition = oldPositionOfNew[j];
+            if( oldPosition >= 0 && oldHashes[oldPosition] != newHashes[j] ){
+                if( count == maxOperations ){
+                    return null;
+                }
+                operations[count * 3] = CHANGE;
+                operations[count * 3 + 1] = j;
+                ++count;
+            }
+        }
+
+        return new ContactListDiff(operations, count, oldSize, newSize);
+    }
+
+    // marks the kept rows (oldPositions[j] >= 0) that form the longest run whose old
+    // positions increase in new order; those rows can stay where they are
+    private static boolean[] longestIncreasingRun(int[] oldPositions){
+        int size = oldPositions.length;
+        int[] tails = new int[size];    // index in oldPositions of the smallest tail of each run length
+        int[] previous = new int[size]; // index of the element before each element in its run
+        int length = 0;
+
+        for( int j = 0; j < size; ++j ){
+            int value = oldPositions[j];
+            if( value < 0 ){
+                continue;
+            }
+
+            // binary search for the first run whose tail is >= value
+            int low = 0;
+            int high = length;
+            while( low < high ){
+                int middle = (low + high) >>> 1;
+                if( oldPositions[tails[middle]] < value ){
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            previous[j] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = j;
+            if( low == length ){
+                ++length;
+            }
+        }
+
+        boolean[] stays = new boolean[size];
+        for( int j = length > 0 ? tails[length - 1] : -1; j >= 0; j = previous[j] ){
+            stays[j] = true;
+        }
+        return stays;
+    }
+
+    private static int indexOf(long[] list, int size, long id){
+        for( int i = 0; i < size; ++i ){
+            if( list[i] == id ){
+                return i;
+            }
+        }
+        throw new IllegalStateException("id " + id + " not in list");
+    }
+
+    private static int removeAt(long[] list, int size, int position){
+        System.arraycopy(list, position + 1, list, position, size - position - 1);
+        return size - 1;
+    }
+
+    private static int insertAt(long[] list, int size, int position, long id){
+        System.arraycopy(list, position, list, position + 1, size - position);
+        list[position] = id;
+        return size + 1;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.lawrence.addressbook;
+
+import android.content.ContentUris;
+import android.content.Context;
+
+import android.database.Cursor;
+
+import android.net.Uri;
+
+import android.support.v4.content.AsyncTaskLoader;
+
+import com.example.lawrence.addressbook.data.ContactCache;
+import com.example.lawrence.addressbook.data.ContactDetails;
+import com.example.lawrence.addressbook.data.ContactProjection;
+import com.example.lawrence.addressbook.data.ContactRow;
+
+// loads one contact for DetailFragment and AddEditFragment.
+// if the contact is in ContactCache it's delivered straight away without a query;
+// otherwise it's queried on a background thread and added to the cache.
+// like CursorLoader, it reloads when the contact changes, and delivers null if the
+// contact no longer exists.
+public class ContactLoader extends AsyncTaskLoader<ContactDetails> {
+
+    private final Uri mContactUri;
+    private final ContactCache mCache;
+
+    // reloads the contact when its Uri (or the whole table's) is notified
+    private final ForceLoadContentObserver mObserver = new ForceLoadContentObserver();
+    private boolean mObserving = false;
+
+    // last contact delivered
+    private ContactDetails mContact;
+
+    public ContactLoader(Context context, Uri contactUri){
+        super(context);
+        mContactUri = contactUri;
+        mCache = ContactCache.getInstance(context);
+    }
+
+    @Override
+    protected void onStartLoading(){
+        if( !mObserving ){
+            getContext().getContentResolver().registerContentObserver(mContactUri, false, mObserver);
+            mObserving = true;
+        }
+
+        if( mContact == null ){
+            mContact = mCache.get(ContentUris.parseId(mContactUri));
+        }
+        if( mContact != null ){
+            deliverResult(mContact);
+        }
+        if( mContact == null || takeContentChanged() ){
+            forceLoad();
+        }
+    }
+
+    // runs on a background thread; always reads the database, since a reload
+    // means the cached copy may be out of date
+    @Override
+    public ContactDetails loadInBackground(){
+        long generation = mCache.getGeneration();
+
+        Cursor cursor = getContext().getContentResolver().query(
+            mContactUri, ContactProjection.DETAIL, null, null, null);
+        if( cursor == null ){
+            return null;
+        }
+        try {
+            if( !cursor.moveToFirst() ){
+                return null; // contact was deleted
+            }
+            ContactDetails contact = ContactDetails.fromRow(new ContactRow(cursor));
+            mCache.put(contact, generation);
+            return contact;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public void deliverResult(ContactDetails contact){
+        if( isReset() ){
+            return;
+        }
+        mContact = contact;
+        if( isStarted() ){
+            super.deliverResult(contact);
+        }
+    }
+
+    @Override
+    protected void onStopLoading(){
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset(){
+        super.onReset();
+        onStopLoading();
+        mContact = null;
+        if( mObserving ){
+            getContext().getContentResolver().unregisterContentObserver(mObserver);
+            mObserving = false;
+        }
+    }
+}
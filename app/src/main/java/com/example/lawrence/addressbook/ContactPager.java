@@ -0,0 +1,153 @@
+package com.example.lawrence.addressbook;
+
+import android.content.ContentResolver;
+
+import android.database.Cursor;
+
+import android.net.Uri;
+
+import android.os.AsyncTask;
+
+import android.support.v4.util.LruCache;
+
+import android.util.SparseBooleanArray;
+
+import com.example.lawrence.addressbook.data.ContactProjection;
+import com.example.lawrence.addressbook.data.DatabaseDescription.Contact;
+
+// ContactsAdapter.ListSource that reads the contact list one page at a time.
+// a page is queried on a background thread the first time one of its rows is bound,
+// and only the few most recently used pages stay open, so memory use stays the
+// same no matter how many contacts there are.
+// pages are read with keyset pagination: each page asks AddressBookContentProvider
+// for the rows after the last name/_id of the page before it.
+public class ContactPager implements ContactsAdapter.ListSource {
+
+    // callback used to tell ContactsAdapter that rows have been loaded
+    public interface PageListener {
+        // called on the main thread when the rows of a page become available
+        void onPageLoaded(int positionStart, int itemCount);
+    }
+
+    // number of rows per page, and number of pages kept open at once
+    static final int PAGE_SIZE = 100;
+    private static final int MAX_OPEN_PAGES = 5;
+
+    private final ContentResolver mResolver;
+    private final int mCount; // total number of contacts
+    private final PageListener mListener;
+
+    // open pages keyed by page number; pages pushed out of the cache are closed
+    private final LruCache<Integer, Cursor> mPages = new LruCache<Integer, Cursor>(MAX_OPEN_PAGES) {
+        @Override
+        protected void entryRemoved(boolean evicted, Integer page, Cursor oldCursor, Cursor newCursor){
+            oldCursor.close();
+        }
+    };
+
+    // name and _id of the last row of every page read so far.
+    // these are the keys used to read the page that follows.
+    private final String[] mPageEndNames;
+    private final long[] mPageEndIds;
+
+    // pages currently being queried
+    private final SparseBooleanArray mLoading = new SparseBooleanArray();
+
+    // page holding the current row
+    private Cursor mCursor;
+
+    private boolean mClosed = false;
+
+    // count is the total number of contacts, queried beforehand
+    public ContactPager(ContentResolver resolver, int count, PageListener listener){
+        mResolver = resolver;
+        mCount = count;
+        mListener = listener;
+
+        int pages = (count + PAGE_SIZE - 1) / PAGE_SIZE;
+        mPageEndNames = new String[pages];
+        mPageEndIds = new long[pages];
+    }
+
+    @Override
+    public int getCount(){ return mCount; }
+
+    @Override
+    public boolean moveToPosition(int position){
+        int page = position / PAGE_SIZE;
+        mCursor = mPages.get(page);
+
+        if( mCursor == null ){
+            loadPage(page);
+            return false;
+        }
+        return mCursor.moveToPosition(position % PAGE_SIZE);
+    }
+
+    @Override
+    public long getId(){ return mCursor.getLong(ContactProjection.LIST_ID); }
+
+    @Override
+    public String getName(){ return mCursor.getString(ContactProjection.LIST_NAME); }
+
+    @Override
+    public String getPhoto(){ return mCursor.getString(ContactProjection.LIST_PHOTO); }
+
+    // close every open page; pages that finish loading afterwards are closed right away
+    public void close(){
+        mClosed = true;
+        mCursor = null;
+        mPages.evictAll();
+    }
+
+    // query a page on a background thread unless it is already being queried
+    private void loadPage(final int page){
+        if( mClosed || mLoading.get(page) ){
+            return;
+        }
+        mLoading.put(page, true);
+
+        final Uri pageUri;
+        if( page == 0 ){
+            pageUri = Contact.buildPageUri(null, 0, PAGE_SIZE);
+        } else if( mPageEndNames[page - 1] != null ){
+            // seek past the last row of the previous page
+            pageUri = Contact.buildPageUri(mPageEndNames[page - 1], mPageEndIds[page - 1], PAGE_SIZE);
+        } else {
+            // the previous page was never read (e.g. the list jumped ahead), so use an offset
+            pageUri = Contact.buildPageUri(page * PAGE_SIZE, PAGE_SIZE);
+        }
+
+        new AsyncTask<Void, Void, Cursor>() {
+            @Override
+            protected Cursor doInBackground(Void... params){
+                Cursor cursor = mResolver.query(pageUri, ContactProjection.LIST, null, null, null);
+                if( cursor != null ){
+                    cursor.getCount(); // fill the cursor's window here instead of on the main thread
+                }
+                return cursor;
+            }
+
+            @Override
+            protected void onPostExecute(Cursor cursor){
+                mLoading.delete(page);
+                if( cursor == null ){
+                    return;
+                }
+                if( mClosed ){
+                    cursor.close();
+                    return;
+                }
+
+                // remember where this page ends so the next page can start after it
+                if( cursor.moveToLast() ){
+                    mPageEndNames[page] = cursor.getString(ContactProjection.LIST_NAME);
+                    mPageEndIds[page] = cursor.getLong(ContactProjection.LIST_ID);
+                }
+
+                mPages.put(page, cursor);
+                mListener.onPageLoaded(page * PAGE_SIZE, cursor.getCount());
+            }
+        }.execute();
+    }
+}
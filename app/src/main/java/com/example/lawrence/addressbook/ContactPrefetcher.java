@@ -0,0 +1,165 @@
+package com.example.lawrence.addressbook;
+
+import android.content.ContentResolver;
+import android.content.Context;
+
+import android.database.Cursor;
+
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+
+import com.example.lawrence.addressbook.data.ContactCache;
+import com.example.lawrence.addressbook.data.ContactDetails;
+import com.example.lawrence.addressbook.data.ContactProjection;
+import com.example.lawrence.addressbook.data.ContactRow;
+import com.example.lawrence.addressbook.data.DatabaseDescription.Contact;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// loads the full rows of the contacts on screen into ContactCache before they're tapped,
+// so DetailFragment can usually open a contact without touching the database.
+// once the list stops scrolling, the _ids of the visible contacts plus `depth` contacts
+// above and below them are read in a single "_id IN (...)" query on a background thread.
+// a fling cancels the prefetch in progress, since those rows are about to leave the screen.
+public class ContactPrefetcher extends RecyclerView.OnScrollListener {
+
+    // contacts prefetched above and below the visible ones.
+    // keep the whole window well under ContactCache's size, or prefetches evict each other.
+    public static final int DEFAULT_DEPTH = 10;
+
+    // prefetch queries allowed to run at once
+    public static final int DEFAULT_CONCURRENCY = 1;
+
+    // most _ids bound in one query; SQLite allows 999 parameters.
+    // a prefetch needing more is split into several queries, run `concurrency` at a time.
+    private static final int MAX_IDS_PER_QUERY = 500;
+
+    private final ContentResolver mResolver;
+    private final ContactCache mCache;
+    private final ContactsAdapter mAdapter;
+    private final LinearLayoutManager mLayoutManager;
+    private final int mDepth;
+    private final ExecutorService mExecutor;
+
+    // queries of the current prefetch, queued or running
+    private final List<Future<?>> mPending = new ArrayList<>();
+
+    public ContactPrefetcher(Context context, ContactsAdapter adapter, LinearLayoutManager layoutManager){
+        this(context, adapter, layoutManager, DEFAULT_DEPTH, DEFAULT_CONCURRENCY);
+    }
+
+    public ContactPrefetcher(Context context, ContactsAdapter adapter, LinearLayoutManager layoutManager,
+                             int depth, int concurrency){
+        mResolver = context.getContentResolver();
+        mCache = ContactCache.getInstance(context);
+        mAdapter = adapter;
+        mLayoutManager = layoutManager;
+        mDepth = depth;
+
+        // idle threads time out, so the prefetcher holds no threads while the list is still
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(concurrency, concurrency,
+            1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        executor.allowCoreThreadTimeOut(true);
+        mExecutor = executor;
+    }
+
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState){
+        switch( newState ){
+            case RecyclerView.SCROLL_STATE_IDLE:
+                prefetch();
+                break;
+            case RecyclerView.SCROLL_STATE_SETTLING:
+                // a fling: whatever is being loaded is about to scroll away
+                cancel();
+                break;
+        }
+    }
+
+    // prefetch around what's on screen now, e.g. when the list is first shown.
+    // called on the main thread.
+    public void prefetch(){
+        int first = mLayoutManager.findFirstVisibleItemPosition();
+        int last = mLayoutManager.findLastVisibleItemPosition();
+        if( first == RecyclerView.NO_POSITION || mExecutor.isShutdown() ){
+            return;
+        }
+        first = Math.max(0, first - mDepth);
+        last = Math.min(mAdapter.getItemCount() - 1, last + mDepth);
+
+        // collect the _ids that aren't cached yet; reading them is cheap, the rows are
+        // already in the list's cursor
+        long[] ids = new long[last - first + 1];
+        int count = 0;
+        for( int position = first; position <= last; ++position ){
+            long id = mAdapter.getContactId(position);
+            if( id != ContactsAdapter.NO_ROW_ID && !mCache.contains(id) ){
+                ids[count++] = id;
+            }
+        }
+        if( count == 0 ){
+            return;
+        }
+
+        cancel();
+        final long[] idsToLoad = ids;
+        for( int start = 0; start < count; start += MAX_IDS_PER_QUERY ){
+            final int queryStart = start;
+            final int queryEnd = Math.min(count, start + MAX_IDS_PER_QUERY);
+            mPending.add(mExecutor.submit(new Runnable() {
+                @Override
+                public void run(){
+                    load(idsToLoad, queryStart, queryEnd);
+                }
+            }));
+        }
+    }
+
+    // stop the prefetch in progress, if any
+    public void cancel(){
+        for( Future<?> query : mPending ){
+            query.cancel(true);
+        }
+        mPending.clear();
+    }
+
+    // cancel and release the background threads; the prefetcher can't be used afterwards
+    public void shutdown(){
+        cancel();
+        mExecutor.shutdownNow();
+    }
+
+    // read the contacts ids[start] .. ids[end - 1] into the cache; runs on a background thread
+    private void load(long[] ids, int start, int end){
+        long generation = mCache.getGeneration();
+
+        StringBuilder selection = new StringBuilder(Contact._ID + " IN (");
+        String[] selectionArgs = new String[end - start];
+        for( int i = start; i < end; ++i ){
+            selection.append(i == start ? "?" : ",?");
+            selectionArgs[i - start] = String.valueOf(ids[i]);
+        }
+        selection.append(')');
+
+        Cursor cursor = mResolver.query(Contact.CONTENT_URI, ContactProjection.DETAIL,
+            selection.toString(), selectionArgs, null);
+        if( cursor == null ){
+            return;
+        }
+        try {
+            ContactRow row = new ContactRow(cursor);
+            // stop early if cancelled; whatever was read so far is still correct
+            while( cursor.moveToNext() && !Thread.currentThread().isInterrupted() ){
+                mCache.put(ContactDetails.fromRow(row), generation);
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.lawrence.addressbook;
+
+import android.database.Cursor;
+
+import com.example.lawrence.addressbook.data.ContactProjection;
+
+import java.util.Arrays;
+
+// ContactsAdapter.ListSource holding a copy of the whole contact list in a few flat arrays:
+// every _id in a long[], and every name and photo name packed end to end in one char[]
+// with the offset where each row's text ends in an int[].
+// it's read once, on a background thread, from a cursor over ContactProjection.LIST;
+// after that binding a row is a couple of array reads, with no CursorWindow to fill
+// again when scrolling crosses a window boundary, and nothing to close.
+// ContactSnapshotLoader keeps it up to date.
+public class ContactSnapshot implements ContactsAdapter.ListSource {
+
+    // per row, the name then the photo name: row i's text runs from mEnds[2i - 1]
+    // (0 for the first row) to mEnds[2i + 1], and its name ends at mEnds[2i].
+    // a null name or photo is stored as an empty one; the photo names PhotoStore
+    // hands out are never empty.
+    private final long[] mIds;
+    private final char[] mChars;
+    private final int[] mEnds;
+
+    // position moveToPosition() moved to
+    private int mPosition = -1;
+
+    // which load this is, the load its diff was computed against, and the diff
+    // (null when there was no earlier snapshot or too much changed)
+    private final int mVersion;
+    private final int mBaseVersion;
+    private final ContactListDiff mDiff;
+
+    private ContactSnapshot(long[] ids, char[] chars, int[] ends,
+                            int version, int baseVersion, ContactListDiff diff){
+        mIds = ids;
+        mChars = chars;
+        mEnds = ends;
+        mVersion = version;
+        mBaseVersion = baseVersion;
+        mDiff = diff;
+    }
+
+    // a copy of the same rows, tagged with the loader's version and diff
+    ContactSnapshot withDiff(int version, int baseVersion, ContactListDiff diff){
+        return new ContactSnapshot(mIds, mChars, mEnds, version, baseVersion, diff);
+    }
+
+    // copy every row of cursor, queried with ContactProjection.LIST.
+    // hashes, if not null, receives a hash of each row's name and photo, as ContactsLoader
+    // computes them, so the loader can diff snapshots; it must hold getCount() ints.
+    public static ContactSnapshot read(Cursor cursor, int[] hashes){
+        int count = cursor.getCount();
+        long[] ids = new long[count];
+        int[] ends = new int[count * 2];
+
+        // grown as needed, then trimmed; most names are short
+        char[] chars = new char[Math.max(16, count * 12)];
+        int length = 0;
+
+        for( int i = 0; i < count && cursor.moveToPosition(i); ++i ){
+            ids[i] = cursor.getLong(ContactProjection.LIST_ID);
+            String name = cursor.getString(ContactProjection.LIST_NAME);
+            String photo = cursor.getString(ContactProjection.LIST_PHOTO);
+            if( hashes != null ){
+                hashes[i] = ContactsLoader.hashRow(name, photo);
+            }
+
+            int needed = length + (name == null ? 0 : name.length()) + (photo == null ? 0 : photo.length());
+            if( needed > chars.length ){
+                chars = Arrays.copyOf(chars, Math.max(needed, chars.length * 2));
+            }
+            length = append(name, chars, length);
+            ends[2 * i] = length;
+            length = append(photo, chars, length);
+            ends[2 * i + 1] = length;
+        }
+
+        return new ContactSnapshot(ids, Arrays.copyOf(chars, length), ends, 0, 0, null);
+    }
+
+    // copy s into chars at offset; returns the offset after it
+    private static int append(String s, char[] chars, int offset){
+        if( s == null ){
+            return offset;
+        }
+        s.getChars(0, s.length(), chars, offset);
+        return offset + s.length();
+    }
+
+    // the rows' _ids, in list order; shared, don't modify
+    long[] getIds(){ return mIds; }
+
+    public int getVersion(){ return mVersion; }
+
+    public int getBaseVersion(){ return mBaseVersion; }
+
+    public ContactListDiff getDiff(){ return mDiff; }
+
+    // bytes held by the arrays, including their headers; the ids are also the loader's
+    // record of the last list, so diffing costs it only an int[] of hashes more
+    public long getByteSize(){
+        final int ARRAY_HEADER = 16;
+        return 3 * ARRAY_HEADER + 8L * mIds.length + 2L * mChars.length + 4L * mEnds.length;
+    }
+
+    @Override
+    public int getCount(){ return mIds.length; }
+
+    // every row is always available
+    @Override
+    public boolean moveToPosition(int position){
+        if( position < 0 || position >= mIds.length ){
+            return false;
+        }
+        mPosition = position;
+        return true;
+    }
+
+    @Override
+    public long getId(){ return mIds[mPosition]; }
+
+    @Override
+    public String getName(){
+        int start = mPosition == 0 ? 0 : mEnds[2 * mPosition - 1];
+        return new String(mChars, start, mEnds[2 * mPosition] - start);
+    }
+
+    @Override
+    public String getPhoto(){
+        int start = mEnds[2 * mPosition];
+        int end = mEnds[2 * mPosition + 1];
+        return start == end ? null : new String(mChars, start, end - start);
+    }
+}
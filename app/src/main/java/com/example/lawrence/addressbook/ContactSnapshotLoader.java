@@ -0,0 +1,131 @@
+package com.example.lawrence.addressbook;
+
+import android.content.Context;
+
+import android.database.Cursor;
+
+import android.net.Uri;
+
+import android.support.v4.content.AsyncTaskLoader;
+
+import com.example.lawrence.addressbook.data.ContactProjection;
+
+// loads the contact list as a ContactSnapshot.
+// the query's cursor is read into the snapshot and closed on the background thread,
+// so no CursorWindow outlives the load. like ContactsLoader, it reloads whenever the
+// contacts change and diffs each new list against the previous one.
+public class ContactSnapshotLoader extends AsyncTaskLoader<ContactSnapshot> {
+
+    // more changes than this and the list is simply redrawn
+    private static final int MAX_ANIMATED_CHANGES = 200;
+
+    private final Uri mUri;
+    private final String mSortOrder;
+
+    // reloads the list when anything under mUri is notified
+    private final ForceLoadContentObserver mObserver = new ForceLoadContentObserver();
+    private boolean mObserving = false;
+
+    // last snapshot delivered
+    private ContactSnapshot mSnapshot;
+
+    // hashes and version of the last list loaded; its _ids are the snapshot's own
+    private long[] mIds;
+    private int[] mHashes;
+    private int mVersion = 0;
+
+    // whether each list loaded is saved as the StartupSnapshot
+    private boolean mSavingStartupSnapshot = false;
+
+    // loads uri with ContactProjection.LIST
+    public ContactSnapshotLoader(Context context, Uri uri, String sortOrder){
+        super(context);
+        mUri = uri;
+        mSortOrder = sortOrder;
+    }
+
+    // save the first rows of each list loaded as the StartupSnapshot;
+    // only for the loader of the whole contact list
+    public void setSavingStartupSnapshot(boolean saving){
+        mSavingStartupSnapshot = saving;
+    }
+
+    @Override
+    protected void onStartLoading(){
+        if( !mObserving ){
+            getContext().getContentResolver().registerContentObserver(mUri, true, mObserver);
+            mObserving = true;
+        }
+
+        if( mSnapshot != null ){
+            deliverResult(mSnapshot);
+        }
+        if( mSnapshot == null || takeContentChanged() ){
+            forceLoad();
+        }
+    }
+
+    // runs on a background thread
+    @Override
+    public ContactSnapshot loadInBackground(){
+        Cursor cursor = getContext().getContentResolver().query(
+            mUri, ContactProjection.LIST, null, null, mSortOrder);
+        if( cursor == null ){
+            return null;
+        }
+
+        int[] hashes;
+        ContactSnapshot snapshot;
+        try {
+            hashes = new int[cursor.getCount()];
+            snapshot = ContactSnapshot.read(cursor, hashes);
+        } finally {
+            cursor.close();
+        }
+
+        if( mSavingStartupSnapshot ){
+            StartupSnapshot.save(getContext(), snapshot);
+        }
+
+        ContactListDiff diff = null;
+        if( mIds != null ){
+            diff = ContactListDiff.compute(mIds, mHashes, snapshot.getIds(), hashes, MAX_ANIMATED_CHANGES);
+        }
+
+        int baseVersion = mVersion;
+        mIds = snapshot.getIds();
+        mHashes = hashes;
+        ++mVersion;
+        return snapshot.withDiff(mVersion, baseVersion, diff);
+    }
+
+    @Override
+    public void deliverResult(ContactSnapshot snapshot){
+        if( isReset() ){
+            return;
+        }
+        mSnapshot = snapshot;
+        if( isStarted() ){
+            super.deliverResult(snapshot);
+        }
+    }
+
+    @Override
+    protected void onStopLoading(){
+        cancelLoad();
+    }
+
+    // forget the last list once the loader is reset; there is nothing to diff against
+    @Override
+    protected void onReset(){
+        super.onReset();
+        onStopLoading();
+        mSnapshot = null;
+        mIds = null;
+        mHashes = null;
+        if( mObserving ){
+            getContext().getContentResolver().unregisterContentObserver(mObserver);
+            mObserving = false;
+        }
+    }
+}
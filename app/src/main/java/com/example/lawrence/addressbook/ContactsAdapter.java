@@ -10,28 +10,57 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
+import android.widget.ImageView;
 import android.widget.TextView;
 
+import com.example.lawrence.addressbook.data.ContactProjection;
 import com.example.lawrence.addressbook.data.DatabaseDescription.Contact;
 
 // subclass of RecyclerView.Adapter and is used by ContactsFragment's RecyclerView to bind the sorted list of contact names to the RecyclerView.
 public class ContactsAdapter extends RecyclerView.Adapter<ContactsAdapter.ViewHolder> {
 
-   private Cursor mCursor = null;
+   // rows the adapter binds; one Cursor holding every contact, a ContactPager
+   // that reads them a page at a time, or a ContactSnapshot copy of them all
+   private ListSource mSource = null;
    private final ContactClickListener mClickListener;
 
-   public ContactsAdapter(ContactClickListener clickListener){
+   // loads the contacts' photos into the rows' avatars
+   private final AvatarLoader mAvatarLoader;
+
+   // ContactsLoader version of the list being shown, NO_VERSION if it didn't come from one
+   private static final int NO_VERSION = -1;
+   private int mVersion = NO_VERSION;
+
+   // whether mSource is a StartupSnapshot, shown until the live list is loaded
+   private boolean mShowingStartupSnapshot = false;
+
+   // turns a ContactListDiff into the matching notifyItem*() calls
+   private final ContactListDiff.Callback mDiffCallback = new ContactListDiff.Callback() {
+       @Override
+       public void onInserted(int position){ notifyItemInserted(position); }
+
+       @Override
+       public void onRemoved(int position){ notifyItemRemoved(position); }
+
+       @Override
+       public void onMoved(int fromPosition, int toPosition){ notifyItemMoved(fromPosition, toPosition); }
+
+       @Override
+       public void onChanged(int position){ notifyItemChanged(position); }
+   };
+
+   public ContactsAdapter(ContactClickListener clickListener, AvatarLoader avatarLoader){
        mClickListener = clickListener;
+       mAvatarLoader = avatarLoader;
    }
 
    // set up new list item and it's ViewHolder by inflating layout
    // when RecyclerView is created.
    @Override
    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType){
-       // use Android's system template for a simple list, instead of
-       // our own custom layout.
+       // a photo and the contact's name
        View view = LayoutInflater.from(parent.getContext())
-          .inflate(android.R.layout.simple_list_item_1, parent, false);
+          .inflate(R.layout.contact_list_item, parent, false);
 
        // use ViewHolder's constructor to return a new ViewHolder.
        return new ViewHolder(view);
@@ -40,31 +69,169 @@ public class ContactsAdapter extends RecyclerView.Adapter<ContactsAdapter.ViewHo
    // set text of list item to display search tag
    @Override
    public void onBindViewHolder(ViewHolder holder, int position){
-       // move SQLite cursor to the contact that corresponds to current RecyclerView item's position
-       mCursor.moveToPosition(position);
-
-       // set ViewHolder's rowID by looking up the column number of Contact._ID
-       holder.setRowID(mCursor.getLong(mCursor.getColumnIndex(Contact._ID)));
+       // move the source to the contact that corresponds to current RecyclerView item's position
+       if( mSource.moveToPosition(position) ){
+           // set ViewHolder's rowID and the list item's text to the contact's name
+           holder.setRowID(mSource.getId());
+           holder.textView.setText(mSource.getName());
+           mAvatarLoader.load(holder.avatarView, mSource.getPhoto());
+       } else {
+           // row's page is still loading; it is rebound when the page arrives
+           holder.setRowID(NO_ROW_ID);
+           holder.textView.setText(null);
+           mAvatarLoader.load(holder.avatarView, null);
+       }
+   }
 
-       // set the list item's text to the contact's name
-       holder.textView.setText(
-               mCursor.getString(mCursor.getColumnIndex(Contact.COLUMN_NAME))
-       );
+   // a row scrolled out of sight no longer needs its photo
+   @Override
+   public void onViewRecycled(ViewHolder holder){
+       mAvatarLoader.cancel(holder.avatarView);
    }
 
-   // swap this adapters current Cursor for a new one
+   // swap this adapters current Cursor for a new one.
+   // if the cursor comes from ContactsLoader with a diff from the list being shown,
+   // only the rows that changed are updated; otherwise the whole list is redrawn.
    public void swapCursor(Cursor cursor){
-       mCursor = cursor;
+       ListSource source = cursor == null ? null : new CursorSource(cursor);
+
+       if( cursor instanceof ContactsLoader.DiffCursor ){
+           ContactsLoader.DiffCursor diffCursor = (ContactsLoader.DiffCursor) cursor;
+           swapDiffed(source, diffCursor.getDiff(), diffCursor.getBaseVersion(), diffCursor.getVersion());
+       } else {
+           swapSource(source);
+       }
+   }
+
+   // swap in a snapshot from ContactSnapshotLoader, updating only the rows that
+   // changed when it comes with a diff from the list being shown
+   public void swapSnapshot(ContactSnapshot snapshot){
+       if( snapshot == null ){
+           swapSource(null);
+       } else if( snapshot != mSource ){ // a restarted loader delivers the same one again
+           swapDiffed(snapshot, snapshot.getDiff(), snapshot.getBaseVersion(), snapshot.getVersion());
+       }
+   }
+
+   // show the first screenful saved by StartupSnapshot while the live list loads
+   public void showStartupSnapshot(ContactSnapshot snapshot){
+       swapSource(snapshot);
+       mShowingStartupSnapshot = true;
+   }
+
+   public boolean isShowingStartupSnapshot(){ return mShowingStartupSnapshot; }
+
+   // swap in source, which is version `version` of the list and differs from version
+   // `baseVersion` by diff (null if unknown)
+   private void swapDiffed(ListSource source, ContactListDiff diff, int baseVersion, int version){
+       // the first live list replacing the startup snapshot: usually it starts with the
+       // same rows, so the rows on screen stay as they are and the rest are added below
+       if( mShowingStartupSnapshot && source != null && startsWith(source, mSource) ){
+           int shown = mSource.getCount();
+           mSource = source;
+           mVersion = version;
+           mShowingStartupSnapshot = false;
+           if( source.getCount() > shown ){
+               notifyItemRangeInserted(shown, source.getCount() - shown);
+           }
+           return;
+       }
+
+       if( diff != null && mSource != null && mVersion == baseVersion
+           && diff.getOldSize() == mSource.getCount() ){
+           mSource = source;
+           mVersion = version;
+           diff.dispatch(mDiffCallback);
+           return;
+       }
+
+       swapSource(source);
+       mVersion = version;
+   }
+
+   // swap this adapters current source of rows for a new one
+   public void swapSource(ListSource source){
+       mSource = source;
+       mVersion = NO_VERSION;
+       mShowingStartupSnapshot = false;
        notifyDataSetChanged();
    }
 
+   // whether list's first rows show the same contacts, names and photos as every row of prefix
+   private static boolean startsWith(ListSource list, ListSource prefix){
+       int count = prefix.getCount();
+       if( list.getCount() < count ){
+           return false;
+       }
+       for( int i = 0; i < count; ++i ){
+           if( !list.moveToPosition(i) || !prefix.moveToPosition(i)
+               || list.getId() != prefix.getId()
+               || !sameText(list.getName(), prefix.getName())
+               || !sameText(list.getPhoto(), prefix.getPhoto()) ){
+               return false;
+           }
+       }
+       return true;
+   }
+
+   // a null name or photo shows the same as an empty one
+   private static boolean sameText(String a, String b){
+       return (a == null ? "" : a).equals(b == null ? "" : b);
+   }
+
    // return num of items that adapter binds
    @Override
    public int getItemCount() {
-       if( mCursor != null )     return mCursor.getCount();
+       if( mSource != null )     return mSource.getCount();
        else return 0;
    }
 
+   // row id of a list item whose contact isn't loaded yet
+   static final long NO_ROW_ID = -1;
+
+   // _id of the contact at position, or NO_ROW_ID if its row isn't loaded yet
+   public long getContactId(int position){
+       if( mSource == null || !mSource.moveToPosition(position) ){
+           return NO_ROW_ID;
+       }
+       return mSource.getId();
+   }
+
+   // the rows bound by the adapter
+   public interface ListSource {
+       int getCount();
+
+       // move to the row at position; returns false if that row isn't available yet
+       boolean moveToPosition(int position);
+
+       // _id, name and photo file name (Contact.COLUMN_PHOTO) of the current row
+       long getId();
+       String getName();
+       String getPhoto();
+   }
+
+   // ListSource over one Cursor holding every contact, queried with ContactProjection.LIST
+   static class CursorSource implements ListSource {
+       private final Cursor mCursor;
+
+       CursorSource(Cursor cursor){ mCursor = cursor; }
+
+       @Override
+       public int getCount(){ return mCursor.getCount(); }
+
+       @Override
+       public boolean moveToPosition(int position){ return mCursor.moveToPosition(position); }
+
+       @Override
+       public long getId(){ return mCursor.getLong(ContactProjection.LIST_ID); }
+
+       @Override
+       public String getName(){ return mCursor.getString(ContactProjection.LIST_NAME); }
+
+       @Override
+       public String getPhoto(){ return mCursor.getString(ContactProjection.LIST_PHOTO); }
+   }
+
    // interface implemented by MainActivity.
    // onClick() callback executes when user touch an item in the RecyclerView list
    public interface ContactClickListener {
@@ -75,18 +242,23 @@ public class ContactsAdapter extends RecyclerView.Adapter<ContactsAdapter.ViewHo
    // used to implement view-holder pattern.
    public class ViewHolder extends RecyclerView.ViewHolder {
        public TextView textView;
+       public ImageView avatarView;
        private long rowID;
 
        public ViewHolder(View view){
            super(view);
            textView = (TextView) view.findViewById(android.R.id.text1);
+           avatarView = (ImageView) view.findViewById(R.id.avatar);
 
            // attach listener to view
            view.setOnClickListener(
                 new View.OnClickListener(){
                     @Override
                     public void onClick(View view){
-                        mClickListener.onClick(Contact.buildContactUri(rowID));
+                        // ignore touches on rows that are still loading
+                        if( rowID != NO_ROW_ID ){
+                            mClickListener.onClick(Contact.buildContactUri(rowID));
+                        }
                     }
                 }
            );
@@ -15,6 +15,7 @@ import android.support.design.widget.FloatingActionButton;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 
 import android.content.Context;
 
@@ -50,6 +51,32 @@ public class ContactsFragment extends Fragment implements LoaderManager.LoaderCa
     // changes that need to be process have been processed (instead of
     // committing changes after every row changed).
     private static final int CONTACTS_LOADER = 0; // id's Loader
+    private static final int SECTIONS_LOADER = 1; // loads the fast scroller's sections
+
+    // how the list's rows are loaded:
+    // CURSOR_LOADING loads every contact into one Cursor (ContactsLoader).
+    // PAGED_LOADING reads the list a page at a time through a ContactPager, so
+    // memory use doesn't grow with the number of contacts. the Loader then
+    // only counts the contacts; it still reloads whenever the data changes.
+    // SNAPSHOT_LOADING copies every contact into a ContactSnapshot's flat arrays
+    // (ContactSnapshotLoader), so binding never refills a CursorWindow.
+    // the mode is the fragment's ARG_LIST_LOADING argument if it has one (see
+    // newInstance()), and R.integer.list_loading otherwise.
+    public static final int CURSOR_LOADING = 0;
+    public static final int PAGED_LOADING = 1;
+    public static final int SNAPSHOT_LOADING = 2;
+
+    // key of the list loading mode in the fragment's arguments
+    private static final String ARG_LIST_LOADING = "list_loading";
+
+    // sort order of the contact list
+    private static final String LIST_SORT_ORDER = Contact.COLUMN_NAME + " COLLATE NOCASE ASC";
+
+    // this list's loading mode
+    private int mListLoading;
+
+    // pager used by the adapter with PAGED_LOADING
+    private ContactPager mContactPager;
 
     // used to inform MainActivity when a contact is selected
     private ContactsFragmentListener mListener;
@@ -57,6 +84,41 @@ public class ContactsFragment extends Fragment implements LoaderManager.LoaderCa
     // adapter for RecyclerView
     private ContactsAdapter mContactsAdapter;
 
+    // the list's layout manager, used to jump to a section
+    private LinearLayoutManager mLayoutManager;
+
+    // the list, and the prefetcher that caches the details of the contacts shown in it
+    private RecyclerView mRecyclerView;
+    private ContactPrefetcher mContactPrefetcher;
+
+    // section letters along the side of the list, and where each section starts
+    private FastScrollerView mFastScroller;
+    private SectionIndex mSectionIndex = SectionIndex.EMPTY;
+
+    // a contact list loaded with the given mode, one of the *_LOADING constants,
+    // rather than the one in R.integer.list_loading
+    public static ContactsFragment newInstance(int listLoading){
+        Bundle args = new Bundle();
+        args.putInt(ARG_LIST_LOADING, listLoading);
+        ContactsFragment fragment = new ContactsFragment();
+        fragment.setArguments(args);
+        return fragment;
+    }
+
+    @Override
+    public void onCreate(Bundle savedInstanceState){
+        super.onCreate(savedInstanceState);
+
+        Bundle args = getArguments();
+        mListLoading = args != null && args.containsKey(ARG_LIST_LOADING)
+            ? args.getInt(ARG_LIST_LOADING)
+            : getResources().getInteger(R.integer.list_loading);
+        if( mListLoading != CURSOR_LOADING && mListLoading != PAGED_LOADING
+                && mListLoading != SNAPSHOT_LOADING ){
+            throw new IllegalArgumentException("Unknown list loading mode: " + mListLoading);
+        }
+    }
+
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
                              Bundle savedInstanceState) {
@@ -69,7 +131,8 @@ public class ContactsFragment extends Fragment implements LoaderManager.LoaderCa
         RecyclerView recyclerView = (RecyclerView) view.findViewById(R.id.recyclerView);
 
         // recyclerView should display items in a vertical list
-        recyclerView.setLayoutManager(new LinearLayoutManager(getActivity().getBaseContext()));
+        mLayoutManager = new LinearLayoutManager(getActivity().getBaseContext());
+        recyclerView.setLayoutManager(mLayoutManager);
 
 
         // create recyclerView's adapter and item click listener
@@ -79,16 +142,62 @@ public class ContactsFragment extends Fragment implements LoaderManager.LoaderCa
                 public void onClick(Uri contactUri){
                     mListener.onContactSelected(contactUri);
                 }
-            }
+            },
+            AvatarLoader.getInstance(getActivity())
         );
         recyclerView.setAdapter(mContactsAdapter);
 
+        // load the visible contacts' details whenever scrolling stops,
+        // so tapping one opens it from memory
+        mContactPrefetcher = new ContactPrefetcher(getActivity(), mContactsAdapter, mLayoutManager);
+        recyclerView.addOnScrollListener(mContactPrefetcher);
+        mRecyclerView = recyclerView;
+
         // attach a customer ItemDecorator to draw dividers between items
         recyclerView.addItemDecoration(new ItemDivider(getContext()));
 
         // improves performance if RecyclerView's layout size never changes
         recyclerView.setHasFixedSize(true);
 
+        // on a fresh start, show the first screenful of contacts saved last time straight
+        // away; the adapter reconciles it with the live list once that's loaded.
+        // a paged list would read its first page about as fast, so it doesn't need one.
+        if( mListLoading != PAGED_LOADING && getLoaderManager().getLoader(CONTACTS_LOADER) == null ){
+            ContactSnapshot startupSnapshot = StartupSnapshot.load(getActivity());
+            if( startupSnapshot != null ){
+                mContactsAdapter.showStartupSnapshot(startupSnapshot);
+            }
+        }
+
+        // time the first frame that shows contacts (see StartupTimer)
+        recyclerView.getViewTreeObserver().addOnPreDrawListener(
+            new ViewTreeObserver.OnPreDrawListener(){
+                @Override
+                public boolean onPreDraw(){
+                    if( mRecyclerView.getChildCount() > 0 ){
+                        mRecyclerView.getViewTreeObserver().removeOnPreDrawListener(this);
+                        StartupTimer.onFirstListFrame(mContactsAdapter.isShowingStartupSnapshot());
+                    }
+                    return true;
+                }
+            }
+        );
+
+        // jump straight to the first contact of the section the user touches
+        mFastScroller = (FastScrollerView) view.findViewById(R.id.fastScroller);
+        mFastScroller.setSectionListener(
+            new FastScrollerView.SectionListener(){
+                @Override
+                public void onSectionSelected(int section){
+                    int position = Math.min(mSectionIndex.getPositionForSection(section),
+                        mContactsAdapter.getItemCount() - 1);
+                    if( position >= 0 ){
+                        mLayoutManager.scrollToPositionWithOffset(position, 0);
+                    }
+                }
+            }
+        );
+
         // get FAB and configure its listener
         FloatingActionButton addButton =
            (FloatingActionButton) view.findViewById(R.id.addButton);
@@ -112,6 +221,14 @@ public class ContactsFragment extends Fragment implements LoaderManager.LoaderCa
         mListener = (ContactsFragmentListener) context;
     }
 
+    // close the pager's open pages and stop prefetching when the list goes away
+    @Override
+    public void onDestroyView(){
+        super.onDestroyView();
+        closeContactPager();
+        mContactPrefetcher.shutdown();
+    }
+
     // remove ContactsFragmentListener when fragment detached
     // we attach/detach when fragment is fore/back ground to improve performance
     // and conserve battery life.
@@ -127,12 +244,12 @@ public class ContactsFragment extends Fragment implements LoaderManager.LoaderCa
     @Override
     public void onActivityCreated(Bundle savedInstanceState){
         super.onActivityCreated(savedInstanceState);
-        getLoaderManager().initLoader(CONTACTS_LOADER, null, this);
-    }
-
-    // called from MainActivity when other Fragment's update database
-    public void updateContactList(){
-        mContactsAdapter.notifyDataSetChanged();
+        if( mListLoading == SNAPSHOT_LOADING ){
+            getLoaderManager().initLoader(CONTACTS_LOADER, null, mSnapshotCallbacks);
+        } else {
+            getLoaderManager().initLoader(CONTACTS_LOADER, null, this);
+        }
+        getLoaderManager().initLoader(SECTIONS_LOADER, null, this);
     }
 
     // called by LoaderManager to create a Loader
@@ -142,13 +259,33 @@ public class ContactsFragment extends Fragment implements LoaderManager.LoaderCa
         // we use switch even though only 1 case because it is good a programming practice.
         switch( id ){
             case CONTACTS_LOADER:
-                return new CursorLoader(
+                if( mListLoading == PAGED_LOADING ){
+                    // only count the contacts; ContactPager reads the rows
+                    return new CursorLoader(
+                            getActivity(),
+                            Contact.CONTENT_URI,
+                            new String[]{ "COUNT(*)" },
+                            null,
+                            null,
+                            null);
+                }
+                // ContactsLoader also diffs each new list against the last one so
+                // the adapter only updates the rows that changed
+                ContactsLoader contactsLoader = new ContactsLoader(
                         getActivity(),
                         Contact.CONTENT_URI, // Uri of contacts table
-                        null, // null for all columns
-                        null, // null for all rows
-                        null, // no selection args
-                        Contact.COLUMN_NAME + " COLLATE NOCASE ASC"); // sort order
+                        LIST_SORT_ORDER);
+                contactsLoader.setSavingStartupSnapshot(true);
+                return contactsLoader;
+            case SECTIONS_LOADER:
+                // one row per section with its size; reloaded whenever a contact changes
+                return new CursorLoader(
+                        getActivity(),
+                        Contact.SECTIONS_URI,
+                        null,
+                        null,
+                        null,
+                        null);
             default:
                 return null;
         }
@@ -157,12 +294,96 @@ public class ContactsFragment extends Fragment implements LoaderManager.LoaderCa
     // called by LoaderManager when loading completes
     @Override
     public void onLoadFinished(Loader<Cursor> loader, Cursor data){
-        mContactsAdapter.swapCursor(data);
+        if( loader.getId() == SECTIONS_LOADER ){
+            mSectionIndex = buildSectionIndex(data);
+            mFastScroller.setSectionIndex(mSectionIndex);
+        } else if( mListLoading == PAGED_LOADING ){
+            // the contacts changed (or were counted for the first time), so start a new pager
+            closeContactPager();
+            int count = data != null && data.moveToFirst() ? data.getInt(0) : 0;
+            mContactPager = new ContactPager(
+                getActivity().getContentResolver(), count,
+                new ContactPager.PageListener(){
+                    @Override
+                    public void onPageLoaded(int positionStart, int itemCount){
+                        mContactsAdapter.notifyItemRangeChanged(positionStart, itemCount);
+                    }
+                }
+            );
+            mContactsAdapter.swapSource(mContactPager);
+        } else {
+            mContactsAdapter.swapCursor(data);
+            prefetchAfterLayout();
+        }
+    }
+
+    // LoaderCallbacks for the contact list when it's loaded as a ContactSnapshot
+    private final LoaderManager.LoaderCallbacks<ContactSnapshot> mSnapshotCallbacks =
+        new LoaderManager.LoaderCallbacks<ContactSnapshot>() {
+            @Override
+            public Loader<ContactSnapshot> onCreateLoader(int id, Bundle args){
+                ContactSnapshotLoader snapshotLoader =
+                    new ContactSnapshotLoader(getActivity(), Contact.CONTENT_URI, LIST_SORT_ORDER);
+                snapshotLoader.setSavingStartupSnapshot(true);
+                return snapshotLoader;
+            }
+
+            @Override
+            public void onLoadFinished(Loader<ContactSnapshot> loader, ContactSnapshot snapshot){
+                mContactsAdapter.swapSnapshot(snapshot);
+                prefetchAfterLayout();
+            }
+
+            @Override
+            public void onLoaderReset(Loader<ContactSnapshot> loader){
+                mContactsAdapter.swapSnapshot(null);
+            }
+        };
+
+    // prefetch the rows on screen once the new list has been laid out
+    private void prefetchAfterLayout(){
+        mRecyclerView.post(new Runnable() {
+            @Override
+            public void run(){
+                mContactPrefetcher.prefetch();
+            }
+        });
     }
 
     // called by LoaderManager when Loader is being reset
     @Override
     public void onLoaderReset(Loader<Cursor> loader) {
+        if( loader.getId() == SECTIONS_LOADER ){
+            mSectionIndex = SectionIndex.EMPTY;
+            mFastScroller.setSectionIndex(mSectionIndex);
+            return;
+        }
         mContactsAdapter.swapCursor(null);
+        closeContactPager();
+    }
+
+    // read the sections cursor (a few dozen rows at most) into a SectionIndex
+    private static SectionIndex buildSectionIndex(Cursor data){
+        if( data == null ){
+            return SectionIndex.EMPTY;
+        }
+        int count = data.getCount();
+        String[] firstCharacters = new String[count];
+        int[] sizes = new int[count];
+        int sectionColumn = data.getColumnIndex(Contact.COLUMN_SECTION);
+        int sizeColumn = data.getColumnIndex(Contact.COLUMN_SECTION_SIZE);
+        for( int i = 0; i < count && data.moveToPosition(i); ++i ){
+            firstCharacters[i] = data.getString(sectionColumn);
+            sizes[i] = data.getInt(sizeColumn);
+        }
+        return SectionIndex.build(firstCharacters, sizes);
+    }
+
+    // close the current pager, if any
+    private void closeContactPager(){
+        if( mContactPager != null ){
+            mContactPager.close();
+            mContactPager = null;
+        }
     }
 }
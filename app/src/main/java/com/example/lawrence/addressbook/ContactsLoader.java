@@ -0,0 +1,112 @@
+package com.example.lawrence.addressbook;
+
+import android.content.Context;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+
+import android.net.Uri;
+
+import android.support.v4.content.CursorLoader;
+
+import com.example.lawrence.addressbook.data.ContactProjection;
+
+// CursorLoader for the contact list.
+// after each load it also works out, still on the background thread, how the new
+// list differs from the previous one, so ContactsAdapter can update only the rows
+// that changed instead of redrawing the whole list.
+public class ContactsLoader extends CursorLoader {
+
+    // more changes than this and the list is simply redrawn
+    private static final int MAX_ANIMATED_CHANGES = 200;
+
+    // the list delivered by this loader, plus the diff from the list before it.
+    // each load gets a version number so the adapter can check that a diff
+    // starts from the list it is actually showing.
+    public static class DiffCursor extends CursorWrapper {
+        private final int mVersion;
+        private final int mBaseVersion;
+        private final ContactListDiff mDiff;
+
+        DiffCursor(Cursor cursor, int version, int baseVersion, ContactListDiff diff){
+            super(cursor);
+            mVersion = version;
+            mBaseVersion = baseVersion;
+            mDiff = diff;
+        }
+
+        public int getVersion(){ return mVersion; }
+
+        // version of the list the diff applies to
+        public int getBaseVersion(){ return mBaseVersion; }
+
+        // null when there is no previous list or too much changed
+        public ContactListDiff getDiff(){ return mDiff; }
+    }
+
+    // _ids, content hashes and version of the last list loaded
+    private long[] mIds;
+    private int[] mHashes;
+    private int mVersion = 0;
+
+    // whether each list loaded is saved as the StartupSnapshot
+    private boolean mSavingStartupSnapshot = false;
+
+    // loads uri with ContactProjection.LIST
+    public ContactsLoader(Context context, Uri uri, String sortOrder){
+        super(context, uri, ContactProjection.LIST, null, null, sortOrder);
+    }
+
+    // save the first rows of each list loaded as the StartupSnapshot;
+    // only for the loader of the whole contact list
+    public void setSavingStartupSnapshot(boolean saving){
+        mSavingStartupSnapshot = saving;
+    }
+
+    @Override
+    public Cursor loadInBackground(){
+        Cursor cursor = super.loadInBackground();
+        if( cursor == null ){
+            return null;
+        }
+
+        // read the _id and a hash of the displayed name and photo of every row
+        int count = cursor.getCount();
+        long[] ids = new long[count];
+        int[] hashes = new int[count];
+        for( int i = 0; i < count && cursor.moveToPosition(i); ++i ){
+            ids[i] = cursor.getLong(ContactProjection.LIST_ID);
+            String name = cursor.getString(ContactProjection.LIST_NAME);
+            String photo = cursor.getString(ContactProjection.LIST_PHOTO);
+            hashes[i] = hashRow(name, photo);
+        }
+
+        if( mSavingStartupSnapshot ){
+            StartupSnapshot.save(getContext(), new ContactsAdapter.CursorSource(cursor));
+        }
+
+        ContactListDiff diff = null;
+        if( mIds != null ){
+            diff = ContactListDiff.compute(mIds, mHashes, ids, hashes, MAX_ANIMATED_CHANGES);
+        }
+
+        int baseVersion = mVersion;
+        mIds = ids;
+        mHashes = hashes;
+        ++mVersion;
+        return new DiffCursor(cursor, mVersion, baseVersion, diff);
+    }
+
+    // hash of what a row displays; rows whose hash changed are rebound
+    static int hashRow(String name, String photo){
+        return (name == null ? 0 : name.hashCode()) * 31 + (photo == null ? 0 : photo.hashCode());
+    }
+
+    // forget the last list once the loader is reset; there is nothing to diff against
+    @Override
+    protected void onReset(){
+        super.onReset();
+        mIds = null;
+        mHashes = null;
+    }
+}
@@ -3,19 +3,19 @@ package com.example.lawrence.addressbook;
 import android.app.AlertDialog;
 import android.app.Dialog;
 
+import android.content.ContentUris;
 import android.content.Context;
 import android.content.DialogInterface;
 
-import android.database.Cursor;
-
 import android.net.Uri;
 
 import android.os.Bundle;
 
+import android.support.design.widget.Snackbar;
+
 import android.support.v4.app.DialogFragment;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
 
 import android.view.LayoutInflater;
@@ -27,13 +27,15 @@ import android.view.ViewGroup;
 
 import android.widget.TextView;
 
-import com.example.lawrence.addressbook.data.DatabaseDescription.Contact;
+import com.example.lawrence.addressbook.data.ContactCache;
+import com.example.lawrence.addressbook.data.ContactDetails;
+import com.example.lawrence.addressbook.data.ContactWriter;
 
 // class manages the styled TextViews that display a selected contact's details
 // and app bar items that enable user to edit/delete the currently displayed
 // contact.
 public class DetailFragment extends Fragment
-    implements LoaderManager.LoaderCallbacks<Cursor> {
+    implements LoaderManager.LoaderCallbacks<ContactDetails> {
 
     // the nested interface defines callback methods implemented by MainActivity
     // to respond when a contact is deleted or when a user touched the app bar
@@ -42,7 +44,7 @@ public class DetailFragment extends Fragment
     // pass Uri of contact to edit to DetailFragmentListener
     // this methods are implemented in MainActivity.
     public interface DetailFragmentListener{
-        void onContactDeleted();
+        void onContactDeleted(Uri contactUri);
         void onEditContact(Uri contactUri);
     }
 
@@ -157,14 +159,34 @@ public class DetailFragment extends Fragment
                     new DialogInterface.OnClickListener(){
                         @Override
                         public void onClick(DialogInterface dialog, int button){
-                            // use Activity's ContentResolver to invoke delete
-                            // on the AddressBookContentProvider
-                            getActivity().getContentResolver().delete(
-                                contactUri, null, null
-                            );
-
-                            // notify listener
-                            mListener.onContactDeleted(); 
+                            // the cache outlives this fragment, which may be gone by
+                            // the time the delete completes
+                            final ContactCache cache = ContactCache.getInstance(getActivity());
+
+                            // delete on ContactWriter's thread, through the AddressBookContentProvider
+                            ContactWriter.getInstance(getActivity()).delete(contactUri,
+                                new ContactWriter.Callback() {
+                                    @Override
+                                    public void onWriteCompleted(Uri uri, int count){
+                                        if( count > 0 ){
+                                            // don't let the detail screen reopen the deleted contact
+                                            // from memory before the provider's notification arrives
+                                            cache.remove(ContentUris.parseId(uri));
+                                        }
+
+                                        // the user may already have left the screen
+                                        if( !DetailFragment.this.isAdded() ){
+                                            return;
+                                        }
+                                        if( count > 0 ){
+                                            mListener.onContactDeleted(uri);
+                                        } else {
+                                            // nothing was deleted; stay on the contact
+                                            Snackbar.make(DetailFragment.this.getView(),
+                                                R.string.contact_not_deleted, Snackbar.LENGTH_LONG).show();
+                                        }
+                                    }
+                                });
                         }
                     }
             );
@@ -178,59 +200,44 @@ public class DetailFragment extends Fragment
 
     // called by LoaderManager to create a Loader
     @Override
-    public Loader<Cursor> onCreateLoader(int id, Bundle args){
-        // create an appropriate CursorLoader based on the id arg,
+    public Loader<ContactDetails> onCreateLoader(int id, Bundle args){
+        // create an appropriate Loader based on the id arg,
 
-        CursorLoader cursorLoader;
+        ContactLoader contactLoader;
 
         // pick the right Loader to make based on id passed
         switch( id ){
             case CONTACT_LOADER:
-                cursorLoader = new CursorLoader(
-                        getActivity(),
-                        contactUri,
-                        null,
-                        null,
-                        null,
-                        null
-                );
+                // delivers the contact straight from ContactCache if it's there
+                contactLoader = new ContactLoader(getActivity(), contactUri);
                 break;
             default:
-                cursorLoader = null;
+                contactLoader = null;
                 break;
         }
 
-        return cursorLoader;
+        return contactLoader;
     }
 
     // called by LoaderManager when loading completes
     @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data){
+    public void onLoadFinished(Loader<ContactDetails> loader, ContactDetails row){
         // if contact exists in db, display its data
-        if( data != null && data.moveToFirst() ){
-            // get column idx for each data item
-            int nameIdx = data.getColumnIndex(Contact.COLUMN_NAME);
-            int phoneIdx = data.getColumnIndex(Contact.COLUMN_PHONE);
-            int emailIdx = data.getColumnIndex(Contact.COLUMN_EMAIL);
-            int streetIdx = data.getColumnIndex(Contact.COLUMN_STREET);
-            int cityIdx = data.getColumnIndex(Contact.COLUMN_CITY);
-            int stateIdx = data.getColumnIndex(Contact.COLUMN_STATE);
-            int zipIdx = data.getColumnIndex(Contact.COLUMN_ZIP);
-
+        if( row != null ){
             // fill TextViews with retrieved data
-            mNameTextView.setText(data.getString(nameIdx));
-            mPhoneTextView.setText(data.getString(phoneIdx));
-            mEmailTextView.setText(data.getString(emailIdx));
-            mStreetTextView.setText(data.getString(streetIdx));
-            mCityTextView.setText(data.getString(cityIdx));
-            mStateTextView.setText(data.getString(stateIdx));
-            mZipTextView.setText(data.getString(zipIdx));
+            mNameTextView.setText(row.getName());
+            mPhoneTextView.setText(row.getPhone());
+            mEmailTextView.setText(row.getEmail());
+            mStreetTextView.setText(row.getStreet());
+            mCityTextView.setText(row.getCity());
+            mStateTextView.setText(row.getState());
+            mZipTextView.setText(row.getZip());
         }
     }
 
     // call by LoaderManager when Loader is being reset
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) { /* not used */ }
+    public void onLoaderReset(Loader<ContactDetails> loader) { /* not used */ }
 
 }
 
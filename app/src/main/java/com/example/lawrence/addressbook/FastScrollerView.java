@@ -0,0 +1,120 @@
+package com.example.lawrence.addressbook;
+
+import android.content.Context;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import android.support.v4.content.ContextCompat;
+
+import android.util.AttributeSet;
+import android.util.TypedValue;
+
+import android.view.MotionEvent;
+import android.view.View;
+
+// strip of section letters drawn down the side of the contact list.
+// touching or dragging along it reports the section under the finger, which
+// ContactsFragment turns into a jump to that section's first contact.
+// if there are more sections than fit, only every few letters are drawn, but
+// every section can still be reached by dragging.
+public class FastScrollerView extends View {
+
+    // told which section the user picked
+    public interface SectionListener {
+        void onSectionSelected(int section);
+    }
+
+    private static final float TEXT_SIZE_SP = 12;
+
+    private SectionIndex mIndex = SectionIndex.EMPTY;
+    private SectionListener mListener;
+
+    private final Paint mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final int mTextColor;
+    private final int mHighlightColor;
+
+    // section under the finger, -1 when not touched
+    private int mTouchedSection = -1;
+
+    public FastScrollerView(Context context){
+        this(context, null);
+    }
+
+    public FastScrollerView(Context context, AttributeSet attrs){
+        super(context, attrs);
+        mTextColor = Color.GRAY;
+        mHighlightColor = ContextCompat.getColor(context, R.color.colorAccent);
+        mTextPaint.setTextAlign(Paint.Align.CENTER);
+        mTextPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP,
+            TEXT_SIZE_SP, getResources().getDisplayMetrics()));
+    }
+
+    public void setSectionIndex(SectionIndex index){
+        mIndex = index;
+        mTouchedSection = -1;
+        invalidate();
+    }
+
+    public void setSectionListener(SectionListener listener){
+        mListener = listener;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas){
+        int sections = mIndex.getSectionCount();
+        if( sections == 0 ){
+            return;
+        }
+
+        float slotHeight = getSlotHeight(sections);
+        // skip labels so they never overlap
+        int step = (int) Math.ceil(mTextPaint.getTextSize() / slotHeight);
+        float x = getPaddingLeft() + (getWidth() - getPaddingLeft() - getPaddingRight()) / 2f;
+        float baselineOffset = -(mTextPaint.ascent() + mTextPaint.descent()) / 2;
+
+        for( int section = 0; section < sections; section += step ){
+            float centerY = getPaddingTop() + slotHeight * (section + 0.5f);
+            mTextPaint.setColor(section == mTouchedSection ? mHighlightColor : mTextColor);
+            canvas.drawText(mIndex.getLabel(section), x, centerY + baselineOffset, mTextPaint);
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event){
+        int sections = mIndex.getSectionCount();
+        if( sections == 0 ){
+            return false;
+        }
+
+        switch( event.getActionMasked() ){
+            case MotionEvent.ACTION_DOWN:
+                // keep the list from treating the drag as a scroll
+                getParent().requestDisallowInterceptTouchEvent(true);
+                // fall through
+            case MotionEvent.ACTION_MOVE:
+                int section = (int) ((event.getY() - getPaddingTop()) / getSlotHeight(sections));
+                section = Math.max(0, Math.min(sections - 1, section));
+                if( section != mTouchedSection ){
+                    mTouchedSection = section;
+                    invalidate();
+                    if( mListener != null ){
+                        mListener.onSectionSelected(section);
+                    }
+                }
+                return true;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                mTouchedSection = -1;
+                invalidate();
+                return true;
+        }
+        return super.onTouchEvent(event);
+    }
+
+    // height given to each section along the strip
+    private float getSlotHeight(int sections){
+        return (float) (getHeight() - getPaddingTop() - getPaddingBottom()) / sections;
+    }
+}
@@ -16,6 +16,9 @@ import android.view.MenuItem;
 
 import android.net.Uri;
 
+import com.example.lawrence.addressbook.data.ContactWriter;
+import com.example.lawrence.addressbook.data.PurgeService;
+
 
 // hosts the app's fragments and handles communication between them
 // on phones, MainActivity displays one Fragment at a time, starting with ContactsFragment.
@@ -37,10 +40,25 @@ public class MainActivity
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        if( savedInstanceState == null ){
+            StartupTimer.start(); // times the launch until the contact list shows
+        }
         setContentView(R.layout.activity_main);
         Toolbar toolbar = (Toolbar) findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
 
+        // deleted contacts are purged in the background once they can't be undeleted any more.
+        // scheduling calls into the system's alarm service, so it waits until the first
+        // frame is up rather than holding up the launch.
+        getWindow().getDecorView().post(
+            new Runnable(){
+                @Override
+                public void run(){
+                    PurgeService.schedule(MainActivity.this);
+                }
+            }
+        );
+
         // if layout contains fragmentContainer, the phone layout is in use;
         // create and display a ContactsFragment
         // if Activity is being restored after being shutdown or recreated from a configuration change, savedInstanceState will not be null.
@@ -132,10 +150,20 @@ public class MainActivity
     }
 
     // return to contact list when displayed contact deleted
-    public void onContactDeleted(){
+    public void onContactDeleted(final Uri contactUri){
         // removes top of backstack
+        // (the contact list's Loader sees the change and refreshes itself)
         getSupportFragmentManager().popBackStack();
-        mContactsFragment.updateContactList(); // refresh contacts
+
+        // the contact is only a tombstone until PurgeService removes it, so it can come back
+        Snackbar.make(findViewById(R.id.coordinatorLayout), R.string.contact_deleted, Snackbar.LENGTH_LONG)
+            .setAction(R.string.button_undo, new View.OnClickListener() {
+                @Override
+                public void onClick(View v){
+                    ContactWriter.getInstance(MainActivity.this).restore(contactUri, null);
+                }
+            })
+            .show();
     }
 
     // display the AddEditFragment to edit an existing contact
@@ -152,8 +180,8 @@ public class MainActivity
     @Override
     public void onAddEditCompleted(Uri contactUri){
         // removes top of back stack
+        // (the contact list's Loader sees the change and refreshes itself)
         getSupportFragmentManager().popBackStack();
-        mContactsFragment.updateContactList(); // refresh contacts
 
         if( findViewById(R.id.fragmentContainer) == null ){
             getSupportFragmentManager().popBackStack();
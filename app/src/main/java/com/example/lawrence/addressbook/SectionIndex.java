@@ -0,0 +1,95 @@
+package com.example.lawrence.addressbook;
+
+import java.util.Locale;
+
+// alphabetical sections of the contact list and the position each one starts at,
+// built from the per-first-character counts in Contact.SECTIONS_URI.
+// names starting with a letter go under that letter in upper case, anything else
+// under "#". only two small arrays are kept, so jumping to a section is one array
+// read and finding the section of a position is a binary search; the contacts
+// themselves are never looked at.
+public class SectionIndex {
+
+    // label used for names that don't start with a letter
+    static final String OTHER_LABEL = "#";
+
+    public static final SectionIndex EMPTY = new SectionIndex(new String[0], new int[0], 0);
+
+    private final String[] mLabels;
+    private final int[] mStarts; // position of the first contact of each section, ascending
+    private final int mCount;    // number of contacts
+
+    private SectionIndex(String[] labels, int[] starts, int count){
+        mLabels = labels;
+        mStarts = starts;
+        mCount = count;
+    }
+
+    // firstCharacters[i] is the first character of sizes[i] names (null or "" for
+    // names that are empty), in the order the list is sorted.
+    // neighbouring entries with the same label become one section.
+    public static SectionIndex build(String[] firstCharacters, int[] sizes){
+        String[] labels = new String[firstCharacters.length];
+        int[] starts = new int[firstCharacters.length];
+        int sections = 0;
+        int position = 0;
+
+        for( int i = 0; i < firstCharacters.length; ++i ){
+            if( sizes[i] <= 0 ){
+                continue;
+            }
+            String label = labelOf(firstCharacters[i]);
+            if( sections == 0 || !label.equals(labels[sections - 1]) ){
+                labels[sections] = label;
+                starts[sections] = position;
+                ++sections;
+            }
+            position += sizes[i];
+        }
+
+        String[] trimmedLabels = new String[sections];
+        int[] trimmedStarts = new int[sections];
+        System.arraycopy(labels, 0, trimmedLabels, 0, sections);
+        System.arraycopy(starts, 0, trimmedStarts, 0, sections);
+        return new SectionIndex(trimmedLabels, trimmedStarts, position);
+    }
+
+    public int getSectionCount(){ return mLabels.length; }
+
+    public String getLabel(int section){ return mLabels[section]; }
+
+    // number of contacts the index covers
+    public int getCount(){ return mCount; }
+
+    // list position of the first contact in section
+    public int getPositionForSection(int section){
+        return mStarts[section];
+    }
+
+    // section the contact at position belongs to; -1 if there are no sections
+    public int getSectionForPosition(int position){
+        // last section starting at or before position
+        int low = 0;
+        int high = mStarts.length - 1;
+        int section = -1;
+        while( low <= high ){
+            int middle = (low + high) >>> 1;
+            if( mStarts[middle] <= position ){
+                section = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return section;
+    }
+
+    private static String labelOf(String firstCharacter){
+        if( firstCharacter == null || firstCharacter.isEmpty()
+                || !Character.isLetter(firstCharacter.codePointAt(0)) ){
+            return OTHER_LABEL;
+        }
+        // not the default locale's rules: a Turkish one would put "i" under "\u0130"
+        return firstCharacter.toUpperCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.lawrence.addressbook;
+
+import android.content.Context;
+
+import android.database.MatrixCursor;
+
+import android.util.Log;
+
+import com.example.lawrence.addressbook.data.ContactProjection;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+// the first screenful of the contact list, saved to a small file whenever the list is
+// loaded, so the next launch can show it straight away, before the database has been
+// opened and the whole list queried and sorted. ContactsAdapter then reconciles it
+// with the live list when that arrives.
+// the file only holds what the list rows show: _id, name and photo name.
+public final class StartupSnapshot {
+
+    private static final String TAG = "StartupSnapshot";
+
+    private static final String FILE_NAME = "startup_snapshot";
+
+    // rows saved; more than fit on a tablet in portrait
+    static final int ROWS = 30;
+
+    // bumped whenever the file's layout changes, so an old file is ignored
+    private static final int FORMAT_VERSION = 1;
+
+    // hash of the rows last saved, so an unchanged first screenful isn't written again
+    private static int sSavedHash = 0;
+    private static boolean sSaved = false;
+
+    private StartupSnapshot(){ /* static methods only */ }
+
+    // the rows saved last time, or null if there are none; a few hundred bytes, so it's
+    // read on the main thread, which is the point
+    static ContactSnapshot load(Context context){
+        File file = getFile(context);
+        if( !file.exists() ){
+            return null;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if( in.readInt() != FORMAT_VERSION ){
+                    return null;
+                }
+                int count = in.readInt();
+                if( count <= 0 || count > ROWS ){
+                    return null;
+                }
+                MatrixCursor cursor = new MatrixCursor(ContactProjection.LIST, count);
+                for( int i = 0; i < count; ++i ){
+                    long id = in.readLong();
+                    String name = in.readBoolean() ? in.readUTF() : null;
+                    String photo = in.readBoolean() ? in.readUTF() : null;
+                    cursor.addRow(new Object[]{ id, name, photo });
+                }
+                return ContactSnapshot.read(cursor, null);
+            } finally {
+                in.close();
+            }
+        } catch( IOException e ){
+            Log.w(TAG, "can't read " + file, e);
+            return null;
+        }
+    }
+
+    // save the first ROWS rows of list, the contact list in display order.
+    // called by the list's loaders on their background thread.
+    static synchronized void save(Context context, ContactsAdapter.ListSource list){
+        int count = Math.min(list.getCount(), ROWS);
+        long[] ids = new long[count];
+        String[] names = new String[count];
+        String[] photos = new String[count];
+        int hash = count;
+        for( int i = 0; i < count && list.moveToPosition(i); ++i ){
+            ids[i] = list.getId();
+            names[i] = list.getName();
+            photos[i] = list.getPhoto();
+            hash = hash * 31 + (int) (ids[i] ^ (ids[i] >>> 32));
+            hash = hash * 31 + ContactsLoader.hashRow(names[i], photos[i]);
+        }
+        if( sSaved && hash == sSavedHash ){
+            return;
+        }
+
+        // written under a temporary name, so a launch never reads a half-written file
+        File file = getFile(context);
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            try {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(count);
+                for( int i = 0; i < count; ++i ){
+                    out.writeLong(ids[i]);
+                    writeNullableUTF(out, names[i]);
+                    writeNullableUTF(out, photos[i]);
+                }
+            } finally {
+                out.close();
+            }
+            if( !temp.renameTo(file) ){
+                throw new IOException("can't rename " + temp);
+            }
+            sSavedHash = hash;
+            sSaved = true;
+        } catch( IOException e ){
+            Log.w(TAG, "can't write " + file, e);
+            temp.delete();
+        }
+    }
+
+    // forget the saved rows, e.g. to time a launch without them
+    static synchronized void delete(Context context){
+        getFile(context).delete();
+        sSaved = false;
+    }
+
+    private static void writeNullableUTF(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if( s != null ){
+            out.writeUTF(s);
+        }
+    }
+
+    // the file the rows are saved in; tests back it up with this
+    static File getFile(Context context){
+        return new File(context.getFilesDir(), FILE_NAME);
+    }
+}
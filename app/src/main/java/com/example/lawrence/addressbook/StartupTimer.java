@@ -0,0 +1,60 @@
+package com.example.lawrence.addressbook;
+
+import android.os.SystemClock;
+
+import android.util.Log;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// times a launch from MainActivity being created to the first frame of the contact
+// list that has contacts in it, the "time to first list frame", and logs it under the
+// "Startup" tag. StartupBenchmarkTest reads it with awaitFirstListFrame().
+public final class StartupTimer {
+
+    private static final String TAG = "Startup";
+
+    // uptime when the launch being timed started, or -1 when none is
+    private static long sStartMillis = -1;
+
+    // counted down at the first list frame after start(), which took sFirstFrameMillis
+    private static CountDownLatch sFirstFrame = new CountDownLatch(1);
+    private static long sFirstFrameMillis = -1;
+
+    private StartupTimer(){ /* static methods only */ }
+
+    // MainActivity is being created from scratch; time how long until the list shows
+    static synchronized void start(){
+        sStartMillis = SystemClock.uptimeMillis();
+        sFirstFrameMillis = -1;
+        sFirstFrame = new CountDownLatch(1);
+    }
+
+    // the contact list is drawing its first frame with rows in it; fromStartupSnapshot
+    // tells whether they are the StartupSnapshot's rows or the live list's
+    static synchronized void onFirstListFrame(boolean fromStartupSnapshot){
+        if( sStartMillis < 0 ){
+            return; // not timing; e.g. the list was recreated after a rotation
+        }
+        sFirstFrameMillis = SystemClock.uptimeMillis() - sStartMillis;
+        sStartMillis = -1;
+        Log.i(TAG, "first list frame after " + sFirstFrameMillis + " ms" +
+            (fromStartupSnapshot ? " (startup snapshot)" : ""));
+        sFirstFrame.countDown();
+    }
+
+    // waits for the first list frame of the launch last started; its time in
+    // milliseconds, or -1 if the list didn't show within timeoutMillis
+    public static long awaitFirstListFrame(long timeoutMillis) throws InterruptedException {
+        CountDownLatch firstFrame;
+        synchronized( StartupTimer.class ){
+            firstFrame = sFirstFrame;
+        }
+        if( !firstFrame.await(timeoutMillis, TimeUnit.MILLISECONDS) ){
+            return -1;
+        }
+        synchronized( StartupTimer.class ){
+            return sFirstFrameMillis;
+        }
+    }
+}
@@ -1,18 +1,39 @@
 package com.example.lawrence.addressbook.data;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 
 import android.net.Uri;
+
+import android.os.Bundle;
+
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+
 import com.example.lawrence.addressbook.R;
+import com.example.lawrence.addressbook.data.DatabaseDescription.Change;
 import com.example.lawrence.addressbook.data.DatabaseDescription.Contact;
+import com.example.lawrence.addressbook.data.DatabaseDescription.Duplicate;
 
 // subclass of ContentProvider for manipulating the app's data
 // this code will interact with the SQLite object that interact with SQLite db
@@ -23,12 +44,124 @@ import com.example.lawrence.addressbook.data.DatabaseDescription.Contact;
 // Android's Contacts, Calendar, Camera apps.
 public class AddressBookContentProvider extends ContentProvider{
 
+    private static final String TAG = "AddressBookProvider";
+
     // constants used with UriMatcher to determine operation to perform
-    private static final int ONE_CONTACT = 1;   // op code "1" means we want to manipulate one contact.
-    private static final int CONTACTS = 2; // op code "2" means we want to manipulate contacts table.
+    // (package-private so ProviderMetrics results can be looked up by them)
+    static final int ONE_CONTACT = 1;   // op code "1" means we want to manipulate one contact.
+    static final int CONTACTS = 2; // op code "2" means we want to manipulate contacts table.
+    static final int SEARCH = 3; // op code "3" means we want to full-text search contacts.
+    static final int SECTIONS = 4; // op code "4" means we want the contact list's sections.
+    static final int DUPLICATES = 5; // op code "5" means we want the groups of duplicate contacts.
+    static final int PHONE_LOOKUP = 6; // op code "6" means we want the contacts with a phone number.
+    static final int EMAIL_LOOKUP = 7; // op code "7" means we want the contacts with an email address.
+    static final int BY_STATE = 8; // op code "8" means we want contact counts per state.
+    static final int BY_ZIP = 9; // op code "9" means we want contact counts per zip code.
+    static final int BY_CITY = 10; // op code "10" means we want contact counts per city.
+    static final int DELETED = 11; // op code "11" means we want the deleted contacts.
+    static final int DELETED_CONTACT = 12; // op code "12" means we want one deleted contact.
+    static final int CHANGES = 13; // op code "13" means we want the change log.
+    static final int CHANGE_CONSUMER = 14; // op code "14" means we want a change log consumer.
+    static final int QUERY = 15; // op code "15" means we want a structured query's contacts.
+
+    // drops the changes every registered consumer has acked, or the whole log if there
+    // are no consumers to keep it for
+    private static final String TRUNCATE_CHANGES_SQL =
+        "DELETE FROM " + Change.TABLE_NAME + " WHERE " + Change.COLUMN_SEQ + " <= " +
+        "IFNULL((SELECT MIN(" + Change.COLUMN_ACKED_SEQ + ") FROM " + Change.CONSUMERS_TABLE_NAME +
+        "), " + Long.MAX_VALUE + ")";
+
+    // tombstones removed per statement by a purge
+    private static final int PURGE_BATCH_SIZE = 500;
+
+    // free pages given back to the file system per incremental vacuum step
+    private static final int VACUUM_PAGES_PER_STEP = 256;
+
+    // keeps deleted contacts out of every query except the DELETED ones.
+    // the "+" stops SQLite from using contacts_deleted_at_index for it: that would find
+    // every live contact through one huge NULL range and then sort them, instead of
+    // walking the name index (or a per-region index) in order and skipping tombstones.
+    private static final String LIVE_CONTACTS = "+" + Contact.COLUMN_DELETED_AT + " IS NULL";
+
+    // first character of a name, grouped and sorted the same way as the contact list
+    private static final String SECTION_EXPRESSION =
+        "substr(" + Contact.COLUMN_NAME + ", 1, 1) COLLATE NOCASE";
+
+    // columns of a sections query
+    private static final String[] SECTION_COLUMNS = {
+        "substr(" + Contact.COLUMN_NAME + ", 1, 1) AS " + Contact.COLUMN_SECTION,
+        "COUNT(*) AS " + Contact.COLUMN_SECTION_SIZE
+    };
+
+    // contacts joined with their duplicate group, for duplicates queries
+    private static final String DUPLICATES_TABLES = Contact.TABLE_NAME + " INNER JOIN " +
+        Duplicate.TABLE_NAME + " ON " + Contact.TABLE_NAME + "." + Contact._ID + " = " +
+        Duplicate.TABLE_NAME + "." + Duplicate.COLUMN_CONTACT_ID;
+
+    // stored groups that still have more than one contact that isn't deleted;
+    // deleting a contact can leave a group of one behind
+    private static final String DUPLICATE_GROUPS_WHERE = Duplicate.COLUMN_GROUP_ID +
+        " IN (SELECT " + Duplicate.COLUMN_GROUP_ID + " FROM " + DUPLICATES_TABLES +
+        " WHERE " + LIVE_CONTACTS +
+        " GROUP BY " + Duplicate.COLUMN_GROUP_ID + " HAVING COUNT(*) > 1)";
 
-    // member instance variable used to access the database
-    private AddressBookDatabaseHelper mDBHelper;
+    // columns of the per-region counts. they name only indexed columns, so
+    // each is answered from contacts_state_city_index or contacts_zip_index
+    private static final String[] BY_STATE_COLUMNS = {
+        Contact.COLUMN_STATE + " AS " + Contact.COLUMN_REGION,
+        "COUNT(*) AS " + Contact.COLUMN_REGION_SIZE
+    };
+    private static final String[] BY_ZIP_COLUMNS = {
+        Contact.COLUMN_ZIP + " AS " + Contact.COLUMN_REGION,
+        "COUNT(*) AS " + Contact.COLUMN_REGION_SIZE
+    };
+    private static final String[] BY_CITY_COLUMNS = {
+        Contact.COLUMN_STATE,
+        Contact.COLUMN_CITY + " AS " + Contact.COLUMN_REGION,
+        "COUNT(*) AS " + Contact.COLUMN_REGION_SIZE
+    };
+
+    // receives the timing and row count of every call; records nothing unless replaced
+    private static volatile ProviderMetrics sMetrics = ProviderMetrics.NONE;
+
+    // member instance variable used to access the database.
+    // volatile since useDatabase() may swap it while other threads query
+    private volatile AddressBookDatabaseHelper mDBHelper;
+
+    // the app's own database, kept while useDatabase() points the provider at another
+    private AddressBookDatabaseHelper mAppDBHelper;
+
+    // bounds how many queries run against the database at once
+    private Semaphore mReaderPermits;
+
+    // columns written by the compiled bulk insert statement, in bind order.
+    // the normalized columns are bound after them.
+    private static final String[] INSERT_COLUMNS = {
+        Contact.COLUMN_NAME, Contact.COLUMN_PHONE, Contact.COLUMN_EMAIL,
+        Contact.COLUMN_STREET, Contact.COLUMN_CITY, Contact.COLUMN_STATE,
+        Contact.COLUMN_ZIP, Contact.COLUMN_PHOTO
+    };
+
+    // merges change notifications so a burst of writes notifies observers once
+    private ChangeNotifier mChangeNotifier;
+
+    // compiled statements for single-contact updates and deletes
+    private final StatementCache mStatementCache = new StatementCache();
+
+    // compiled SQL of ContactQuery's queries, per shape of query
+    private static final QueryPlanner sQueryPlanner = new QueryPlanner();
+
+    // deletes one contact by turning it into a tombstone; the time and _id are bound,
+    // so the statement is compiled once
+    private static final String DELETE_CONTACT_SQL =
+        "UPDATE " + Contact.TABLE_NAME + " SET " + Contact.COLUMN_DELETED_AT + "=? WHERE " +
+        Contact._ID + "=? AND " + Contact.COLUMN_DELETED_AT + " IS NULL";
+
+    // permanently removes up to PURGE_BATCH_SIZE tombstones deleted before the bound time
+    private static final String PURGE_SQL =
+        "DELETE FROM " + Contact.TABLE_NAME + " WHERE " + Contact._ID + " IN (SELECT " +
+        Contact._ID + " FROM " + Contact.TABLE_NAME + " WHERE " + Contact.COLUMN_DELETED_AT +
+        " < ? LIMIT " + PURGE_BATCH_SIZE + ")";
 
     // UriMatcher helps ContentProvider determine operation to perform
     private static final UriMatcher uriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
@@ -47,6 +180,123 @@ public class AddressBookContentProvider extends ContentProvider{
         // looks like: "content://com.example.lawrence.addressbook.data/contacts"
         // which represents the entire contacts table.
         // when a Uri matches this form, the UriMatcher returns the constant CONTACTS.
+
+        // Uri for a full-text search of the contacts table
+        uriMatcher.addURI(DatabaseDescription.AUTHORITY,
+            Contact.TABLE_NAME + "/" + Contact.PATH_SEARCH + "/*", SEARCH);
+        // looks like: "content://com.example.lawrence.addressbook.data/contacts/search/jo"
+        // where * matches any text, in this case the words to search for
+
+        // Uri for the contact list's alphabetical sections
+        uriMatcher.addURI(DatabaseDescription.AUTHORITY,
+            Contact.TABLE_NAME + "/" + Contact.PATH_SECTIONS, SECTIONS);
+        // looks like: "content://com.example.lawrence.addressbook.data/contacts/sections"
+
+        // Uri for the groups found by the last duplicate scan
+        uriMatcher.addURI(DatabaseDescription.AUTHORITY,
+            Contact.TABLE_NAME + "/" + Contact.PATH_DUPLICATES, DUPLICATES);
+        // looks like: "content://com.example.lawrence.addressbook.data/contacts/duplicates"
+
+        // Uris for reverse lookups by phone number and email address
+        uriMatcher.addURI(DatabaseDescription.AUTHORITY,
+            Contact.TABLE_NAME + "/" + Contact.PATH_PHONE_LOOKUP + "/*", PHONE_LOOKUP);
+        uriMatcher.addURI(DatabaseDescription.AUTHORITY,
+            Contact.TABLE_NAME + "/" + Contact.PATH_EMAIL_LOOKUP + "/*", EMAIL_LOOKUP);
+        // look like: "content://com.example.lawrence.addressbook.data/contacts/phone_lookup/5550100000"
+
+        // Uris for contact counts per region
+        uriMatcher.addURI(DatabaseDescription.AUTHORITY,
+            Contact.TABLE_NAME + "/" + Contact.PATH_BY_STATE, BY_STATE);
+        uriMatcher.addURI(DatabaseDescription.AUTHORITY,
+            Contact.TABLE_NAME + "/" + Contact.PATH_BY_ZIP, BY_ZIP);
+        uriMatcher.addURI(DatabaseDescription.AUTHORITY,
+            Contact.TABLE_NAME + "/" + Contact.PATH_BY_CITY, BY_CITY);
+        // look like: "content://com.example.lawrence.addressbook.data/contacts/by_state"
+
+        // Uris for deleted contacts (tombstones) and one of them
+        uriMatcher.addURI(DatabaseDescription.AUTHORITY,
+            Contact.TABLE_NAME + "/" + Contact.PATH_DELETED, DELETED);
+        uriMatcher.addURI(DatabaseDescription.AUTHORITY,
+            Contact.TABLE_NAME + "/" + Contact.PATH_DELETED + "/#", DELETED_CONTACT);
+        // look like: "content://com.example.lawrence.addressbook.data/contacts/deleted/#"
+
+        // Uris for the change log and its consumers
+        uriMatcher.addURI(DatabaseDescription.AUTHORITY,
+            Contact.TABLE_NAME + "/" + Contact.PATH_CHANGES, CHANGES);
+        uriMatcher.addURI(DatabaseDescription.AUTHORITY,
+            Contact.TABLE_NAME + "/" + Contact.PATH_CHANGES + "/" + Contact.PATH_CHANGE_CONSUMERS + "/*",
+            CHANGE_CONSUMER);
+        // look like: "content://com.example.lawrence.addressbook.data/contacts/changes?since=1234"
+
+        // Uri for a structured query
+        uriMatcher.addURI(DatabaseDescription.AUTHORITY,
+            Contact.TABLE_NAME + "/" + Contact.PATH_QUERY, QUERY);
+        // looks like: "content://com.example.lawrence.addressbook.data/contacts/query?name:prefix=jo&limit=20"
+    }
+
+    // send the timings and row counts of every provider call in this process to metrics,
+    // e.g. an InMemoryProviderMetrics read by a debug screen; null turns metrics off again
+    public static void setMetrics(ProviderMetrics metrics){
+        sMetrics = metrics == null ? ProviderMetrics.NONE : metrics;
+    }
+
+    // point this provider at the database file databaseName, or back at the app's own
+    // database when it's null. for tests that drive the app's real screens (e.g.
+    // StartupBenchmarkTest), so they work on their own contacts and never the user's.
+    // observers of the contacts are notified, since every query now sees other rows.
+    public synchronized void useDatabase(String databaseName){
+        AddressBookDatabaseHelper previous = mDBHelper;
+        mDBHelper = databaseName == null
+            ? mAppDBHelper : new AddressBookDatabaseHelper(getContext(), databaseName);
+        if( previous != mAppDBHelper ){
+            previous.close();
+        }
+        getContext().getContentResolver().notifyChange(Contact.CONTENT_URI, null);
+    }
+
+    // the planner behind Contact.QUERY_URI, e.g. for benchmarks to read its hit counts
+    public static QueryPlanner getQueryPlanner(){
+        return sQueryPlanner;
+    }
+
+    // the Uri pattern a UriMatcher code stands for, for metrics dumps
+    static String describeUriCode(int uriCode){
+        switch( uriCode ){
+            case ONE_CONTACT:
+                return Contact.TABLE_NAME + "/#";
+            case CONTACTS:
+                return Contact.TABLE_NAME;
+            case SEARCH:
+                return Contact.TABLE_NAME + "/" + Contact.PATH_SEARCH + "/*";
+            case SECTIONS:
+                return Contact.TABLE_NAME + "/" + Contact.PATH_SECTIONS;
+            case DUPLICATES:
+                return Contact.TABLE_NAME + "/" + Contact.PATH_DUPLICATES;
+            case PHONE_LOOKUP:
+                return Contact.TABLE_NAME + "/" + Contact.PATH_PHONE_LOOKUP + "/*";
+            case EMAIL_LOOKUP:
+                return Contact.TABLE_NAME + "/" + Contact.PATH_EMAIL_LOOKUP + "/*";
+            case BY_STATE:
+                return Contact.TABLE_NAME + "/" + Contact.PATH_BY_STATE;
+            case BY_ZIP:
+                return Contact.TABLE_NAME + "/" + Contact.PATH_BY_ZIP;
+            case BY_CITY:
+                return Contact.TABLE_NAME + "/" + Contact.PATH_BY_CITY;
+            case DELETED:
+                return Contact.TABLE_NAME + "/" + Contact.PATH_DELETED;
+            case DELETED_CONTACT:
+                return Contact.TABLE_NAME + "/" + Contact.PATH_DELETED + "/#";
+            case CHANGES:
+                return Contact.TABLE_NAME + "/" + Contact.PATH_CHANGES;
+            case CHANGE_CONSUMER:
+                return Contact.TABLE_NAME + "/" + Contact.PATH_CHANGES + "/" + Contact.PATH_CHANGE_CONSUMERS + "/*";
+            case QUERY:
+                return Contact.TABLE_NAME + "/" + Contact.PATH_QUERY;
+            case ProviderMetrics.NO_URI_CODE:
+                return "batch";
+            default:
+                return "code " + uriCode;
+        }
     }
 
     // ContentResolvers work in partnership with ContentProviders.
@@ -55,7 +305,28 @@ public class AddressBookContentProvider extends ContentProvider{
     @Override
     public boolean onCreate() {
         // create AddressBookDatabaseHelper member instance variable object
-        mDBHelper = new AddressBookDatabaseHelper(getContext());
+        mAppDBHelper = new AddressBookDatabaseHelper(getContext());
+        mDBHelper = mAppDBHelper;
+        mReaderPermits = new Semaphore(mDBHelper.getMaxConcurrentReaders());
+        mChangeNotifier = new ChangeNotifier(getContext().getContentResolver());
+
+        // open the database (and run any migrations) straight away, on a thread of its own.
+        // onCreate() runs on the main thread while the app is starting, before the first
+        // activity is created, so it mustn't do the open itself; but left to the first
+        // query, the open would only start once the contact list asks for its rows.
+        // getWritableDatabase() is synchronized, so a query that arrives while the open is
+        // under way simply waits for it rather than opening the database again.
+        new Thread("AddressBookOpen"){
+            @Override
+            public void run(){
+                try {
+                    mDBHelper.getWritableDatabase();
+                } catch( SQLiteException e ){
+                    // the first query tries again, and reports the error to its caller
+                    Log.w(TAG, "can't open the database", e);
+                }
+            }
+        }.start();
         return true; // "true" means ContentProvider successfully created
     }
 
@@ -67,37 +338,242 @@ public class AddressBookContentProvider extends ContentProvider{
     @Nullable
     @Override
     public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        long start = System.nanoTime();
+        int uriCode = uriMatcher.match(uri);
 
         // create SQLiteQueryBuilder for querying contacts table
         SQLiteQueryBuilder queryBuilder = new SQLiteQueryBuilder();
         queryBuilder.setTables(Contact.TABLE_NAME); // get data from contacts table
 
-        switch( uriMatcher.match(uri) ){
+        // LIMIT clause, only set when a page of contacts is requested
+        String limit = null;
+
+        // GROUP BY clause, only set for sections
+        String groupBy = null;
+
+        // Uri whose changes the cursor watches
+        Uri notificationUri = uri;
+
+        // whether tombstones are left out
+        boolean liveContactsOnly = true;
+
+        switch( uriCode ){
             case ONE_CONTACT:
-                // append WHERE clause to SQL query with contact's id
-                // contact with specified id will be selected from table to display or edit
-                queryBuilder.appendWhere(Contact._ID + "=" + uri.getLastPathSegment());
+                // add WHERE clause to SQL query with contact's id
+                // contact with specified id will be selected from table to display or edit.
+                // the id is a bound argument, so every single-contact query has the same
+                // SQL and SQLite reuses the statement it already compiled for it.
+                selection = DatabaseUtils.concatenateWhere(Contact._ID + "=?", selection);
+                selectionArgs = DatabaseUtils.appendSelectionArgs(
+                    new String[]{ String.valueOf(ContentUris.parseId(uri)) }, selectionArgs);
                 break;
             case CONTACTS:
-                // all contacts will be selected from table to display their names in contacts fragment
+                // all contacts will be selected from table to display their names in contacts fragment,
+                // unless the Uri asks for one page of them
+                if( uri.getQueryParameter(Contact.PARAM_LIMIT) != null ){
+                    limit = appendPageClauses(queryBuilder, uri);
+                    sortOrder = Contact.PAGE_SORT_ORDER;
+                }
+                break;
+            case SEARCH:
+                // select the contacts whose FTS row matches the search words.
+                // the MATCH runs against the FTS index instead of scanning every row with LIKE.
+                String matchExpression = buildMatchExpression(uri.getLastPathSegment());
+                if( matchExpression == null ){
+                    queryBuilder.appendWhere("0"); // nothing searchable, so no rows
+                } else {
+                    queryBuilder.appendWhere(Contact._ID + " IN (SELECT docid FROM " +
+                        Contact.FTS_TABLE_NAME + " WHERE " + Contact.FTS_TABLE_NAME + " MATCH ");
+                    queryBuilder.appendWhereEscapeString(matchExpression);
+                    queryBuilder.appendWhere(")");
+                }
+                break;
+            case SECTIONS:
+                // count the contacts per first character of their names.
+                // SQLite reads the names from contacts_name_index, so no contact rows
+                // are read and only one small row per section comes back.
+                projection = SECTION_COLUMNS;
+                groupBy = SECTION_EXPRESSION;
+                sortOrder = SECTION_EXPRESSION + " ASC";
+
+                // a change to any contact can change the sections
+                notificationUri = Contact.CONTENT_URI;
+                break;
+            case DUPLICATES:
+                // the contacts in each group of duplicates, a group's contacts next to each other.
+                // _id is ambiguous once the tables are joined, so it's always the contact's.
+                queryBuilder.setTables(DUPLICATES_TABLES);
+                queryBuilder.appendWhere(DUPLICATE_GROUPS_WHERE);
+                projection = qualifyContactId(projection);
+                if( sortOrder == null ){
+                    sortOrder = Duplicate.COLUMN_GROUP_ID + ", " + Contact.COLUMN_NAME + " COLLATE NOCASE";
+                }
+
+                // deleting or editing a contact can change the groups too
+                notificationUri = Contact.CONTENT_URI;
+                break;
+            case PHONE_LOOKUP:
+            case EMAIL_LOOKUP:
+                // an exact match on the normalized column, so SQLite probes its index
+                // instead of comparing every contact's free-form text
+                String column;
+                String key;
+                if( uriCode == PHONE_LOOKUP ){
+                    column = Contact.COLUMN_PHONE_NORMALIZED;
+                    key = ContactNormalizer.normalizePhone(uri.getLastPathSegment());
+                } else {
+                    column = Contact.COLUMN_EMAIL_NORMALIZED;
+                    key = ContactNormalizer.normalizeEmail(uri.getLastPathSegment());
+                }
+                if( key == null ){
+                    queryBuilder.appendWhere("0"); // not a phone number / address, so no rows
+                } else {
+                    selection = DatabaseUtils.concatenateWhere(column + "=?", selection);
+                    selectionArgs = DatabaseUtils.appendSelectionArgs(new String[]{ key }, selectionArgs);
+                }
+
+                // any contact can gain or lose the number
+                notificationUri = Contact.CONTENT_URI;
+                break;
+            case BY_STATE:
+            case BY_ZIP:
+            case BY_CITY:
+                // count the contacts per region inside SQLite, so only one small row per
+                // region comes back instead of every contact.
+                // grouping and sorting by the index's own columns lets SQLite walk the
+                // covering index in order, with no temp B-tree and no table reads.
+                if( uriCode == BY_STATE ){
+                    projection = BY_STATE_COLUMNS;
+                    groupBy = Contact.COLUMN_STATE;
+                } else if( uriCode == BY_ZIP ){
+                    projection = BY_ZIP_COLUMNS;
+                    groupBy = Contact.COLUMN_ZIP;
+                } else {
+                    projection = BY_CITY_COLUMNS;
+                    groupBy = Contact.COLUMN_STATE + ", " + Contact.COLUMN_CITY;
+                }
+                if( sortOrder == null ){
+                    sortOrder = groupBy;
+                }
+
+                // a change to any contact can change the counts
+                notificationUri = Contact.CONTENT_URI;
+                break;
+            case DELETED:
+                // the tombstones, e.g. for a "recently deleted" screen
+                queryBuilder.appendWhere(Contact.COLUMN_DELETED_AT + " IS NOT NULL");
+                if( sortOrder == null ){
+                    sortOrder = Contact.COLUMN_DELETED_AT + " DESC";
+                }
+                notificationUri = Contact.CONTENT_URI;
+                liveContactsOnly = false;
+                break;
+            case QUERY:
+                // a ContactQuery. the plan for this shape of query is compiled once; the values are bound,
+                // so every query of the shape has the same SQL and SQLite reuses the
+                // statement it already prepared for it
+                QueryPlanner.Plan plan = sQueryPlanner.plan(uri);
+                selection = DatabaseUtils.concatenateWhere(plan.selection, selection);
+                selectionArgs = DatabaseUtils.appendSelectionArgs(plan.bind(uri), selectionArgs);
+                if( plan.sortOrder != null ){
+                    sortOrder = plan.sortOrder;
+                }
+                if( uri.getQueryParameter(Contact.PARAM_LIMIT) != null ){
+                    limit = String.valueOf(parsePageParameter(uri, Contact.PARAM_LIMIT));
+                }
+
+                // any contact can start or stop matching
+                notificationUri = Contact.CONTENT_URI;
+                break;
+            case CHANGES:
+                // the changes after seq `since`, oldest first, optionally `limit` at a time.
+                // seq is the change table's rowid, so this is one range read of just the
+                // new changes, however large the contacts table is.
+                queryBuilder.setTables(Change.TABLE_NAME);
+                long since = uri.getQueryParameter(Contact.PARAM_SINCE) == null ?
+                    0 : parsePageParameter(uri, Contact.PARAM_SINCE);
+                queryBuilder.appendWhere(Change.COLUMN_SEQ + " > " + since);
+                sortOrder = Change.COLUMN_SEQ;
+                if( uri.getQueryParameter(Contact.PARAM_LIMIT) != null ){
+                    limit = String.valueOf(parsePageParameter(uri, Contact.PARAM_LIMIT));
+                }
+
+                // every contact change adds to the log
+                notificationUri = Contact.CONTENT_URI;
+                liveContactsOnly = false;
                 break;
             default:
                 throw new UnsupportedOperationException(getContext().getString(R.string.invalid_query_uri) + uri);
         } // end switch
 
+        // deleted contacts are only visible through DELETED
+        if( liveContactsOnly ){
+            selection = DatabaseUtils.concatenateWhere(LIVE_CONTACTS, selection);
+        }
+
         // execute the query to select one or all contacts
         // when SQL query is execute, it will return a "cursor" or arrow point to the beginning of
         // the row(s) that meet the criteria
-        Cursor cursor = queryBuilder.query(
-            mDBHelper.getReadableDatabase(), projection, selection,
-            selectionArgs, null, null, sortOrder
-        );
+        // getCount() runs the query and fills the cursor's first window,
+        // so do it while holding a reader permit
+        Cursor cursor;
+        int rows;
+        mReaderPermits.acquireUninterruptibly();
+        try {
+            cursor = queryBuilder.query(
+                mDBHelper.getReadableDatabase(), projection, selection,
+                selectionArgs, groupBy, null, sortOrder, limit
+            );
+            rows = cursor.getCount();
+        } finally {
+            mReaderPermits.release();
+        }
 
         // config to watch for content changes
-        cursor.setNotificationUri(getContext().getContentResolver(), uri);
+        cursor.setNotificationUri(getContext().getContentResolver(), notificationUri);
+
+        sMetrics.onOperation(ProviderMetrics.QUERY, uriCode, System.nanoTime() - start, rows);
         return cursor;
     } // end query
 
+    // restrict the query to one page of contacts in PAGE_SORT_ORDER and return its LIMIT clause.
+    // the page starts after the row given by the after_name/after_id parameters if present,
+    // so SQLite can seek to it through the name index; otherwise it starts at offset.
+    private static String appendPageClauses(SQLiteQueryBuilder queryBuilder, Uri uri){
+        long limit = parsePageParameter(uri, Contact.PARAM_LIMIT);
+        String afterName = uri.getQueryParameter(Contact.PARAM_AFTER_NAME);
+
+        if( afterName != null ){
+            long afterId = parsePageParameter(uri, Contact.PARAM_AFTER_ID);
+
+            // name >= afterName is the index range; the rest skips rows up to and including afterId
+            queryBuilder.appendWhere(Contact.COLUMN_NAME + " >= ");
+            queryBuilder.appendWhereEscapeString(afterName);
+            queryBuilder.appendWhere(" COLLATE NOCASE AND (" + Contact.COLUMN_NAME + " > ");
+            queryBuilder.appendWhereEscapeString(afterName);
+            queryBuilder.appendWhere(" COLLATE NOCASE OR " + Contact._ID + " > " + afterId + ")");
+            return String.valueOf(limit);
+        }
+
+        if( uri.getQueryParameter(Contact.PARAM_OFFSET) != null ){
+            return parsePageParameter(uri, Contact.PARAM_OFFSET) + "," + limit;
+        }
+        return String.valueOf(limit);
+    }
+
+    // read a non-negative integer query parameter used for paging
+    private static long parsePageParameter(Uri uri, String name){
+        try {
+            long value = Long.parseLong(uri.getQueryParameter(name));
+            if( value >= 0 ){
+                return value;
+            }
+        } catch( NumberFormatException e ){
+            // fall through
+        }
+        throw new IllegalArgumentException("Invalid " + name + " parameter: " + uri);
+    }
+
     // required to override method, not used
     // this is used with Intents with MIME types
     @Nullable
@@ -110,21 +586,24 @@ public class AddressBookContentProvider extends ContentProvider{
     @Nullable
     @Override
     public Uri insert(Uri uri, ContentValues contentValues) {
+        long start = System.nanoTime();
+        int uriCode = uriMatcher.match(uri);
         Uri newContactUri = null;
 
-        switch( uriMatcher.match(uri) ){
+        switch( uriCode ){
             case CONTACTS:
                 // insert new contact -- success yields new contact's row id
                 long rowId = mDBHelper.getWritableDatabase()
-                            .insert(Contact.TABLE_NAME, null, contentValues);
+                            .insert(Contact.TABLE_NAME, null, withNormalizedColumns(contentValues));
 
                 // if contact was inserted, create an appropriate Uri;
                 // otherwise, throw an exception.
                 if( rowId >= 1 ){ // SQLite row IDs start at 1
                     newContactUri = Contact.buildContactUri(rowId);
 
-                    // notify observers that the database changed
-                    getContext().getContentResolver().notifyChange(uri, null);
+                    // notify observers that the database changed.
+                    // the new contact's own Uri also reaches observers of the whole table.
+                    notifyChange(uriCode, newContactUri);
                 } else {
                     throw new SQLException(
                        getContext().getString(R.string.insert_failed) + uri
@@ -137,24 +616,54 @@ public class AddressBookContentProvider extends ContentProvider{
                 );
         } // end switch
 
+        sMetrics.onOperation(ProviderMetrics.INSERT, uriCode, System.nanoTime() - start, 1);
         return newContactUri;
     }
 
     // update an existing contact in the database
     @Override
     public int update(Uri uri, ContentValues contentValues, String selection, String[] selectionArgs) {
+        long start = System.nanoTime();
+        int uriCode = uriMatcher.match(uri);
         int numOfRowsUpdated; // 1 if update successful, 0 otherwise
 
-        switch( uriMatcher.match(uri) ){
+        switch( uriCode ){
             case ONE_CONTACT:
                 // get from uri the id of contact to update
-                String id = uri.getLastPathSegment();
+                long id = ContentUris.parseId(uri);
+                contentValues = withNormalizedColumns(contentValues);
 
                 // update contact
+                if( selection == null && contentValues.size() > 0 ){
+                    numOfRowsUpdated = updateContact(id, contentValues);
+                } else {
+                    numOfRowsUpdated = mDBHelper.getWritableDatabase().update(
+                       Contact.TABLE_NAME, contentValues,
+                       DatabaseUtils.concatenateWhere(
+                           Contact._ID + "=? AND " + Contact.COLUMN_DELETED_AT + " IS NULL", selection),
+                       DatabaseUtils.appendSelectionArgs(new String[]{ String.valueOf(id) }, selectionArgs)
+                    );
+                }
+                break;
+            case DELETED_CONTACT:
+                // update a tombstone; setting deleted_at to NULL undeletes the contact
+                long deletedId = ContentUris.parseId(uri);
                 numOfRowsUpdated = mDBHelper.getWritableDatabase().update(
-                   Contact.TABLE_NAME, contentValues, Contact._ID + "=" + id, selectionArgs
+                   Contact.TABLE_NAME, withNormalizedColumns(contentValues),
+                   DatabaseUtils.concatenateWhere(
+                       Contact._ID + "=? AND " + Contact.COLUMN_DELETED_AT + " IS NOT NULL", selection),
+                   DatabaseUtils.appendSelectionArgs(new String[]{ String.valueOf(deletedId) }, selectionArgs)
                 );
+
+                // observers of the contact (and the list) see it come back
+                uri = Contact.buildContactUri(deletedId);
                 break;
+            case CHANGE_CONSUMER:
+                // a consumer acks the changes it has applied; nothing observers can see changes
+                numOfRowsUpdated = ackChanges(uri.getLastPathSegment(),
+                    contentValues.getAsLong(Change.COLUMN_ACKED_SEQ));
+                sMetrics.onOperation(ProviderMetrics.UPDATE, uriCode, System.nanoTime() - start, numOfRowsUpdated);
+                return numOfRowsUpdated;
             default:
                 throw new UnsupportedOperationException(
                     getContext().getString(R.string.invalid_update_uri) + uri
@@ -164,27 +673,61 @@ public class AddressBookContentProvider extends ContentProvider{
 
         // if changes were made, notify observers that db changed
         if( numOfRowsUpdated != 0){
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uriCode, uri);
         }
 
+        sMetrics.onOperation(ProviderMetrics.UPDATE, uriCode, System.nanoTime() - start, numOfRowsUpdated);
         return numOfRowsUpdated;
     }
 
     // delete existing contact from db
     @Override
     public int delete(Uri uri, String selection, String[] selectionArgs){
+        long start = System.nanoTime();
+        int uriCode = uriMatcher.match(uri);
         int numOfRowsDeleted;
 
-        switch( uriMatcher.match(uri) ){
+        switch( uriCode ){
             case ONE_CONTACT:
                 // get from uri the id of contact to delete
-                String id = uri.getLastPathSegment();
+                long id = ContentUris.parseId(uri);
 
-                // delete the contact
+                // delete the contact: it only becomes a tombstone, hidden from queries
+                // until PurgeService removes it, so the delete can still be undone
+                long deletedAt = System.currentTimeMillis();
+                if( selection == null ){
+                    numOfRowsDeleted = mStatementCache.executeUpdateDelete(
+                        mDBHelper.getWritableDatabase(), DELETE_CONTACT_SQL, new Object[]{ deletedAt, id });
+                } else {
+                    ContentValues tombstone = new ContentValues(1);
+                    tombstone.put(Contact.COLUMN_DELETED_AT, deletedAt);
+                    numOfRowsDeleted = mDBHelper.getWritableDatabase().update(
+                        Contact.TABLE_NAME, tombstone,
+                        DatabaseUtils.concatenateWhere(
+                            Contact._ID + "=? AND " + Contact.COLUMN_DELETED_AT + " IS NULL", selection),
+                        DatabaseUtils.appendSelectionArgs(new String[]{ String.valueOf(id) }, selectionArgs)
+                    );
+                }
+                break;
+            case DUPLICATES:
+                // forget the scan's results
                 numOfRowsDeleted = mDBHelper.getWritableDatabase().delete(
-                    Contact.TABLE_NAME, Contact._ID + "=" + id, selectionArgs
-                );
+                    Duplicate.TABLE_NAME, selection, selectionArgs);
                 break;
+            case CHANGE_CONSUMER:
+                // unregister a consumer; the changes only it was waiting for can go
+                SQLiteDatabase db = mDBHelper.getWritableDatabase();
+                db.beginTransaction();
+                try {
+                    numOfRowsDeleted = db.delete(Change.CONSUMERS_TABLE_NAME,
+                        Change.COLUMN_CONSUMER + "=?", new String[]{ uri.getLastPathSegment() });
+                    truncateChanges(db);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                sMetrics.onOperation(ProviderMetrics.DELETE, uriCode, System.nanoTime() - start, numOfRowsDeleted);
+                return numOfRowsDeleted;
             default:
                 throw new UnsupportedOperationException(
                     getContext().getString(R.string.invalid_delete_uri) + uri
@@ -193,8 +736,357 @@ public class AddressBookContentProvider extends ContentProvider{
 
         // notify observers that the db changed
         if( numOfRowsDeleted != 0 ){
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uriCode, uri);
         }
+
+        sMetrics.onOperation(ProviderMetrics.DELETE, uriCode, System.nanoTime() - start, numOfRowsDeleted);
         return numOfRowsDeleted;
     }
+
+    // record that consumer has applied every change up to ackedSeq, registering it if
+    // it's new, then drop the changes no consumer needs any more
+    private int ackChanges(String consumer, Long ackedSeq){
+        if( ackedSeq == null || ackedSeq < 0 ){
+            throw new IllegalArgumentException("Invalid " + Change.COLUMN_ACKED_SEQ + ": " + ackedSeq);
+        }
+        SQLiteDatabase db = mDBHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            mStatementCache.executeInsert(db, "INSERT OR REPLACE INTO " + Change.CONSUMERS_TABLE_NAME +
+                "(" + Change.COLUMN_CONSUMER + ", " + Change.COLUMN_ACKED_SEQ + ") VALUES(?, ?)",
+                new Object[]{ consumer, ackedSeq });
+            truncateChanges(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return 1;
+    }
+
+    // drop the changes every consumer has acked; returns how many were dropped
+    private int truncateChanges(SQLiteDatabase db){
+        return mStatementCache.executeUpdateDelete(db, TRUNCATE_CHANGES_SQL, new Object[0]);
+    }
+
+    // update the columns in contentValues of the contact with the given id through a cached
+    // statement. the columns are sorted so the same set of columns always gives the same
+    // SQL, e.g. "UPDATE contacts SET city=?, name=? WHERE _id=? AND deleted_at IS NULL".
+    private int updateContact(long id, ContentValues contentValues){
+        String[] columns = contentValues.keySet().toArray(new String[contentValues.size()]);
+        Arrays.sort(columns);
+
+        StringBuilder sql = new StringBuilder("UPDATE " + Contact.TABLE_NAME + " SET ");
+        Object[] bindArgs = new Object[columns.length + 1];
+        for( int i = 0; i < columns.length; ++i ){
+            if( i > 0 ){
+                sql.append(", ");
+            }
+            sql.append(columns[i]).append("=?");
+            bindArgs[i] = contentValues.get(columns[i]);
+        }
+        sql.append(" WHERE " + Contact._ID + "=? AND " + Contact.COLUMN_DELETED_AT + " IS NULL");
+        bindArgs[columns.length] = id;
+
+        return mStatementCache.executeUpdateDelete(
+            mDBHelper.getWritableDatabase(), sql.toString(), bindArgs);
+    }
+
+    // copy of contentValues with the normalized phone and email derived from the phone and
+    // email it sets; values that don't set them (e.g. an update of the name) are returned as is
+    private static ContentValues withNormalizedColumns(ContentValues contentValues){
+        boolean hasPhone = contentValues.containsKey(Contact.COLUMN_PHONE);
+        boolean hasEmail = contentValues.containsKey(Contact.COLUMN_EMAIL);
+        if( !hasPhone && !hasEmail ){
+            return contentValues;
+        }
+        // the caller's values are left alone, it may reuse them
+        ContentValues normalized = new ContentValues(contentValues);
+        if( hasPhone ){
+            normalized.put(Contact.COLUMN_PHONE_NORMALIZED,
+                ContactNormalizer.normalizePhone(contentValues.getAsString(Contact.COLUMN_PHONE)));
+        }
+        if( hasEmail ){
+            normalized.put(Contact.COLUMN_EMAIL_NORMALIZED,
+                ContactNormalizer.normalizeEmail(contentValues.getAsString(Contact.COLUMN_EMAIL)));
+        }
+        return normalized;
+    }
+
+    // insert many contacts at once.
+    // the default ContentProvider.bulkInsert() calls insert() once per row, so every
+    // row is its own transaction and sends its own change notification.
+    // here the whole batch is one transaction that reuses one compiled INSERT
+    // statement, and observers are notified once at the end.
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        long start = System.nanoTime();
+        int uriCode = uriMatcher.match(uri);
+
+        switch( uriCode ){
+            case CONTACTS:
+                break;
+            case DUPLICATES:
+                int numOfDuplicates = replaceDuplicates(values);
+                notifyChange(uriCode, uri);
+                sMetrics.onOperation(ProviderMetrics.BULK_INSERT, uriCode, System.nanoTime() - start, numOfDuplicates);
+                return numOfDuplicates;
+            default:
+                throw new UnsupportedOperationException(
+                    getContext().getString(R.string.invalid_insert_uri) + uri
+                );
+        }
+
+        int numOfRowsInserted = 0;
+        SQLiteDatabase db = mDBHelper.getWritableDatabase();
+        SQLiteStatement statement = db.compileStatement(buildInsertSql());
+
+        db.beginTransaction();
+        try {
+            for( ContentValues contentValues : values ){
+                bindContact(statement, contentValues);
+
+                // a failed row aborts the whole batch, same as insert() does
+                if( statement.executeInsert() < 1 ){
+                    throw new SQLException(
+                        getContext().getString(R.string.insert_failed) + uri
+                    );
+                }
+                ++numOfRowsInserted;
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            statement.close();
+        }
+
+        // notify observers once for the whole batch
+        if( numOfRowsInserted != 0 ){
+            notifyChange(uriCode, Contact.CONTENT_URI);
+        }
+
+        sMetrics.onOperation(ProviderMetrics.BULK_INSERT, uriCode, System.nanoTime() - start, numOfRowsInserted);
+        return numOfRowsInserted;
+    }
+
+    // replace the stored duplicate groups with values, each holding a contact_id and group_id.
+    // a scan always produces the complete set of groups, so the old rows go in the same transaction.
+    private int replaceDuplicates(ContentValues[] values){
+        SQLiteDatabase db = mDBHelper.getWritableDatabase();
+        SQLiteStatement statement = db.compileStatement("INSERT OR REPLACE INTO " +
+            Duplicate.TABLE_NAME + "(" + Duplicate.COLUMN_CONTACT_ID + ", " +
+            Duplicate.COLUMN_GROUP_ID + ") VALUES(?, ?)");
+
+        db.beginTransaction();
+        try {
+            db.delete(Duplicate.TABLE_NAME, null, null);
+            for( ContentValues contentValues : values ){
+                statement.bindLong(1, contentValues.getAsLong(Duplicate.COLUMN_CONTACT_ID));
+                statement.bindLong(2, contentValues.getAsLong(Duplicate.COLUMN_GROUP_ID));
+                statement.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            statement.close();
+        }
+        return values.length;
+    }
+
+    // projection with a bare "_id" replaced by the contacts table's _id;
+    // null (every column) becomes the contact's columns plus its group_id
+    private static String[] qualifyContactId(String[] projection){
+        String contactId = Contact.TABLE_NAME + "." + Contact._ID + " AS " + Contact._ID;
+        if( projection == null ){
+            return new String[]{ contactId, Contact.COLUMN_NAME, Contact.COLUMN_PHONE,
+                Contact.COLUMN_EMAIL, Contact.COLUMN_STREET, Contact.COLUMN_CITY,
+                Contact.COLUMN_STATE, Contact.COLUMN_ZIP, Duplicate.COLUMN_GROUP_ID };
+        }
+        String[] qualified = projection.clone();
+        for( int i = 0; i < qualified.length; ++i ){
+            if( Contact._ID.equals(qualified[i]) ){
+                qualified[i] = contactId;
+            }
+        }
+        return qualified;
+    }
+
+    // apply a batch of ContentProviderOperations in one transaction.
+    // if any operation fails the whole batch is rolled back.
+    // observers are notified once per changed Uri after the batch is committed.
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        long start = System.nanoTime();
+        SQLiteDatabase db = mDBHelper.getWritableDatabase();
+        ContentProviderResult[] results;
+
+        // hold the operations' notifications until the batch is committed,
+        // then send each changed Uri once
+        mChangeNotifier.beginBatch();
+        db.beginTransaction();
+        try {
+            // super calls our insert/update/delete for each operation
+            results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            mChangeNotifier.endBatch();
+        }
+
+        // each operation was also recorded on its own by insert/update/delete
+        sMetrics.onOperation(ProviderMetrics.APPLY_BATCH, ProviderMetrics.NO_URI_CODE,
+            System.nanoTime() - start, results.length);
+        return results;
+    }
+
+    // handles Contact.METHOD_PURGE; other methods aren't supported
+    @Nullable
+    @Override
+    public Bundle call(@NonNull String method, String arg, Bundle extras){
+        if( !Contact.METHOD_PURGE.equals(method) ){
+            return super.call(method, arg, extras);
+        }
+        long start = System.nanoTime();
+        long deletedBefore = parseDeletedBefore(arg);
+        SQLiteDatabase db = mDBHelper.getWritableDatabase();
+
+        // a few hundred rows per statement, each its own short transaction, so
+        // ContactWriter's writes never wait long behind a big purge
+        int purged = 0;
+        int batch;
+        do {
+            batch = mStatementCache.executeUpdateDelete(db, PURGE_SQL, new Object[]{ deletedBefore });
+            purged += batch;
+        } while( batch == PURGE_BATCH_SIZE );
+
+        // the log may not have been truncated since no consumer was registered
+        if( purged + truncateChanges(db) != 0 ){
+            compact(db);
+        }
+
+        sMetrics.onOperation(ProviderMetrics.DELETE, DELETED, System.nanoTime() - start, purged);
+
+        Bundle result = new Bundle();
+        result.putInt(Contact.METHOD_PURGE, purged);
+        return result;
+    }
+
+    // give the database file's free pages back to the file system.
+    // deleted rows leave free pages inside the file that SQLite only reuses; with
+    // auto_vacuum=INCREMENTAL, incremental_vacuum moves them to the end of the file and
+    // truncates it. a database created without it is converted once with a full VACUUM.
+    // neither can run inside a transaction, and both take the write lock, so this only
+    // runs from PurgeService's background thread; readers aren't blocked under WAL.
+    private static void compact(SQLiteDatabase db){
+        if( AddressBookDatabaseHelper.pragmaLong(db, "PRAGMA auto_vacuum") != 2 ){ // 2 is INCREMENTAL
+            db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            db.execSQL("VACUUM");
+            return; // VACUUM already compacted the whole file
+        }
+
+        // in steps, so a writer waits at most one step for the lock
+        long freePages = AddressBookDatabaseHelper.pragmaLong(db, "PRAGMA freelist_count");
+        while( freePages > 0 ){
+            // incremental_vacuum frees a page each time it's stepped, which execSQL()
+            // only does once; a cursor steps it to the end
+            Cursor cursor = db.rawQuery("PRAGMA incremental_vacuum(" + VACUUM_PAGES_PER_STEP + ")", null);
+            try {
+                cursor.getCount();
+            } finally {
+                cursor.close();
+            }
+
+            long remaining = AddressBookDatabaseHelper.pragmaLong(db, "PRAGMA freelist_count");
+            if( remaining >= freePages ){
+                break; // nothing more can be freed
+            }
+            freePages = remaining;
+        }
+    }
+
+    // read METHOD_PURGE's argument, the time in ms before which tombstones are purged
+    private static long parseDeletedBefore(String arg){
+        try {
+            return Long.parseLong(arg);
+        } catch( NumberFormatException e ){
+            // also thrown for a null arg
+            throw new IllegalArgumentException("Invalid " + Contact.METHOD_PURGE + " argument: " + arg);
+        }
+    }
+
+    // queue a change notification for uri, whose UriMatcher code is uriCode
+    private void notifyChange(int uriCode, Uri uri){
+        mChangeNotifier.notifyChange(uri);
+        sMetrics.onNotification(uriCode);
+    }
+
+    // turns the user's search text into an FTS MATCH expression.
+    // every word becomes a prefix query, so "jo spring" matches "John" in "Springfield".
+    // words are split on anything that isn't a letter or digit, which also keeps
+    // FTS operators and quotes typed by the user out of the expression.
+    // returns null if term has no words to search for.
+    static String buildMatchExpression(String term){
+        StringBuilder expression = new StringBuilder();
+        int length = term == null ? 0 : term.length();
+        int start = -1;
+
+        for( int i = 0; i <= length; ++i ){
+            boolean wordChar = i < length && Character.isLetterOrDigit(term.charAt(i));
+
+            if( wordChar && start < 0 ){
+                start = i; // start of a word
+            } else if( !wordChar && start >= 0 ){
+                if( expression.length() > 0 ){
+                    expression.append(' ');
+                }
+                // not the default locale's rules, which could turn "I" into "\u0131"
+                // and miss every match
+                expression.append(term.substring(start, i).toLowerCase(Locale.ROOT)).append('*');
+                start = -1;
+            }
+        }
+
+        return expression.length() == 0 ? null : expression.toString();
+    }
+
+    // builds "INSERT INTO contacts(name, phone, ..., phone_normalized, email_normalized)
+    // VALUES(?, ?, ...)"
+    private static String buildInsertSql(){
+        StringBuilder columns = new StringBuilder();
+        StringBuilder placeholders = new StringBuilder();
+
+        for( int i = 0; i < INSERT_COLUMNS.length; ++i ){
+            columns.append(INSERT_COLUMNS[i]).append(", ");
+            placeholders.append("?, ");
+        }
+        columns.append(Contact.COLUMN_PHONE_NORMALIZED + ", " + Contact.COLUMN_EMAIL_NORMALIZED);
+        placeholders.append("?, ?");
+
+        return "INSERT INTO " + Contact.TABLE_NAME +
+               "(" + columns + ") VALUES(" + placeholders + ")";
+    }
+
+    // bind one contact's values, and its normalized phone and email, to the compiled insert
+    // statement. columns missing from contentValues are bound to NULL, the same as insert() would store.
+    private static void bindContact(SQLiteStatement statement, ContentValues contentValues){
+        statement.clearBindings();
+
+        // bind indexes start at 1
+        for( int i = 0; i < INSERT_COLUMNS.length; ++i ){
+            bindNullable(statement, i + 1, contentValues.getAsString(INSERT_COLUMNS[i]));
+        }
+        bindNullable(statement, INSERT_COLUMNS.length + 1,
+            ContactNormalizer.normalizePhone(contentValues.getAsString(Contact.COLUMN_PHONE)));
+        bindNullable(statement, INSERT_COLUMNS.length + 2,
+            ContactNormalizer.normalizeEmail(contentValues.getAsString(Contact.COLUMN_EMAIL)));
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value){
+        if( value == null ){
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
 }
@@ -2,29 +2,250 @@ package com.example.lawrence.addressbook.data;
 
 import android.content.Context;
 
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 
+import android.os.Build;
+
+import com.example.lawrence.addressbook.data.DatabaseDescription.Change;
 import com.example.lawrence.addressbook.data.DatabaseDescription.Contact;
+import com.example.lawrence.addressbook.data.DatabaseDescription.Duplicate;
 
 // SQLiteOpenHelper subclass that defines the app's database
 public class AddressBookDatabaseHelper extends SQLiteOpenHelper{
 
     private static final String DATABASE_NAME = "AddressBook.db";
-    private static final int DATABASE_VERSION = 1;
+
+    // write-ahead logging (WAL) lets readers keep reading while another client writes,
+    // instead of waiting for the writer's rollback journal lock
+    static final boolean DEFAULT_WAL_ENABLED = true;
+
+    // size, in pages, the WAL file may reach before SQLite copies it back into the
+    // database (a checkpoint). larger values mean fewer, longer checkpoints.
+    // SQLite's own default is 1000.
+    static final int DEFAULT_WAL_AUTOCHECKPOINT_PAGES = 1000;
+
+    // most queries AddressBookContentProvider runs against the database at once.
+    // Android sizes its own connection pool, so this is enforced by the provider.
+    static final int DEFAULT_MAX_CONCURRENT_READERS = 4;
+
+    // one step of the schema's history: migrate() changes a version (version - 1)
+    // database into a version "version" database, in place.
+    // to change the schema, append a Migration with the next version number;
+    // never edit one that has shipped.
+    private static abstract class Migration {
+        final int version;
+
+        Migration(int version){ this.version = version; }
+
+        abstract void migrate(SQLiteDatabase sqLiteDatabase);
+    }
+
+    // every schema change after version 1, oldest first
+    private static final Migration[] MIGRATIONS = {
+        // version 2 adds the full-text search index
+        new Migration(2) {
+            @Override
+            void migrate(SQLiteDatabase sqLiteDatabase){
+                createSearchIndex(sqLiteDatabase);
+            }
+        },
+
+        // version 3 indexes name (in list order) so loading the list doesn't sort every row,
+        // and email and phone for lookups
+        new Migration(3) {
+            @Override
+            void migrate(SQLiteDatabase sqLiteDatabase){
+                sqLiteDatabase.execSQL("CREATE INDEX " + Contact.TABLE_NAME + "_name_index ON " +
+                    Contact.TABLE_NAME + "(" + Contact.COLUMN_NAME + " COLLATE NOCASE);");
+                sqLiteDatabase.execSQL("CREATE INDEX " + Contact.TABLE_NAME + "_email_index ON " +
+                    Contact.TABLE_NAME + "(" + Contact.COLUMN_EMAIL + ");");
+                sqLiteDatabase.execSQL("CREATE INDEX " + Contact.TABLE_NAME + "_phone_index ON " +
+                    Contact.TABLE_NAME + "(" + Contact.COLUMN_PHONE + ");");
+            }
+        },
+
+        // version 4 adds the table holding the duplicate scan's results
+        new Migration(4) {
+            @Override
+            void migrate(SQLiteDatabase sqLiteDatabase){
+                sqLiteDatabase.execSQL("CREATE TABLE " + Duplicate.TABLE_NAME + "(" +
+                    Duplicate.COLUMN_CONTACT_ID + " integer primary key, " +
+                    Duplicate.COLUMN_GROUP_ID + " integer not null);");
+                sqLiteDatabase.execSQL("CREATE INDEX " + Duplicate.TABLE_NAME + "_group_index ON " +
+                    Duplicate.TABLE_NAME + "(" + Duplicate.COLUMN_GROUP_ID + ");");
+
+                // a deleted contact is no longer anyone's duplicate
+                sqLiteDatabase.execSQL(
+                    "CREATE TRIGGER " + Duplicate.TABLE_NAME + "_contact_delete AFTER DELETE ON " +
+                    Contact.TABLE_NAME + " BEGIN " +
+                    "DELETE FROM " + Duplicate.TABLE_NAME + " WHERE " +
+                    Duplicate.COLUMN_CONTACT_ID + " = old." + Contact._ID + "; END;");
+            }
+        },
+
+        // version 5 adds normalized phone and email columns, indexed for reverse lookups
+        new Migration(5) {
+            @Override
+            void migrate(SQLiteDatabase sqLiteDatabase){
+                sqLiteDatabase.execSQL("ALTER TABLE " + Contact.TABLE_NAME + " ADD COLUMN " +
+                    Contact.COLUMN_PHONE_NORMALIZED + " TEXT;");
+                sqLiteDatabase.execSQL("ALTER TABLE " + Contact.TABLE_NAME + " ADD COLUMN " +
+                    Contact.COLUMN_EMAIL_NORMALIZED + " TEXT;");
+                backfillNormalizedColumns(sqLiteDatabase);
+                sqLiteDatabase.execSQL("CREATE INDEX " + Contact.TABLE_NAME + "_phone_normalized_index ON " +
+                    Contact.TABLE_NAME + "(" + Contact.COLUMN_PHONE_NORMALIZED + ");");
+                sqLiteDatabase.execSQL("CREATE INDEX " + Contact.TABLE_NAME + "_email_normalized_index ON " +
+                    Contact.TABLE_NAME + "(" + Contact.COLUMN_EMAIL_NORMALIZED + ");");
+            }
+        },
+
+        // version 6 adds covering indexes for the per-region counts: SQLite can group and
+        // count from (state, city) and (zip) alone, in index order, without reading any rows.
+        // (state, city) serves both by_state and by_city.
+        new Migration(6) {
+            @Override
+            void migrate(SQLiteDatabase sqLiteDatabase){
+                sqLiteDatabase.execSQL("CREATE INDEX " + Contact.TABLE_NAME + "_state_city_index ON " +
+                    Contact.TABLE_NAME + "(" + Contact.COLUMN_STATE + ", " + Contact.COLUMN_CITY + ");");
+                sqLiteDatabase.execSQL("CREATE INDEX " + Contact.TABLE_NAME + "_zip_index ON " +
+                    Contact.TABLE_NAME + "(" + Contact.COLUMN_ZIP + ");");
+            }
+        },
+
+        // version 7 adds the deleted_at column for soft deletes.
+        // every query now skips tombstones, so deleted_at is appended to the per-region
+        // indexes to keep them covering.
+        new Migration(7) {
+            @Override
+            void migrate(SQLiteDatabase sqLiteDatabase){
+                sqLiteDatabase.execSQL("ALTER TABLE " + Contact.TABLE_NAME + " ADD COLUMN " +
+                    Contact.COLUMN_DELETED_AT + " INTEGER;");
+
+                sqLiteDatabase.execSQL("DROP INDEX " + Contact.TABLE_NAME + "_state_city_index;");
+                sqLiteDatabase.execSQL("DROP INDEX " + Contact.TABLE_NAME + "_zip_index;");
+                sqLiteDatabase.execSQL("CREATE INDEX " + Contact.TABLE_NAME + "_state_city_index ON " +
+                    Contact.TABLE_NAME + "(" + Contact.COLUMN_STATE + ", " + Contact.COLUMN_CITY + ", " +
+                    Contact.COLUMN_DELETED_AT + ");");
+                sqLiteDatabase.execSQL("CREATE INDEX " + Contact.TABLE_NAME + "_zip_index ON " +
+                    Contact.TABLE_NAME + "(" + Contact.COLUMN_ZIP + ", " + Contact.COLUMN_DELETED_AT + ");");
+
+                // finds the tombstones old enough to purge
+                sqLiteDatabase.execSQL("CREATE INDEX " + Contact.TABLE_NAME + "_deleted_at_index ON " +
+                    Contact.TABLE_NAME + "(" + Contact.COLUMN_DELETED_AT + ");");
+            }
+        },
+
+        // version 8 adds the change log and its consumers
+        new Migration(8) {
+            @Override
+            void migrate(SQLiteDatabase sqLiteDatabase){
+                createChangeLog(sqLiteDatabase);
+            }
+        },
+
+        // version 9 adds the photo file name column
+        new Migration(9) {
+            @Override
+            void migrate(SQLiteDatabase sqLiteDatabase){
+                sqLiteDatabase.execSQL("ALTER TABLE " + Contact.TABLE_NAME + " ADD COLUMN " +
+                    Contact.COLUMN_PHOTO + " TEXT;");
+            }
+        }
+    };
+
+    // the current version is the one the last migration produces
+    private static final int DATABASE_VERSION = MIGRATIONS[MIGRATIONS.length - 1].version;
+
+    private final boolean mWalEnabled;
+    private final int mWalAutoCheckpointPages;
+    private final int mMaxConcurrentReaders;
+
+    // set by onCreate() so onOpen() finishes switching a new database to incremental vacuum
+    private boolean mCreated = false;
 
     // constructor
     public AddressBookDatabaseHelper(Context context){
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME);
+    }
+
+    // constructor for a database with a different file name (used by tests)
+    AddressBookDatabaseHelper(Context context, String databaseName){
+        this(context, databaseName, DEFAULT_WAL_ENABLED,
+             DEFAULT_WAL_AUTOCHECKPOINT_PAGES, DEFAULT_MAX_CONCURRENT_READERS);
+    }
+
+    // constructor with explicit journaling settings
+    AddressBookDatabaseHelper(Context context, String databaseName, boolean walEnabled,
+                              int walAutoCheckpointPages, int maxConcurrentReaders){
+        super(context, databaseName, null, DATABASE_VERSION);
         // context is the the "context/activity/fragment" in which the db is being created or opened
         // the database name that we defined earlier
         // null is the CursorFactory argument (not used)
         // the database version number (starts with 1)
+
+        mWalEnabled = walEnabled;
+        mWalAutoCheckpointPages = walAutoCheckpointPages;
+        mMaxConcurrentReaders = maxConcurrentReaders;
+
+        // from API 16 the helper switches the journal mode itself when it opens the database;
+        // older versions are switched in onOpen()
+        if( Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN ){
+            setWriteAheadLoggingEnabled(walEnabled);
+        }
+    }
+
+    // most queries that should run against the database at once
+    int getMaxConcurrentReaders() {
+        return mMaxConcurrentReaders;
+    }
+
+    // called each time the database is opened, after it has been created or upgraded
+    @Override
+    public void onOpen(SQLiteDatabase sqLiteDatabase) {
+        super.onOpen(sqLiteDatabase);
+
+        // Android creates its android_metadata table as soon as the file is opened, before
+        // onCreate(), and auto_vacuum can only change on a database with tables in it by
+        // a VACUUM. onCreate() runs inside a transaction, where VACUUM can't, so a new
+        // database is vacuumed here; with nothing in it yet, that's quick
+        if( mCreated ){
+            mCreated = false;
+            if( pragmaLong(sqLiteDatabase, "PRAGMA auto_vacuum") != 2 ){ // 2 is INCREMENTAL
+                sqLiteDatabase.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+                sqLiteDatabase.execSQL("VACUUM");
+            }
+        }
+
+        if( !mWalEnabled || sqLiteDatabase.isReadOnly() ){
+            return;
+        }
+        if( Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN ){
+            sqLiteDatabase.enableWriteAheadLogging();
+        }
+
+        // PRAGMA wal_autocheckpoint returns a row, so it has to go through rawQuery(),
+        // and rawQuery() only runs it once the cursor is stepped
+        Cursor cursor = sqLiteDatabase.rawQuery(
+            "PRAGMA wal_autocheckpoint=" + mWalAutoCheckpointPages, null);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
     }
 
     // creates contacts table when database is created
     @Override
     public void onCreate(SQLiteDatabase sqLiteDatabase) {
+        // free pages are given back with incremental_vacuum (see
+        // AddressBookContentProvider.compact()), which needs auto_vacuum set before the
+        // first table is created; onOpen() makes sure it took
+        sqLiteDatabase.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+        mCreated = true;
+
         // SQL code to create contacts table
         final String CREATE_CONTACTS_TABLE =
                 "CREATE TABLE " + Contact.TABLE_NAME + "(" +
@@ -39,17 +260,156 @@ public class AddressBookDatabaseHelper extends SQLiteOpenHelper{
 
         // execute the sql command
         sqLiteDatabase.execSQL(CREATE_CONTACTS_TABLE);
+
+        // bring the version 1 schema up to date the same way an upgrade would,
+        // so new and upgraded databases always end up identical
+        migrate(sqLiteDatabase, 1, DATABASE_VERSION);
     }
 
-    // not used by needs to be overridden
     // this callback is used to upgrade a db from version 1 to 2 or 2 to 3, etc.
-    // where you add more columns from 1 to 2.
-    // for example, we add a facebook user name to contact details.
+    // SQLiteOpenHelper runs it inside a transaction, so a failed migration leaves
+    // the database at its old version.
     @Override
-    public void onUpgrade(SQLiteDatabase sqLiteDatabase, int i, int i1) { /* not used */ }
+    public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
+        migrate(sqLiteDatabase, oldVersion, newVersion);
+    }
+
+    // run, in order, every migration after oldVersion up to and including newVersion
+    private static void migrate(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
+        for( Migration migration : MIGRATIONS ){
+            if( migration.version > oldVersion && migration.version <= newVersion ){
+                migration.migrate(sqLiteDatabase);
+            }
+        }
+    }
+
+    // creates the FTS4 table used by searches, the triggers that keep it in sync
+    // with the contacts table, and fills it from any existing contacts.
+    // the FTS table's docid is the contact's _id.
+    private static void createSearchIndex(SQLiteDatabase sqLiteDatabase) {
+        final String SEARCH_COLUMNS =
+                Contact.COLUMN_NAME + ", " +
+                Contact.COLUMN_EMAIL + ", " +
+                Contact.COLUMN_CITY + ", " +
+                Contact.COLUMN_PHONE;
+        final String NEW_VALUES =
+                "new." + Contact._ID + ", " +
+                "new." + Contact.COLUMN_NAME + ", " +
+                "new." + Contact.COLUMN_EMAIL + ", " +
+                "new." + Contact.COLUMN_CITY + ", " +
+                "new." + Contact.COLUMN_PHONE;
+
+        sqLiteDatabase.execSQL(
+                "CREATE VIRTUAL TABLE " + Contact.FTS_TABLE_NAME +
+                " USING fts4(" + SEARCH_COLUMNS + ");");
+
+        // add, replace or remove the FTS row whenever a contact changes
+        sqLiteDatabase.execSQL(
+                "CREATE TRIGGER " + Contact.FTS_TABLE_NAME + "_insert AFTER INSERT ON " +
+                Contact.TABLE_NAME + " BEGIN " +
+                "INSERT INTO " + Contact.FTS_TABLE_NAME +
+                "(docid, " + SEARCH_COLUMNS + ") VALUES(" + NEW_VALUES + "); END;");
+        sqLiteDatabase.execSQL(
+                "CREATE TRIGGER " + Contact.FTS_TABLE_NAME + "_update AFTER UPDATE ON " +
+                Contact.TABLE_NAME + " BEGIN " +
+                "DELETE FROM " + Contact.FTS_TABLE_NAME + " WHERE docid = old." + Contact._ID + "; " +
+                "INSERT INTO " + Contact.FTS_TABLE_NAME +
+                "(docid, " + SEARCH_COLUMNS + ") VALUES(" + NEW_VALUES + "); END;");
+        sqLiteDatabase.execSQL(
+                "CREATE TRIGGER " + Contact.FTS_TABLE_NAME + "_delete AFTER DELETE ON " +
+                Contact.TABLE_NAME + " BEGIN " +
+                "DELETE FROM " + Contact.FTS_TABLE_NAME + " WHERE docid = old." + Contact._ID + "; END;");
+
+        // index contacts that existed before the FTS table
+        sqLiteDatabase.execSQL(
+                "INSERT INTO " + Contact.FTS_TABLE_NAME + "(docid, " + SEARCH_COLUMNS + ") " +
+                "SELECT " + Contact._ID + ", " + SEARCH_COLUMNS + " FROM " + Contact.TABLE_NAME + ";");
+    }
+
+    // fills the normalized columns of existing contacts. SQLite can't strip punctuation from
+    // phones by itself, so every contact is read and written back through one compiled statement.
+    // the indexes are created afterwards, which is faster than updating them row by row.
+    private static void backfillNormalizedColumns(SQLiteDatabase sqLiteDatabase) {
+        SQLiteStatement statement = sqLiteDatabase.compileStatement(
+                "UPDATE " + Contact.TABLE_NAME + " SET " +
+                Contact.COLUMN_PHONE_NORMALIZED + "=?, " +
+                Contact.COLUMN_EMAIL_NORMALIZED + "=? WHERE " + Contact._ID + "=?");
+        Cursor cursor = sqLiteDatabase.query(Contact.TABLE_NAME,
+                new String[]{ Contact._ID, Contact.COLUMN_PHONE, Contact.COLUMN_EMAIL },
+                Contact.COLUMN_PHONE + " IS NOT NULL OR " + Contact.COLUMN_EMAIL + " IS NOT NULL",
+                null, null, null, null);
+        try {
+            while( cursor.moveToNext() ){
+                bindNullable(statement, 1, ContactNormalizer.normalizePhone(cursor.getString(1)));
+                bindNullable(statement, 2, ContactNormalizer.normalizeEmail(cursor.getString(2)));
+                statement.bindLong(3, cursor.getLong(0));
+                statement.executeUpdateDelete();
+            }
+        } finally {
+            cursor.close();
+            statement.close();
+        }
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if( value == null ){
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    // creates the change log, its consumers table, and the triggers that log every change
+    // to the contacts table. the triggers run inside the statement that changed the contact,
+    // so a change and its log row are committed (or rolled back) together.
+    private static void createChangeLog(SQLiteDatabase sqLiteDatabase) {
+        // AUTOINCREMENT, so a seq is never handed out again after the log is truncated
+        sqLiteDatabase.execSQL("CREATE TABLE " + Change.TABLE_NAME + "(" +
+                Change.COLUMN_SEQ + " integer primary key autoincrement, " +
+                Change.COLUMN_CONTACT_ID + " integer not null, " +
+                Change.COLUMN_OP + " integer not null, " +
+                Change.COLUMN_TIMESTAMP + " integer not null);");
+        sqLiteDatabase.execSQL("CREATE TABLE " + Change.CONSUMERS_TABLE_NAME + "(" +
+                Change.COLUMN_CONSUMER + " TEXT primary key, " +
+                Change.COLUMN_ACKED_SEQ + " integer not null);");
+
+        final String LOG = "INSERT INTO " + Change.TABLE_NAME + "(" +
+                Change.COLUMN_CONTACT_ID + ", " + Change.COLUMN_OP + ", " + Change.COLUMN_TIMESTAMP + ") VALUES(";
+        // milliseconds since 1970, like System.currentTimeMillis()
+        final String NOW = "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)";
+
+        sqLiteDatabase.execSQL(
+                "CREATE TRIGGER " + Change.TABLE_NAME + "_insert AFTER INSERT ON " +
+                Contact.TABLE_NAME + " BEGIN " +
+                LOG + "new." + Contact._ID + ", " + Change.OP_INSERT + ", " + NOW + "); END;");
+
+        // a soft delete is a delete, an undelete an insert; edits to tombstones aren't logged
+        sqLiteDatabase.execSQL(
+                "CREATE TRIGGER " + Change.TABLE_NAME + "_update AFTER UPDATE ON " +
+                Contact.TABLE_NAME + " WHEN old." + Contact.COLUMN_DELETED_AT + " IS NULL OR new." +
+                Contact.COLUMN_DELETED_AT + " IS NULL BEGIN " +
+                LOG + "new." + Contact._ID + ", CASE" +
+                " WHEN new." + Contact.COLUMN_DELETED_AT + " IS NOT NULL THEN " + Change.OP_DELETE +
+                " WHEN old." + Contact.COLUMN_DELETED_AT + " IS NOT NULL THEN " + Change.OP_INSERT +
+                " ELSE " + Change.OP_UPDATE + " END, " + NOW + "); END;");
+
+        // purging a tombstone isn't logged again, its soft delete already was
+        sqLiteDatabase.execSQL(
+                "CREATE TRIGGER " + Change.TABLE_NAME + "_delete AFTER DELETE ON " +
+                Contact.TABLE_NAME + " WHEN old." + Contact.COLUMN_DELETED_AT + " IS NULL BEGIN " +
+                LOG + "old." + Contact._ID + ", " + Change.OP_DELETE + ", " + NOW + "); END;");
+    }
 
     // similarly, there is a onDowngrade() method that goes from 2 to 1
     // but it doesn't need to be explicitly overridden.
-}
-
 
+    // the single value a pragma returns; also used by AddressBookContentProvider
+    static long pragmaLong(SQLiteDatabase db, String pragma){
+        Cursor cursor = db.rawQuery(pragma, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+}
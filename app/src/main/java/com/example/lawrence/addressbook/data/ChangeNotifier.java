@@ -0,0 +1,127 @@
+package com.example.lawrence.addressbook.data;
+
+import android.content.ContentResolver;
+
+import android.net.Uri;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import com.example.lawrence.addressbook.data.DatabaseDescription.Contact;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// sends AddressBookContentProvider's change notifications.
+// instead of calling ContentResolver.notifyChange() after every write, the Uris that
+// changed are collected and sent together once the notification window has passed,
+// or when the last open batch ends, so each Uri is notified once however many times
+// it changed. observers of a single contact's Uri (e.g. DetailFragment's loader) only
+// hear about that contact; when many rows change, the whole table's Uri is sent instead.
+class ChangeNotifier {
+
+    // how long changes are collected before they are sent
+    static final long DEFAULT_WINDOW_MILLIS = 100;
+
+    // if more contacts than this changed in one window, notify the table's Uri once
+    // instead of every contact's Uri (which would make list observers reload repeatedly)
+    static final int DEFAULT_MAX_ROW_URIS = 10;
+
+    private final ContentResolver mResolver;
+
+    // notifications are sent from a background thread; notifyChange() is a binder call
+    private final Handler mHandler;
+
+    // changed Uris not sent yet, in the order they changed
+    private final Set<Uri> mPending = new LinkedHashSet<>();
+
+    private long mWindowMillis = DEFAULT_WINDOW_MILLIS;
+    private int mMaxRowUris = DEFAULT_MAX_ROW_URIS;
+    private boolean mRowLevelUris = true;
+
+    // number of batches in progress; nothing is sent while one is open
+    private int mOpenBatches = 0;
+
+    private boolean mFlushScheduled = false;
+
+    private final Runnable mFlush = new Runnable() {
+        @Override
+        public void run(){
+            flush();
+        }
+    };
+
+    ChangeNotifier(ContentResolver resolver){
+        mResolver = resolver;
+
+        HandlerThread thread = new HandlerThread("AddressBookChangeNotifier");
+        thread.start();
+        mHandler = new Handler(thread.getLooper());
+    }
+
+    // how long changes are collected before being sent; 0 sends them right away
+    synchronized void setWindowMillis(long windowMillis){
+        mWindowMillis = windowMillis;
+    }
+
+    // most contact Uris sent for one window before the table's Uri is sent instead
+    synchronized void setMaxRowUris(int maxRowUris){
+        mMaxRowUris = maxRowUris;
+    }
+
+    // if false, every change is sent as a change to the whole contacts table
+    synchronized void setRowLevelUris(boolean rowLevelUris){
+        mRowLevelUris = rowLevelUris;
+    }
+
+    // record that the data at uri changed
+    synchronized void notifyChange(Uri uri){
+        mPending.add(mRowLevelUris ? uri : Contact.CONTENT_URI);
+
+        if( mOpenBatches == 0 && !mFlushScheduled ){
+            mFlushScheduled = true;
+            mHandler.postDelayed(mFlush, mWindowMillis);
+        }
+    }
+
+    // hold every notification until the matching endBatch();
+    // batches may nest and may be open on several threads at once
+    synchronized void beginBatch(){
+        ++mOpenBatches;
+    }
+
+    // close a batch; once no batch is open the collected changes are sent right away
+    synchronized void endBatch(){
+        if( --mOpenBatches == 0 && !mPending.isEmpty() ){
+            mHandler.removeCallbacks(mFlush);
+            mFlushScheduled = true;
+            mHandler.post(mFlush);
+        }
+    }
+
+    // send the collected changes
+    private void flush(){
+        List<Uri> uris;
+        synchronized( this ){
+            mFlushScheduled = false;
+            if( mOpenBatches > 0 || mPending.isEmpty() ){
+                return; // endBatch() will flush
+            }
+
+            // the table's Uri also reaches the observers of every contact in it
+            if( mPending.contains(Contact.CONTENT_URI) || mPending.size() > mMaxRowUris ){
+                uris = new ArrayList<>(1);
+                uris.add(Contact.CONTENT_URI);
+            } else {
+                uris = new ArrayList<>(mPending);
+            }
+            mPending.clear();
+        }
+
+        for( Uri uri : uris ){
+            mResolver.notifyChange(uri, null);
+        }
+    }
+}
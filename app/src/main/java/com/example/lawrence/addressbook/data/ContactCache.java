@@ -0,0 +1,135 @@
+package com.example.lawrence.addressbook.data;
+
+import android.content.Context;
+
+import android.database.ContentObserver;
+
+import android.net.Uri;
+
+import android.support.v4.util.LruCache;
+
+import android.text.TextUtils;
+
+import com.example.lawrence.addressbook.data.DatabaseDescription.Contact;
+
+import java.util.List;
+
+// process-wide cache of recently displayed contacts, keyed by _id.
+// DetailFragment and AddEditFragment (through ContactLoader) look here first, so
+// opening a contact that was just shown, or editing the contact on screen, needs
+// no query at all.
+// the cache listens for AddressBookContentProvider's change notifications: a change
+// to one contact's Uri drops that contact, a change to the whole table drops everything,
+// and changes to derived results such as the duplicate groups are ignored.
+public class ContactCache {
+
+    // most contacts kept; the least recently used one is dropped first
+    static final int DEFAULT_MAX_CONTACTS = 100;
+
+    private static ContactCache sInstance;
+
+    private final LruCache<Long, ContactDetails> mContacts;
+
+    // bumped whenever anything is dropped or replaced. a load remembers the generation
+    // it started at, and its result is only stored if nothing changed in between,
+    // so a slow load can't put back details that are already out of date.
+    private long mGeneration = 0;
+
+    // lookups through get() that found / didn't find the contact
+    private int mHits = 0;
+    private int mMisses = 0;
+
+    // the cache shared by the whole app; it starts listening for changes the first time
+    public static synchronized ContactCache getInstance(Context context){
+        if( sInstance == null ){
+            sInstance = new ContactCache(DEFAULT_MAX_CONTACTS);
+            sInstance.observe(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    ContactCache(int maxContacts){
+        mContacts = new LruCache<>(maxContacts);
+    }
+
+    // cached details of the contact, or null; counts as a hit or a miss
+    public synchronized ContactDetails get(long id){
+        ContactDetails contact = mContacts.get(id);
+        if( contact != null ){
+            ++mHits;
+        } else {
+            ++mMisses;
+        }
+        return contact;
+    }
+
+    // whether the contact is cached, without counting a hit or miss
+    // (used by ContactPrefetcher to skip contacts it doesn't need to load)
+    public synchronized boolean contains(long id){
+        return mContacts.get(id) != null;
+    }
+
+    // current generation, to pass to put() once a load finishes
+    public synchronized long getGeneration(){
+        return mGeneration;
+    }
+
+    // store details loaded from the database, unless the cache was invalidated since
+    // the load started at generation
+    public synchronized void put(ContactDetails contact, long generation){
+        if( generation == mGeneration ){
+            mContacts.put(contact.getId(), contact);
+        }
+    }
+
+    // store details just written by this process (e.g. AddEditFragment's save),
+    // replacing anything cached or still being loaded for the contact
+    public synchronized void replace(ContactDetails contact){
+        ++mGeneration;
+        mContacts.put(contact.getId(), contact);
+    }
+
+    // drop one contact, e.g. after deleting it
+    public synchronized void remove(long id){
+        ++mGeneration;
+        mContacts.remove(id);
+    }
+
+    // drop every contact
+    public synchronized void clear(){
+        ++mGeneration;
+        mContacts.evictAll();
+    }
+
+    public synchronized int getHitCount(){ return mHits; }
+    public synchronized int getMissCount(){ return mMisses; }
+
+    // drop whatever a change notification for uri covers
+    synchronized void invalidate(Uri uri){
+        // contact Uris look like content://<authority>/contacts/<_id>
+        List<String> segments = uri == null ? null : uri.getPathSegments();
+        if( segments == null || segments.size() < 2 ){
+            clear();
+        } else if( segments.size() == 2 && TextUtils.isDigitsOnly(segments.get(1)) ){
+            remove(Long.parseLong(segments.get(1)));
+        }
+        // other Uris under contacts/, like contacts/duplicates, don't change any contact
+    }
+
+    // listen for changes to the contacts table and to every contact in it
+    private void observe(Context context){
+        context.getContentResolver().registerContentObserver(Contact.CONTENT_URI, true,
+            new ContentObserver(null) {
+                // API 14-15 don't say which Uri changed
+                @Override
+                public void onChange(boolean selfChange){
+                    invalidate(null);
+                }
+
+                @Override
+                public void onChange(boolean selfChange, Uri uri){
+                    invalidate(uri);
+                }
+            });
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.lawrence.addressbook.data;
+
+import android.content.ContentValues;
+
+import com.example.lawrence.addressbook.data.DatabaseDescription.Contact;
+
+// one contact's details, copied out of the database.
+// unlike ContactRow it owns its data and never changes, so it can be kept in
+// ContactCache and shared between screens and threads.
+public class ContactDetails {
+
+    private final long mId;
+    private final String mName;
+    private final String mPhone;
+    private final String mEmail;
+    private final String mStreet;
+    private final String mCity;
+    private final String mState;
+    private final String mZip;
+    private final String mPhoto;
+
+    public ContactDetails(long id, String name, String phone, String email,
+                          String street, String city, String state, String zip, String photo){
+        mId = id;
+        mName = name;
+        mPhone = phone;
+        mEmail = email;
+        mStreet = street;
+        mCity = city;
+        mState = state;
+        mZip = zip;
+        mPhoto = photo;
+    }
+
+    // copy the current row of a Cursor queried with ContactProjection.DETAIL
+    public static ContactDetails fromRow(ContactRow row){
+        return new ContactDetails(row.getId(), row.getName(), row.getPhone(), row.getEmail(),
+            row.getStreet(), row.getCity(), row.getState(), row.getZip(), row.getPhoto());
+    }
+
+    // the contact with the given id as it is after writing contentValues to it.
+    // columns missing from contentValues are left null.
+    public static ContactDetails fromContentValues(long id, ContentValues contentValues){
+        return new ContactDetails(id,
+            contentValues.getAsString(Contact.COLUMN_NAME),
+            contentValues.getAsString(Contact.COLUMN_PHONE),
+            contentValues.getAsString(Contact.COLUMN_EMAIL),
+            contentValues.getAsString(Contact.COLUMN_STREET),
+            contentValues.getAsString(Contact.COLUMN_CITY),
+            contentValues.getAsString(Contact.COLUMN_STATE),
+            contentValues.getAsString(Contact.COLUMN_ZIP),
+            contentValues.getAsString(Contact.COLUMN_PHOTO));
+    }
+
+    public long getId(){ return mId; }
+    public String getName(){ return mName; }
+    public String getPhone(){ return mPhone; }
+    public String getEmail(){ return mEmail; }
+    public String getStreet(){ return mStreet; }
+    public String getCity(){ return mCity; }
+    public String getState(){ return mState; }
+    public String getZip(){ return mZip; }
+    public String getPhoto(){ return mPhoto; }
+}
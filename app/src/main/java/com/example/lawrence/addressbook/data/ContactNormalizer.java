@@ -0,0 +1,123 @@
+package com.example.lawrence.addressbook.data;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+// canonical forms of contact fields, so values typed differently compare equal:
+// "(555) 123-4567" and "+1 555 123 4567" are the same phone, "John.Smith+work@Example.com "
+// and "john.smith@example.com" the same email, "Jose  SMITH" and "jose smith" the same name.
+// all methods return null for values with nothing to compare.
+public final class ContactNormalizer {
+
+    // phones with fewer digits than this are too short to identify anyone
+    static final int MIN_PHONE_DIGITS = 7;
+
+    private ContactNormalizer(){ }
+
+    // digits only, without a leading North American country code "1"
+    public static String normalizePhone(String phone){
+        if( phone == null ){
+            return null;
+        }
+        StringBuilder digits = new StringBuilder(phone.length());
+        for( int i = 0; i < phone.length(); ++i ){
+            char c = phone.charAt(i);
+            if( c >= '0' && c <= '9' ){
+                digits.append(c);
+            }
+        }
+        if( digits.length() == 11 && digits.charAt(0) == '1' ){
+            digits.deleteCharAt(0);
+        }
+        return digits.length() < MIN_PHONE_DIGITS ? null : digits.toString();
+    }
+
+    // trimmed and lower case, without a "+tag" after the user name
+    public static String normalizeEmail(String email){
+        if( email == null ){
+            return null;
+        }
+        String trimmed = email.trim().toLowerCase(Locale.US);
+        int at = trimmed.lastIndexOf('@');
+        if( at <= 0 || at == trimmed.length() - 1 ){
+            return null;
+        }
+        int plus = trimmed.indexOf('+');
+        if( plus > 0 && plus < at ){
+            trimmed = trimmed.substring(0, plus) + trimmed.substring(at);
+        }
+        return trimmed;
+    }
+
+    // lower case words of letters and digits, without accents, separated by single spaces
+    public static String normalizeName(String name){
+        if( name == null ){
+            return null;
+        }
+        // an accented letter becomes the letter followed by a combining accent, which is dropped below
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        boolean space = false;
+        for( int i = 0; i < decomposed.length(); ++i ){
+            char c = decomposed.charAt(i);
+            if( Character.isLetterOrDigit(c) ){
+                if( space && normalized.length() > 0 ){
+                    normalized.append(' ');
+                }
+                normalized.append(Character.toLowerCase(c));
+                space = false;
+            } else if( Character.getType(c) != Character.NON_SPACING_MARK ){
+                space = true;
+            }
+        }
+        return normalized.length() == 0 ? null : normalized.toString();
+    }
+
+    // how a normalized name sounds: the Soundex codes of its first and last words, in
+    // alphabetical order, so "john a smith", "jon smith" and "smith john" share a key
+    public static String phoneticKey(String normalizedName){
+        if( normalizedName == null ){
+            return null;
+        }
+        int firstSpace = normalizedName.indexOf(' ');
+        if( firstSpace < 0 ){
+            return soundex(normalizedName);
+        }
+        String first = soundex(normalizedName.substring(0, firstSpace));
+        String last = soundex(normalizedName.substring(normalizedName.lastIndexOf(' ') + 1));
+        return first.compareTo(last) <= 0 ? first + " " + last : last + " " + first;
+    }
+
+    // American Soundex: first letter plus three digits for the consonant sounds after it,
+    // e.g. "robert" and "rupert" are both "R163". words not starting with a-z are kept as is.
+    static String soundex(String word){
+        char first = word.charAt(0);
+        if( first < 'a' || first > 'z' ){
+            return word;
+        }
+
+        // codes for a..z; '0' is a vowel (or y), which separates repeated codes,
+        // '-' is h or w, which doesn't
+        final String CODES = "0123012-02245501262301-202";
+        StringBuilder key = new StringBuilder(4).append(Character.toUpperCase(first));
+        char previous = CODES.charAt(first - 'a');
+        for( int i = 1; i < word.length() && key.length() < 4; ++i ){
+            char c = word.charAt(i);
+            if( c < 'a' || c > 'z' ){
+                continue;
+            }
+            char code = CODES.charAt(c - 'a');
+            if( code == '-' ){
+                continue;
+            }
+            if( code != '0' && code != previous ){
+                key.append(code);
+            }
+            previous = code;
+        }
+        while( key.length() < 4 ){
+            key.append('0');
+        }
+        return key.toString();
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.lawrence.addressbook.data;
+
+import com.example.lawrence.addressbook.data.DatabaseDescription.Contact;
+
+// fixed projections for reading contacts, with the position of every column in them.
+// a Cursor queried with one of these projections can be read by position,
+// without a getColumnIndex() string lookup, and only pulls the columns it needs.
+public final class ContactProjection {
+
+    // the contact list shows each contact's name and photo
+    public static final String[] LIST = { Contact._ID, Contact.COLUMN_NAME, Contact.COLUMN_PHOTO };
+    public static final int LIST_ID = 0;
+    public static final int LIST_NAME = 1;
+    public static final int LIST_PHOTO = 2;
+
+    // every column of a contact, for the detail and add/edit screens
+    public static final String[] DETAIL = {
+        Contact._ID, Contact.COLUMN_NAME, Contact.COLUMN_PHONE, Contact.COLUMN_EMAIL,
+        Contact.COLUMN_STREET, Contact.COLUMN_CITY, Contact.COLUMN_STATE, Contact.COLUMN_ZIP,
+        Contact.COLUMN_PHOTO
+    };
+    public static final int DETAIL_ID = 0;
+    public static final int DETAIL_NAME = 1;
+    public static final int DETAIL_PHONE = 2;
+    public static final int DETAIL_EMAIL = 3;
+    public static final int DETAIL_STREET = 4;
+    public static final int DETAIL_CITY = 5;
+    public static final int DETAIL_STATE = 6;
+    public static final int DETAIL_ZIP = 7;
+    public static final int DETAIL_PHOTO = 8;
+
+    private ContactProjection(){ /* constants only */ }
+}
@@ -0,0 +1,90 @@
+package com.example.lawrence.addressbook.data;
+
+import android.content.ContentResolver;
+
+import android.database.Cursor;
+
+import android.net.Uri;
+
+import com.example.lawrence.addressbook.data.DatabaseDescription.Contact;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// builds a structured query over the contacts, instead of a selection string, e.g.
+//   new ContactQuery().wherePrefix(Contact.COLUMN_NAME, "jo")
+//       .whereEquals(Contact.COLUMN_STATE, "IL").orderBy(Contact.COLUMN_NAME, true).limit(20)
+// the query travels to the provider as a Contact.QUERY_URI, and QueryPlanner compiles
+// it there to parameterised SQL that uses the indexes.
+// name, street, city, state and zip can be compared with every operator; phone and email
+// only for equality, which matches the same number or address however it's written.
+// names compare ignoring case, like the contact list sorts them. deleted contacts are
+// never included. one predicate per column and operator; adding it again replaces it.
+public class ContactQuery {
+
+    // operators, the part of a query parameter after the column name
+    static final String OP_EQUALS = "eq";
+    static final String OP_PREFIX = "prefix";
+    static final String OP_MIN = "min";
+    static final String OP_MAX = "max";
+
+    // predicates and options so far, as query parameters
+    private final Map<String, String> mParameters = new LinkedHashMap<>();
+
+    // contacts whose column equals value
+    public ContactQuery whereEquals(String column, String value){
+        return put(column + ":" + OP_EQUALS, value);
+    }
+
+    // contacts whose column starts with prefix
+    public ContactQuery wherePrefix(String column, String prefix){
+        return put(column + ":" + OP_PREFIX, prefix);
+    }
+
+    // contacts whose column is between min and max, both included; either may be null
+    // to leave that end open
+    public ContactQuery whereRange(String column, String min, String max){
+        if( min != null ){
+            put(column + ":" + OP_MIN, min);
+        }
+        if( max != null ){
+            put(column + ":" + OP_MAX, max);
+        }
+        return this;
+    }
+
+    // sort by column, with _id breaking ties; unsorted if not called
+    public ContactQuery orderBy(String column, boolean ascending){
+        return put(Contact.PARAM_ORDER, ascending ? column : "-" + column);
+    }
+
+    // return at most limit contacts
+    public ContactQuery limit(int limit){
+        if( limit < 0 ){
+            throw new IllegalArgumentException("Invalid limit: " + limit);
+        }
+        return put(Contact.PARAM_LIMIT, String.valueOf(limit));
+    }
+
+    private ContactQuery put(String parameter, String value){
+        if( value == null ){
+            throw new IllegalArgumentException("No value for " + parameter);
+        }
+        mParameters.put(parameter, value);
+        return this;
+    }
+
+    // the query as a Uri, e.g. for a CursorLoader; it's notified when any contact changes
+    public Uri toUri(){
+        Uri.Builder builder = Contact.QUERY_URI.buildUpon();
+        for( Map.Entry<String, String> parameter : mParameters.entrySet() ){
+            builder.appendQueryParameter(parameter.getKey(), parameter.getValue());
+        }
+        return builder.build();
+    }
+
+    // run the query, reading the columns in projection (null for all)
+    public Cursor query(ContentResolver resolver, String[] projection){
+        return resolver.query(toUri(), projection, null, null, null);
+    }
+}
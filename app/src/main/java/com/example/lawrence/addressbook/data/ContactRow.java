@@ -0,0 +1,31 @@
+package com.example.lawrence.addressbook.data;
+
+import android.database.Cursor;
+
+// typed view of the current row of a Cursor queried with ContactProjection.DETAIL.
+// it holds no data of its own, so one ContactRow can be reused for every row
+// (and every Cursor) instead of allocating an object per contact.
+public class ContactRow {
+
+    private Cursor mCursor;
+
+    public ContactRow(){ }
+
+    public ContactRow(Cursor cursor){ mCursor = cursor; }
+
+    // read rows from cursor from now on
+    public ContactRow wrap(Cursor cursor){
+        mCursor = cursor;
+        return this;
+    }
+
+    public long getId(){ return mCursor.getLong(ContactProjection.DETAIL_ID); }
+    public String getName(){ return mCursor.getString(ContactProjection.DETAIL_NAME); }
+    public String getPhone(){ return mCursor.getString(ContactProjection.DETAIL_PHONE); }
+    public String getEmail(){ return mCursor.getString(ContactProjection.DETAIL_EMAIL); }
+    public String getStreet(){ return mCursor.getString(ContactProjection.DETAIL_STREET); }
+    public String getCity(){ return mCursor.getString(ContactProjection.DETAIL_CITY); }
+    public String getState(){ return mCursor.getString(ContactProjection.DETAIL_STATE); }
+    public String getZip(){ return mCursor.getString(ContactProjection.DETAIL_ZIP); }
+    public String getPhoto(){ return mCursor.getString(ContactProjection.DETAIL_PHOTO); }
+}
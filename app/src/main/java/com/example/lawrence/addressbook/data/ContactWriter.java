@@ -0,0 +1,204 @@
+package com.example.lawrence.addressbook.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+
+import android.net.Uri;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+
+import android.util.Log;
+
+import com.example.lawrence.addressbook.data.DatabaseDescription.Contact;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// writes contacts off the main thread.
+// every insert, update and delete goes onto one queue drained by a single writer thread,
+// so writes never wait on each other's locks and are applied in the order they were made.
+// writes that pile up while the writer is busy are applied together with applyBatch(),
+// which AddressBookContentProvider runs as one transaction with one round of notifications.
+// each write's Callback is called on the main thread once it's done.
+public class ContactWriter {
+
+    private static final String TAG = "ContactWriter";
+
+    // most writes applied in one transaction; the rest wait for the next one
+    static final int MAX_BATCH_SIZE = 100;
+
+    // told how a write went, on the main thread
+    public interface Callback {
+        // uri is the new contact's Uri for an insert and the written Uri otherwise;
+        // count is the number of contacts written, 0 if the write failed
+        void onWriteCompleted(Uri uri, int count);
+    }
+
+    private static ContactWriter sInstance;
+
+    private final ContentResolver mResolver;
+
+    // the writer thread, and the main thread for callbacks
+    private final Handler mHandler;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // writes not applied yet, oldest first
+    private final List<Write> mPending = new ArrayList<>();
+    private boolean mDrainScheduled = false;
+
+    private final Runnable mDrain = new Runnable() {
+        @Override
+        public void run(){
+            drain();
+        }
+    };
+
+    // one queued write
+    private static class Write {
+        final ContentProviderOperation operation;
+        final Callback callback;
+
+        Write(ContentProviderOperation operation, Callback callback){
+            this.operation = operation;
+            this.callback = callback;
+        }
+    }
+
+    // the writer shared by the whole app, so writes from every screen are serialized
+    public static synchronized ContactWriter getInstance(Context context){
+        if( sInstance == null ){
+            sInstance = new ContactWriter(context.getApplicationContext().getContentResolver());
+        }
+        return sInstance;
+    }
+
+    ContactWriter(ContentResolver resolver){
+        mResolver = resolver;
+
+        HandlerThread thread = new HandlerThread("AddressBookWriter");
+        thread.start();
+        mHandler = new Handler(thread.getLooper());
+    }
+
+    // add a new contact
+    public void insert(ContentValues contentValues, Callback callback){
+        enqueue(new Write(ContentProviderOperation.newInsert(Contact.CONTENT_URI)
+            .withValues(contentValues).build(), callback));
+    }
+
+    // change the columns in contentValues of the contact at contactUri
+    public void update(Uri contactUri, ContentValues contentValues, Callback callback){
+        enqueue(new Write(ContentProviderOperation.newUpdate(contactUri)
+            .withValues(contentValues).build(), callback));
+    }
+
+    // delete the contact at contactUri
+    public void delete(Uri contactUri, Callback callback){
+        enqueue(new Write(ContentProviderOperation.newDelete(contactUri).build(), callback));
+    }
+
+    // undelete the contact at contactUri, if it hasn't been purged yet
+    public void restore(Uri contactUri, Callback callback){
+        ContentValues contentValues = new ContentValues(1);
+        contentValues.putNull(Contact.COLUMN_DELETED_AT);
+        enqueue(new Write(ContentProviderOperation.newUpdate(
+            Contact.buildDeletedContactUri(ContentUris.parseId(contactUri)))
+            .withValues(contentValues).build(), callback));
+    }
+
+    private synchronized void enqueue(Write write){
+        mPending.add(write);
+        if( !mDrainScheduled ){
+            mDrainScheduled = true;
+            mHandler.post(mDrain);
+        }
+    }
+
+    // apply everything queued so far (up to MAX_BATCH_SIZE); runs on the writer thread
+    private void drain(){
+        List<Write> batch;
+        synchronized( this ){
+            int size = Math.min(mPending.size(), MAX_BATCH_SIZE);
+            batch = new ArrayList<>(mPending.subList(0, size));
+            mPending.subList(0, size).clear();
+
+            // anything left over, or queued while this batch is applied, goes in the next one
+            mDrainScheduled = !mPending.isEmpty();
+            if( mDrainScheduled ){
+                mHandler.post(mDrain);
+            }
+        }
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(batch.size());
+        for( Write write : batch ){
+            operations.add(write.operation);
+        }
+
+        ContentProviderResult[] results = null;
+        try {
+            results = mResolver.applyBatch(DatabaseDescription.AUTHORITY, operations);
+        } catch( Exception e ){
+            // the batch was rolled back; fall through and apply the writes one at a time,
+            // so one bad write doesn't fail the others queued with it
+            Log.w(TAG, "batch of " + batch.size() + " writes failed", e);
+        }
+
+        for( int i = 0; i < batch.size(); ++i ){
+            ContentProviderResult result;
+            if( results != null ){
+                result = results[i];
+            } else {
+                result = batch.size() == 1 ? null : applyOne(batch.get(i));
+            }
+            deliver(batch.get(i), result);
+        }
+    }
+
+    // apply a single write in its own batch; null if it failed
+    private ContentProviderResult applyOne(Write write){
+        try {
+            return mResolver.applyBatch(DatabaseDescription.AUTHORITY, batchOf(write))[0];
+        } catch( Exception e ){
+            Log.w(TAG, "write failed: " + write.operation, e);
+            return null;
+        }
+    }
+
+    private static ArrayList<ContentProviderOperation> batchOf(Write write){
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(1);
+        operations.add(write.operation);
+        return operations;
+    }
+
+    // report a write's result on the main thread
+    private void deliver(final Write write, ContentProviderResult result){
+        if( write.callback == null ){
+            return;
+        }
+        final Uri uri;
+        final int count;
+        if( result == null ){
+            uri = write.operation.getUri();
+            count = 0;
+        } else if( result.uri != null ){
+            uri = result.uri; // an insert
+            count = 1;
+        } else {
+            uri = write.operation.getUri();
+            count = result.count == null ? 0 : result.count;
+        }
+
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run(){
+                write.callback.onWriteCompleted(uri, count);
+            }
+        });
+    }
+}
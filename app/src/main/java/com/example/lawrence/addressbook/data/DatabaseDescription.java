@@ -36,10 +36,197 @@ public class DatabaseDescription {
         public static final String COLUMN_STATE = "state";
         public static final String COLUMN_ZIP = "zip";
 
+        // phone and email in ContactNormalizer's canonical form, for exact-match lookups.
+        // the provider derives them from COLUMN_PHONE and COLUMN_EMAIL on every write,
+        // so they can be read but never need to be written.
+        public static final String COLUMN_PHONE_NORMALIZED = "phone_normalized";
+        public static final String COLUMN_EMAIL_NORMALIZED = "email_normalized";
+
+        // when the contact was deleted (System.currentTimeMillis()), NULL while it isn't.
+        // deleting a contact only sets this; the row stays, as a tombstone, until a
+        // purge removes it, so the delete can be undone in the meantime.
+        // every Uri except the DELETED ones leaves tombstones out.
+        public static final String COLUMN_DELETED_AT = "deleted_at";
+
+        // file name of the contact's photo in PhotoStore, NULL if it has none.
+        // the image itself lives in a file so the list's cursor windows only carry the
+        // name; a new photo is saved under a new name, so a name always means one image.
+        public static final String COLUMN_PHOTO = "photo";
+
+        // full-text index over name, email, city and phone.
+        // it is kept in sync with the contacts table by triggers; its docid is the contact's _id.
+        public static final String FTS_TABLE_NAME = "contacts_fts";
+
+        // path segment for full-text searches, i.e. "contacts/search/<term>"
+        public static final String PATH_SEARCH = "search";
+
+        // Uri of the contact list's alphabetical sections: one row per first character of
+        // the names, in the list's sort order, with the number of contacts in it
+        public static final String PATH_SECTIONS = "sections";
+        public static final Uri SECTIONS_URI = CONTENT_URI.buildUpon().appendPath(PATH_SECTIONS).build();
+        public static final String COLUMN_SECTION = "section";
+        public static final String COLUMN_SECTION_SIZE = "size";
+
+        // Uri of the groups of probable duplicates found by the last DuplicateScan.
+        // querying it returns the contacts in those groups, with their Duplicate.COLUMN_GROUP_ID,
+        // ordered by group. bulkInsert() of Duplicate rows replaces the previous results.
+        public static final String PATH_DUPLICATES = "duplicates";
+        public static final Uri DUPLICATES_URI = CONTENT_URI.buildUpon().appendPath(PATH_DUPLICATES).build();
+
+        // Uri of the deleted contacts not purged yet, most recently deleted first, and
+        // of one of them: updating contacts/deleted/<_id> with deleted_at set to NULL
+        // undeletes the contact
+        public static final String PATH_DELETED = "deleted";
+        public static final Uri DELETED_URI = CONTENT_URI.buildUpon().appendPath(PATH_DELETED).build();
+
+        // Uri of the change log (see Change): the changes after the since parameter's seq,
+        // oldest first, e.g. "contacts/changes?since=1234". a consumer applies them, then
+        // acks the last seq it applied by updating its consumer Uri,
+        // "contacts/changes/consumers/<name>", with Change.COLUMN_ACKED_SEQ; the first ack
+        // (with 0 before its initial full sync) registers it, and deleting its Uri
+        // unregisters it. changes every registered consumer has acked are dropped.
+        public static final String PATH_CHANGES = "changes";
+        public static final String PATH_CHANGE_CONSUMERS = "consumers";
+        public static final Uri CHANGES_URI = CONTENT_URI.buildUpon().appendPath(PATH_CHANGES).build();
+        public static final String PARAM_SINCE = "since";
+
+        // ContentResolver.call() method that permanently removes the contacts deleted
+        // before the time (System.currentTimeMillis()) given as its arg, then gives the
+        // space they used back to the file system. the result Bundle holds the number of
+        // contacts removed under METHOD_PURGE. change log entries every consumer has acked
+        // are dropped along with them.
+        public static final String METHOD_PURGE = "purge";
+
+        // Uris of contact counts per region: one row per state, zip code, or city within a
+        // state, holding the region (COLUMN_REGION, plus COLUMN_STATE for cities) and the
+        // number of contacts in it (COLUMN_REGION_SIZE), sorted by region.
+        // contacts with no value for the column are counted under a NULL region.
+        public static final String PATH_BY_STATE = "by_state";
+        public static final String PATH_BY_ZIP = "by_zip";
+        public static final String PATH_BY_CITY = "by_city";
+        public static final Uri BY_STATE_URI = CONTENT_URI.buildUpon().appendPath(PATH_BY_STATE).build();
+        public static final Uri BY_ZIP_URI = CONTENT_URI.buildUpon().appendPath(PATH_BY_ZIP).build();
+        public static final Uri BY_CITY_URI = CONTENT_URI.buildUpon().appendPath(PATH_BY_CITY).build();
+        public static final String COLUMN_REGION = "region";
+        public static final String COLUMN_REGION_SIZE = "size";
+
+        // Uri of a structured query built with ContactQuery. each query parameter
+        // "<column>:<operator>" holds one predicate's value; PARAM_ORDER holds the column
+        // to sort by ("-<column>" for descending) and PARAM_LIMIT the most rows to return.
+        // the provider compiles it to SQL that uses the indexes (see QueryPlanner).
+        public static final String PATH_QUERY = "query";
+        public static final Uri QUERY_URI = CONTENT_URI.buildUpon().appendPath(PATH_QUERY).build();
+        public static final String PARAM_ORDER = "order";
+
+        // path segments for reverse lookups, i.e. "contacts/phone_lookup/<phone>" and
+        // "contacts/email_lookup/<email>". the value is normalized the same way as the stored
+        // columns, so "+1 (555) 010-0000" finds a contact saved as "555-010-0000".
+        public static final String PATH_PHONE_LOOKUP = "phone_lookup";
+        public static final String PATH_EMAIL_LOOKUP = "email_lookup";
+
+        // query parameters for reading the contact list one page at a time.
+        // a page holds the rows that come after (after_name, after_id) in PAGE_SORT_ORDER,
+        // so the database seeks straight to the page instead of skipping rows with OFFSET.
+        // offset is only used when the previous page's last row isn't known.
+        public static final String PARAM_AFTER_NAME = "after_name";
+        public static final String PARAM_AFTER_ID = "after_id";
+        public static final String PARAM_OFFSET = "offset";
+        public static final String PARAM_LIMIT = "limit";
+
+        // order of paged results; _id breaks ties between equal names so pages never overlap
+        public static final String PAGE_SORT_ORDER =
+            COLUMN_NAME + " COLLATE NOCASE ASC, " + _ID + " ASC";
+
         // create Uri for a specific contact
         public static Uri buildContactUri(long id){
             return ContentUris.withAppendedId(CONTENT_URI, id);
         }
+
+        // create Uri for the page of at most limit contacts that follows the contact
+        // with the given name and id; a null afterName gives the first page
+        public static Uri buildPageUri(String afterName, long afterId, int limit){
+            Uri.Builder builder = CONTENT_URI.buildUpon();
+            if( afterName != null ){
+                builder.appendQueryParameter(PARAM_AFTER_NAME, afterName)
+                       .appendQueryParameter(PARAM_AFTER_ID, String.valueOf(afterId));
+            }
+            return builder.appendQueryParameter(PARAM_LIMIT, String.valueOf(limit)).build();
+        }
+
+        // create Uri for the page of at most limit contacts starting at row offset
+        public static Uri buildPageUri(int offset, int limit){
+            return CONTENT_URI.buildUpon()
+                .appendQueryParameter(PARAM_OFFSET, String.valueOf(offset))
+                .appendQueryParameter(PARAM_LIMIT, String.valueOf(limit))
+                .build();
+        }
+
+        // create Uri that searches name, email, city and phone for words starting with term
+        public static Uri buildSearchUri(String term){
+            return CONTENT_URI.buildUpon().appendPath(PATH_SEARCH).appendPath(term).build();
+        }
+
+        // create Uri for the deleted contact with the given id
+        public static Uri buildDeletedContactUri(long id){
+            return ContentUris.withAppendedId(DELETED_URI, id);
+        }
+
+        // create Uri for the changes after seq since
+        public static Uri buildChangesUri(long since){
+            return CHANGES_URI.buildUpon()
+                .appendQueryParameter(PARAM_SINCE, String.valueOf(since)).build();
+        }
+
+        // create Uri a change log consumer acks its progress through
+        public static Uri buildChangeConsumerUri(String consumer){
+            return CHANGES_URI.buildUpon().appendPath(PATH_CHANGE_CONSUMERS).appendPath(consumer).build();
+        }
+
+        // create Uri for the contacts whose phone is the same number as phone
+        public static Uri buildPhoneLookupUri(String phone){
+            return CONTENT_URI.buildUpon().appendPath(PATH_PHONE_LOOKUP).appendPath(phone).build();
+        }
+
+        // create Uri for the contacts whose email is the same address as email
+        public static Uri buildEmailLookupUri(String email){
+            return CONTENT_URI.buildUpon().appendPath(PATH_EMAIL_LOOKUP).appendPath(email).build();
+        }
+    }
+
+    // results of the last duplicate scan: one row per contact that looks like another one.
+    // contacts in the same group have the same group_id, the smallest _id among them.
+    public static final class Duplicate {
+        public static final String TABLE_NAME = "duplicates";
+
+        public static final String COLUMN_GROUP_ID = "group_id";
+        public static final String COLUMN_CONTACT_ID = "contact_id";
+    }
+
+    // append-only log of contact changes, for incremental sync: one row per insert,
+    // update or delete, written by triggers in the same transaction as the change itself.
+    // seq increases with every change and is never reused, even after truncation.
+    // contacts created before the log existed have no rows; a consumer does one full
+    // sync first, then follows the log.
+    public static final class Change {
+        public static final String TABLE_NAME = "changes";
+
+        public static final String COLUMN_SEQ = "seq";
+        public static final String COLUMN_CONTACT_ID = "contact_id";
+        public static final String COLUMN_OP = "op";
+        public static final String COLUMN_TIMESTAMP = "timestamp"; // System.currentTimeMillis()
+
+        // values of COLUMN_OP. undeleting a contact is logged as an insert,
+        // and deleting it (even softly) as a delete.
+        public static final int OP_INSERT = 1;
+        public static final int OP_UPDATE = 2;
+        public static final int OP_DELETE = 3;
+
+        // the consumers of the log and the last seq each has applied.
+        // the log is truncated up to the smallest acked seq; while no consumer is
+        // registered, nothing is kept past the next purge.
+        public static final String CONSUMERS_TABLE_NAME = "change_consumers";
+        public static final String COLUMN_CONSUMER = "consumer";
+        public static final String COLUMN_ACKED_SEQ = "acked_seq";
     }
 
 }
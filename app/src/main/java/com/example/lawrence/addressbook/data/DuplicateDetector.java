@@ -0,0 +1,328 @@
+package com.example.lawrence.addressbook.data;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+// finds contacts that are probably the same person.
+// comparing every contact with every other is O(n^2), far too slow for 200k contacts.
+// instead each contact gets a few blocking keys (its normalized phone, its normalized
+// email and the phonetic key of its name) and only contacts sharing a key are compared.
+// keys are hashed to 40 bits and sorted together with their contact's index in one long[],
+// so blocks are runs of equal hashes, found with one sort and no per-key objects.
+// a block too large to compare pairwise (a common name, say) is sorted by name and each
+// contact compared only with its next few neighbours.
+// matched pairs are joined into groups with a union-find, so a-b and b-c make one group.
+public class DuplicateDetector {
+
+    // blocks up to this size are compared pairwise
+    static final int MAX_BLOCK_SIZE = 64;
+
+    // in larger blocks each contact is compared with this many following contacts
+    static final int WINDOW = 16;
+
+    // names at least this similar (Jaro-Winkler, 0..1) are the same name...
+    static final double SAME_NAME = 0.92;
+    // ...and contacts sharing a phone need names at least this similar
+    static final double SIMILAR_NAME = 0.6;
+
+    // contacts that belong to a group of duplicates, and the group each is in.
+    // a group's id is the smallest contact _id in it.
+    public static class Result {
+        public final long[] contactIds;
+        public final long[] groupIds;
+        public final int groupCount;
+
+        Result(long[] contactIds, long[] groupIds, int groupCount){
+            this.contactIds = contactIds;
+            this.groupIds = groupIds;
+            this.groupCount = groupCount;
+        }
+    }
+
+    private static final int KEY_HASH_BITS = 40;
+    private static final int INDEX_BITS = 64 - KEY_HASH_BITS; // up to 16M contacts
+    private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+
+    // normalized fields of every contact added, by index
+    private long[] mIds = new long[1024];
+    private String[] mNames = new String[1024];
+    private String[] mSortedNames = new String[1024]; // words in alphabetical order
+    private String[] mPhones = new String[1024];
+    private String[] mEmails = new String[1024];
+    private int mCount = 0;
+
+    private volatile boolean mCancelled = false;
+
+    // union-find parents, by index
+    private int[] mParents;
+
+    // add one contact; the strings are normalized here
+    public void add(long id, String name, String phone, String email){
+        if( mCount == mIds.length ){
+            int capacity = mCount * 2;
+            mIds = Arrays.copyOf(mIds, capacity);
+            mNames = Arrays.copyOf(mNames, capacity);
+            mSortedNames = Arrays.copyOf(mSortedNames, capacity);
+            mPhones = Arrays.copyOf(mPhones, capacity);
+            mEmails = Arrays.copyOf(mEmails, capacity);
+        }
+        String normalizedName = ContactNormalizer.normalizeName(name);
+        mIds[mCount] = id;
+        mNames[mCount] = normalizedName;
+        mSortedNames[mCount] = sortWords(normalizedName);
+        mPhones[mCount] = ContactNormalizer.normalizePhone(phone);
+        mEmails[mCount] = ContactNormalizer.normalizeEmail(email);
+        ++mCount;
+    }
+
+    // make detect() stop and return null; may be called from any thread
+    public void cancel(){
+        mCancelled = true;
+    }
+
+    // group the contacts added so far; null if cancelled
+    public Result detect(){
+        // one entry per blocking key: 40-bit key hash, then the contact's index
+        long[] entries = new long[mCount * 3];
+        int entryCount = 0;
+        for( int i = 0; i < mCount; ++i ){
+            if( mPhones[i] != null ){
+                entries[entryCount++] = entry('p', mPhones[i], i);
+            }
+            if( mEmails[i] != null ){
+                entries[entryCount++] = entry('e', mEmails[i], i);
+            }
+            if( mNames[i] != null ){
+                entries[entryCount++] = entry('n', ContactNormalizer.phoneticKey(mNames[i]), i);
+            }
+        }
+        Arrays.sort(entries, 0, entryCount);
+
+        mParents = new int[mCount];
+        for( int i = 0; i < mCount; ++i ){
+            mParents[i] = i;
+        }
+
+        // compare the contacts in each run of equal key hashes
+        int[] block = new int[16];
+        for( int start = 0; start < entryCount; ){
+            if( mCancelled ){
+                return null;
+            }
+            long hash = entries[start] >>> INDEX_BITS;
+            int end = start;
+            while( end < entryCount && entries[end] >>> INDEX_BITS == hash ){
+                ++end;
+            }
+            int size = end - start;
+            if( size > 1 ){
+                if( block.length < size ){
+                    block = new int[Math.max(size, block.length * 2)];
+                }
+                for( int i = 0; i < size; ++i ){
+                    block[i] = (int) (entries[start + i] & INDEX_MASK);
+                }
+                compareBlock(block, size);
+            }
+            start = end;
+        }
+
+        return collectGroups();
+    }
+
+    private void compareBlock(int[] block, int size){
+        if( size <= MAX_BLOCK_SIZE ){
+            for( int i = 0; i < size; ++i ){
+                for( int j = i + 1; j < size; ++j ){
+                    compare(block[i], block[j]);
+                }
+            }
+            return;
+        }
+
+        // sorted neighbourhood: similar names end up next to each other
+        Integer[] sorted = new Integer[size];
+        for( int i = 0; i < size; ++i ){
+            sorted[i] = block[i];
+        }
+        Arrays.sort(sorted, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b){
+                String nameA = mSortedNames[a];
+                String nameB = mSortedNames[b];
+                if( nameA == null || nameB == null ){
+                    return nameA == null ? (nameB == null ? 0 : -1) : 1;
+                }
+                return nameA.compareTo(nameB);
+            }
+        });
+        for( int i = 0; i < size; ++i ){
+            for( int j = i + 1; j < size && j <= i + WINDOW; ++j ){
+                compare(sorted[i], sorted[j]);
+            }
+        }
+    }
+
+    // join a and b if they look like the same person
+    private void compare(int a, int b){
+        int rootA = find(a);
+        int rootB = find(b);
+        if( rootA == rootB ){
+            return; // already known to be duplicates
+        }
+        if( isDuplicate(a, b) ){
+            mParents[rootA] = rootB;
+        }
+    }
+
+    private boolean isDuplicate(int a, int b){
+        // the same email address is the same person
+        if( mEmails[a] != null && mEmails[a].equals(mEmails[b]) ){
+            return true;
+        }
+
+        double nameSimilarity = similarity(mSortedNames[a], mSortedNames[b]);
+
+        // a shared phone may be a household's, so the names must be alike too
+        if( mPhones[a] != null && mPhones[a].equals(mPhones[b]) ){
+            return nameSimilarity >= SIMILAR_NAME;
+        }
+
+        // the same name is the same person, unless a phone or email says otherwise
+        return nameSimilarity >= SAME_NAME
+            && !conflicts(mPhones[a], mPhones[b])
+            && !conflicts(mEmails[a], mEmails[b]);
+    }
+
+    private Result collectGroups(){
+        // smallest _id in each group, by root index
+        long[] groupIds = new long[mCount];
+        int[] sizes = new int[mCount];
+        Arrays.fill(groupIds, Long.MAX_VALUE);
+        for( int i = 0; i < mCount; ++i ){
+            int root = find(i);
+            ++sizes[root];
+            groupIds[root] = Math.min(groupIds[root], mIds[i]);
+        }
+
+        int members = 0;
+        int groups = 0;
+        for( int i = 0; i < mCount; ++i ){
+            if( sizes[i] > 1 ){
+                members += sizes[i];
+                ++groups;
+            }
+        }
+
+        long[] contactIds = new long[members];
+        long[] contactGroupIds = new long[members];
+        int next = 0;
+        for( int i = 0; i < mCount; ++i ){
+            int root = find(i);
+            if( sizes[root] > 1 ){
+                contactIds[next] = mIds[i];
+                contactGroupIds[next] = groupIds[root];
+                ++next;
+            }
+        }
+        return new Result(contactIds, contactGroupIds, groups);
+    }
+
+    // root of i's group, shortening the path on the way
+    private int find(int i){
+        while( mParents[i] != i ){
+            mParents[i] = mParents[mParents[i]];
+            i = mParents[i];
+        }
+        return i;
+    }
+
+    // sortable entry for a blocking key of the given type
+    private static long entry(char type, String key, int index){
+        // 64-bit FNV-1a, folded to KEY_HASH_BITS. two keys hashing alike only
+        // cost some extra comparisons, since every pair is compared in full.
+        long hash = 0xcbf29ce484222325L;
+        hash = (hash ^ type) * 0x100000001b3L;
+        for( int i = 0; i < key.length(); ++i ){
+            hash = (hash ^ key.charAt(i)) * 0x100000001b3L;
+        }
+        return (hash >>> INDEX_BITS) << INDEX_BITS | index;
+    }
+
+    private static boolean conflicts(String a, String b){
+        return a != null && b != null && !a.equals(b);
+    }
+
+    // the name's words in alphabetical order, so "smith john" compares equal to "john smith"
+    private static String sortWords(String name){
+        if( name == null || name.indexOf(' ') < 0 ){
+            return name;
+        }
+        String[] words = name.split(" ");
+        Arrays.sort(words);
+        StringBuilder sorted = new StringBuilder(name.length());
+        for( String word : words ){
+            if( sorted.length() > 0 ){
+                sorted.append(' ');
+            }
+            sorted.append(word);
+        }
+        return sorted.toString();
+    }
+
+    // Jaro-Winkler similarity: 1 for equal strings, 0 for nothing in common;
+    // close misspellings ("jon"/"john") and shared prefixes score high
+    static double similarity(String a, String b){
+        if( a == null || b == null ){
+            return 0;
+        }
+        if( a.equals(b) ){
+            return 1;
+        }
+        int lengthA = a.length();
+        int lengthB = b.length();
+        int range = Math.max(0, Math.max(lengthA, lengthB) / 2 - 1);
+
+        boolean[] matchedA = new boolean[lengthA];
+        boolean[] matchedB = new boolean[lengthB];
+        int matches = 0;
+        for( int i = 0; i < lengthA; ++i ){
+            int from = Math.max(0, i - range);
+            int to = Math.min(lengthB - 1, i + range);
+            for( int j = from; j <= to; ++j ){
+                if( !matchedB[j] && a.charAt(i) == b.charAt(j) ){
+                    matchedA[i] = true;
+                    matchedB[j] = true;
+                    ++matches;
+                    break;
+                }
+            }
+        }
+        if( matches == 0 ){
+            return 0;
+        }
+
+        // matched characters that are out of order, counted in pairs
+        int transpositions = 0;
+        for( int i = 0, j = 0; i < lengthA; ++i ){
+            if( matchedA[i] ){
+                while( !matchedB[j] ){
+                    ++j;
+                }
+                if( a.charAt(i) != b.charAt(j) ){
+                    ++transpositions;
+                }
+                ++j;
+            }
+        }
+
+        double m = matches;
+        double jaro = (m / lengthA + m / lengthB + (m - transpositions / 2.0) / m) / 3;
+
+        int prefix = 0;
+        while( prefix < 4 && prefix < lengthA && prefix < lengthB && a.charAt(prefix) == b.charAt(prefix) ){
+            ++prefix;
+        }
+        return jaro + prefix * 0.1 * (1 - jaro);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.lawrence.addressbook.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+
+import android.database.Cursor;
+
+import com.example.lawrence.addressbook.data.DatabaseDescription.Contact;
+import com.example.lawrence.addressbook.data.DatabaseDescription.Duplicate;
+
+// one run of DuplicateDetector over every contact in the provider.
+// the results replace the previous scan's in Contact.DUPLICATES_URI, where any screen can
+// query them. a scan reads and compares every contact, so it runs on a background thread,
+// in DuplicateScanService; cancel() stops it from any other thread.
+public class DuplicateScan {
+
+    private static final String[] COLUMNS = {
+        Contact._ID, Contact.COLUMN_NAME, Contact.COLUMN_PHONE, Contact.COLUMN_EMAIL
+    };
+
+    private final DuplicateDetector mDetector = new DuplicateDetector();
+    private volatile boolean mCancelled = false;
+
+    // scan the contacts and store the groups found; returns how many groups there are,
+    // or -1 if the scan was cancelled, in which case the previous results are kept
+    public int run(ContentResolver resolver){
+        Cursor cursor = resolver.query(Contact.CONTENT_URI, COLUMNS, null, null, null);
+        if( cursor == null ){
+            return -1;
+        }
+        try {
+            while( cursor.moveToNext() ){
+                if( mCancelled ){
+                    return -1;
+                }
+                mDetector.add(cursor.getLong(0), cursor.getString(1),
+                    cursor.getString(2), cursor.getString(3));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        DuplicateDetector.Result result = mDetector.detect();
+        if( result == null || mCancelled ){
+            return -1;
+        }
+
+        ContentValues[] values = new ContentValues[result.contactIds.length];
+        for( int i = 0; i < values.length; ++i ){
+            values[i] = new ContentValues(2);
+            values[i].put(Duplicate.COLUMN_CONTACT_ID, result.contactIds[i]);
+            values[i].put(Duplicate.COLUMN_GROUP_ID, result.groupIds[i]);
+        }
+        resolver.bulkInsert(Contact.DUPLICATES_URI, values);
+        return result.groupCount;
+    }
+
+    // make run() stop as soon as it can; may be called from any thread
+    public void cancel(){
+        mCancelled = true;
+        mDetector.cancel();
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.lawrence.addressbook.data;
+
+import android.app.IntentService;
+
+import android.content.Context;
+import android.content.Intent;
+
+import android.util.Log;
+
+// runs a DuplicateScan on IntentService's background thread, so the groups of probable
+// duplicates in Contact.DUPLICATES_URI stay up to date. PurgeService starts one after
+// each daily purge. a running scan is cancelled by cancel(), when the service is
+// stopped, or when memory runs low; the previous scan's results are then kept until
+// the next scan.
+public class DuplicateScanService extends IntentService {
+
+    private static final String TAG = "DuplicateScanService";
+
+    // the scan being run, if any
+    private static volatile DuplicateScan sRunningScan;
+
+    public DuplicateScanService(){
+        super(TAG);
+    }
+
+    // scan the contacts in the background; a scan asked for while one is running follows it
+    public static void start(Context context){
+        context.startService(new Intent(context, DuplicateScanService.class));
+    }
+
+    // stop the running scan, and drop any that are waiting to run
+    public static void cancel(Context context){
+        cancelRunningScan();
+        context.stopService(new Intent(context, DuplicateScanService.class));
+    }
+
+    private static void cancelRunningScan(){
+        DuplicateScan scan = sRunningScan;
+        if( scan != null ){
+            scan.cancel();
+        }
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent){
+        DuplicateScan scan = new DuplicateScan();
+        sRunningScan = scan;
+        try {
+            long start = System.nanoTime();
+            int groups = scan.run(getContentResolver());
+            long millis = (System.nanoTime() - start) / 1000000;
+            if( groups < 0 ){
+                Log.i(TAG, "scan cancelled after " + millis + " ms");
+            } else {
+                Log.i(TAG, "found " + groups + " groups of duplicates in " + millis + " ms");
+            }
+        } finally {
+            sRunningScan = null;
+        }
+    }
+
+    // IntentService lets the running intent finish after the service is destroyed;
+    // a scan can take seconds, so stop it instead
+    @Override
+    public void onDestroy(){
+        cancelRunningScan();
+        super.onDestroy();
+    }
+
+    // a scan holds every contact's keys in memory; give it up rather than the app
+    @Override
+    public void onLowMemory(){
+        cancelRunningScan();
+        super.onLowMemory();
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.lawrence.addressbook.data;
+
+import android.util.SparseArray;
+
+import java.util.Locale;
+
+// ProviderMetrics that keeps, per entry point and UriMatcher code, a latency
+// histogram and row counts, plus notification counts per code.
+// memory use is fixed: one small histogram per (entry point, code) pair seen.
+public class InMemoryProviderMetrics implements ProviderMetrics {
+
+    // what's been recorded for one entry point and UriMatcher code
+    public static class Snapshot {
+        public final long count;
+        public final long p50Nanos;
+        public final long p95Nanos;
+        public final long p99Nanos;
+        public final long maxNanos;
+        public final long totalRows; // rows returned by queries, rows changed by writes
+        public final int maxRows;    // largest single result or change
+
+        Snapshot(long count, long p50Nanos, long p95Nanos, long p99Nanos, long maxNanos,
+                 long totalRows, int maxRows){
+            this.count = count;
+            this.p50Nanos = p50Nanos;
+            this.p95Nanos = p95Nanos;
+            this.p99Nanos = p99Nanos;
+            this.maxNanos = maxNanos;
+            this.totalRows = totalRows;
+            this.maxRows = maxRows;
+        }
+    }
+
+    private static final String[] OPERATION_NAMES = {
+        "query", "insert", "update", "delete", "bulkInsert", "applyBatch"
+    };
+
+    private static class Stats {
+        final LatencyHistogram latencies = new LatencyHistogram();
+        long totalRows = 0;
+        int maxRows = 0;
+    }
+
+    // per operation: Stats keyed by UriMatcher code
+    private final SparseArray<Stats>[] mStats;
+
+    // notification counts keyed by UriMatcher code
+    private final SparseArray<long[]> mNotifications = new SparseArray<>();
+
+    @SuppressWarnings("unchecked")
+    public InMemoryProviderMetrics(){
+        mStats = new SparseArray[OPERATION_COUNT];
+        for( int i = 0; i < OPERATION_COUNT; ++i ){
+            mStats[i] = new SparseArray<>();
+        }
+    }
+
+    @Override
+    public synchronized void onOperation(int operation, int uriCode, long elapsedNanos, int rows){
+        Stats stats = mStats[operation].get(uriCode);
+        if( stats == null ){
+            stats = new Stats();
+            mStats[operation].put(uriCode, stats);
+        }
+        stats.latencies.record(elapsedNanos);
+        stats.totalRows += rows;
+        if( rows > stats.maxRows ){
+            stats.maxRows = rows;
+        }
+    }
+
+    @Override
+    public synchronized void onNotification(int uriCode){
+        long[] count = mNotifications.get(uriCode);
+        if( count == null ){
+            count = new long[1];
+            mNotifications.put(uriCode, count);
+        }
+        ++count[0];
+    }
+
+    // what's been recorded for the operation on Uris with this code; all zeros if nothing
+    public synchronized Snapshot getSnapshot(int operation, int uriCode){
+        Stats stats = mStats[operation].get(uriCode);
+        if( stats == null ){
+            return new Snapshot(0, 0, 0, 0, 0, 0, 0);
+        }
+        LatencyHistogram latencies = stats.latencies;
+        return new Snapshot(latencies.getCount(), latencies.getPercentile(50),
+            latencies.getPercentile(95), latencies.getPercentile(99), latencies.getMax(),
+            stats.totalRows, stats.maxRows);
+    }
+
+    public synchronized long getNotificationCount(int uriCode){
+        long[] count = mNotifications.get(uriCode);
+        return count == null ? 0 : count[0];
+    }
+
+    // forget everything recorded so far
+    public synchronized void reset(){
+        for( SparseArray<Stats> stats : mStats ){
+            stats.clear();
+        }
+        mNotifications.clear();
+    }
+
+    // one line per entry point and Uri, e.g.
+    // "query contacts/#: n=12 p50=0.21ms p95=0.50ms p99=0.61ms max=0.61ms rows=12 maxRows=1"
+    // followed by the notification counts
+    public synchronized String dump(){
+        StringBuilder dump = new StringBuilder();
+        for( int operation = 0; operation < OPERATION_COUNT; ++operation ){
+            SparseArray<Stats> stats = mStats[operation];
+            for( int i = 0; i < stats.size(); ++i ){
+                int uriCode = stats.keyAt(i);
+                Snapshot snapshot = getSnapshot(operation, uriCode);
+                dump.append(String.format(Locale.US,
+                    "%s %s: n=%d p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms rows=%d maxRows=%d\n",
+                    OPERATION_NAMES[operation], AddressBookContentProvider.describeUriCode(uriCode),
+                    snapshot.count, snapshot.p50Nanos / 1e6, snapshot.p95Nanos / 1e6,
+                    snapshot.p99Nanos / 1e6, snapshot.maxNanos / 1e6,
+                    snapshot.totalRows, snapshot.maxRows));
+            }
+        }
+        for( int i = 0; i < mNotifications.size(); ++i ){
+            dump.append(String.format(Locale.US, "notifications %s: %d\n",
+                AddressBookContentProvider.describeUriCode(mNotifications.keyAt(i)),
+                mNotifications.valueAt(i)[0]));
+        }
+        return dump.toString();
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.lawrence.addressbook.data;
+
+import java.util.Arrays;
+
+// fixed-size histogram of latencies in nanoseconds.
+// values below 8 get a bucket each; above that every power of two is split into
+// 8 buckets, so a percentile read back is within 12.5% of the real value, and the
+// histogram stays the same size (488 counters) however many values it holds.
+// not thread safe; InMemoryProviderMetrics locks around it.
+class LatencyHistogram {
+
+    private static final int SUB_BUCKETS = 8;
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final long[] mCounts = new long[BUCKETS];
+    private long mCount = 0;
+    private long mMax = 0;
+
+    void record(long nanos){
+        if( nanos < 0 ){
+            nanos = 0;
+        }
+        ++mCounts[bucketOf(nanos)];
+        ++mCount;
+        if( nanos > mMax ){
+            mMax = nanos;
+        }
+    }
+
+    long getCount(){ return mCount; }
+
+    long getMax(){ return mMax; }
+
+    // value at or below which `percentile` percent (0-100) of the values fall, or 0 if empty.
+    // the highest value of the bucket is returned, so percentiles err on the slow side.
+    long getPercentile(double percentile){
+        if( mCount == 0 ){
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100 * mCount);
+        if( rank < 1 ){
+            rank = 1;
+        }
+
+        long seen = 0;
+        for( int bucket = 0; bucket < BUCKETS; ++bucket ){
+            seen += mCounts[bucket];
+            if( seen >= rank ){
+                return Math.min(highestValueOf(bucket), mMax);
+            }
+        }
+        return mMax;
+    }
+
+    void clear(){
+        Arrays.fill(mCounts, 0);
+        mCount = 0;
+        mMax = 0;
+    }
+
+    static int bucketOf(long nanos){
+        if( nanos < SUB_BUCKETS ){
+            return (int) nanos;
+        }
+        // exponent: position of the highest set bit, at least SUB_BUCKET_BITS
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    static long highestValueOf(int bucket){
+        if( bucket < SUB_BUCKETS ){
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        long subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        long next = (SUB_BUCKETS + subBucket + 1) << shift;
+        return next > 0 ? next - 1 : Long.MAX_VALUE; // the last bucket ends at Long.MAX_VALUE
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.lawrence.addressbook.data;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Set;
+import java.util.UUID;
+
+// contact photos, one file per photo under the app's private files directory.
+// a contact row only holds its photo's file name (Contact.COLUMN_PHOTO), so photos
+// never pass through a cursor window. files are never rewritten: a new photo is saved
+// under a new name and the row pointed at it, which lets AvatarLoader cache decoded
+// photos by name without ever having to check whether they're out of date.
+public final class PhotoStore {
+
+    private static final String DIRECTORY = "photos";
+    private static final String THUMBNAIL_DIRECTORY_PREFIX = "thumbnails-";
+
+    // files this new are never swept, so a photo saved just before its contact is
+    // written can't be mistaken for one nothing refers to
+    static final long SWEEP_GRACE_MILLIS = 60 * 60 * 1000;
+
+    private PhotoStore(){ /* static methods only */ }
+
+    public static File getDirectory(Context context){
+        return new File(context.getFilesDir(), DIRECTORY);
+    }
+
+    // the file holding the photo named name
+    public static File getFile(Context context, String name){
+        return new File(getDirectory(context), name);
+    }
+
+    // directory of AvatarLoader's thumbnails of every photo at size x size pixels.
+    // thumbnails have their photo's name; being in the cache directory, the system may
+    // clear them when it's short of storage, and they're simply decoded again.
+    public static File getThumbnailDirectory(Context context, int size){
+        return new File(context.getCacheDir(), THUMBNAIL_DIRECTORY_PREFIX + size);
+    }
+
+    // copy an image into a new photo file and return its name, to be stored in the
+    // contact's Contact.COLUMN_PHOTO. does file I/O, so call it off the main thread.
+    public static String save(Context context, InputStream image) throws IOException {
+        File directory = getDirectory(context);
+        if( !directory.isDirectory() && !directory.mkdirs() ){
+            throw new IOException("can't create " + directory);
+        }
+
+        // write under a temporary name and rename, so a photo file is always complete
+        String name = UUID.randomUUID().toString();
+        File temp = new File(directory, name + ".tmp");
+        OutputStream out = new FileOutputStream(temp);
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while( (read = image.read(buffer)) != -1 ){
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            out.close();
+        }
+        if( !temp.renameTo(new File(directory, name)) ){
+            temp.delete();
+            throw new IOException("can't rename " + temp);
+        }
+        return name;
+    }
+
+    // delete the photos, and thumbnails of every size, that no contact refers to any more:
+    // those of purged contacts and replaced photos. referenced holds the photo names of
+    // every contact, tombstones included. returns how many files were deleted.
+    public static int sweep(Context context, Set<String> referenced){
+        int deleted = sweep(getDirectory(context), referenced);
+        File[] cached = context.getCacheDir().listFiles();
+        if( cached != null ){
+            for( File directory : cached ){
+                if( directory.getName().startsWith(THUMBNAIL_DIRECTORY_PREFIX) ){
+                    deleted += sweep(directory, referenced);
+                }
+            }
+        }
+        return deleted;
+    }
+
+    // delete the files in directory whose names aren't in referenced and that are older
+    // than SWEEP_GRACE_MILLIS
+    private static int sweep(File directory, Set<String> referenced){
+        File[] files = directory.listFiles();
+        if( files == null ){
+            return 0;
+        }
+
+        long cutoff = System.currentTimeMillis() - SWEEP_GRACE_MILLIS;
+        int deleted = 0;
+        for( File file : files ){
+            if( !referenced.contains(file.getName()) && file.lastModified() < cutoff && file.delete() ){
+                ++deleted;
+            }
+        }
+        return deleted;
+    }
+}
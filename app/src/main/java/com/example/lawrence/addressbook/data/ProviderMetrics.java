@@ -0,0 +1,40 @@
+package com.example.lawrence.addressbook.data;
+
+// receives timings and row counts from AddressBookContentProvider's entry points.
+// install one with AddressBookContentProvider.setMetrics(); the default, NONE,
+// ignores everything. InMemoryProviderMetrics keeps latency histograms that a
+// debug screen or a test can read.
+// methods are called on whatever thread called the provider, often several at once.
+public interface ProviderMetrics {
+
+    // provider entry points
+    int QUERY = 0;
+    int INSERT = 1;
+    int UPDATE = 2;
+    int DELETE = 3;
+    int BULK_INSERT = 4;
+    int APPLY_BATCH = 5;
+    int OPERATION_COUNT = 6;
+
+    // uriCode passed for applyBatch(), whose operations may target several Uris
+    int NO_URI_CODE = -1;
+
+    // an entry point returned normally after elapsedNanos.
+    // uriCode is the provider's UriMatcher code for the Uri it was called with;
+    // rows is the cursor's row count for a query, and the number of rows
+    // inserted, changed or deleted (or operations applied) otherwise.
+    void onOperation(int operation, int uriCode, long elapsedNanos, int rows);
+
+    // the provider asked for a change notification on a Uri with this UriMatcher code
+    // (ChangeNotifier may later merge several of them into one)
+    void onNotification(int uriCode);
+
+    // records nothing
+    ProviderMetrics NONE = new ProviderMetrics() {
+        @Override
+        public void onOperation(int operation, int uriCode, long elapsedNanos, int rows){ }
+
+        @Override
+        public void onNotification(int uriCode){ }
+    };
+}
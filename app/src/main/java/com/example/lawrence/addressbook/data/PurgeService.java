@@ -0,0 +1,91 @@
+package com.example.lawrence.addressbook.data;
+
+import android.app.AlarmManager;
+import android.app.IntentService;
+import android.app.PendingIntent;
+
+import android.content.Context;
+import android.content.Intent;
+
+import android.database.Cursor;
+
+import android.os.Bundle;
+import android.net.Uri;
+
+import android.os.SystemClock;
+
+import android.util.Log;
+
+import com.example.lawrence.addressbook.data.DatabaseDescription.Contact;
+
+import java.util.HashSet;
+import java.util.Set;
+
+// permanently removes deleted contacts once they're too old to undelete, and compacts
+// the database file afterwards (see AddressBookContentProvider.call()). then deletes
+// the photo files no contact refers to any more (see PhotoStore), and starts a
+// DuplicateScanService scan.
+// it runs on IntentService's background thread about once a day, whenever the device
+// is awake anyway, so it never holds up the UI or wakes the device just for this.
+public class PurgeService extends IntentService {
+
+    private static final String TAG = "PurgeService";
+
+    // how long a deleted contact can still be undeleted
+    public static final long RETENTION_MILLIS = 7 * AlarmManager.INTERVAL_DAY;
+
+    public PurgeService(){
+        super(TAG);
+    }
+
+    // make sure a daily purge is scheduled; cheap enough to call on every app start.
+    // alarms don't survive a reboot, so the first start after one schedules it again.
+    public static void schedule(Context context){
+        Intent intent = new Intent(context, PurgeService.class);
+        if( PendingIntent.getService(context, 0, intent, PendingIntent.FLAG_NO_CREATE) != null ){
+            return; // already scheduled
+        }
+
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.setInexactRepeating(AlarmManager.ELAPSED_REALTIME,
+            SystemClock.elapsedRealtime() + AlarmManager.INTERVAL_HOUR, AlarmManager.INTERVAL_DAY,
+            PendingIntent.getService(context, 0, intent, 0));
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent){
+        long deletedBefore = System.currentTimeMillis() - RETENTION_MILLIS;
+        Bundle result = getContentResolver().call(Contact.CONTENT_URI, Contact.METHOD_PURGE,
+            String.valueOf(deletedBefore), null);
+        if( result != null ){
+            Log.i(TAG, "purged " + result.getInt(Contact.METHOD_PURGE) + " deleted contacts");
+        }
+
+        // tombstones keep their photos, they may still be restored
+        Set<String> photos = new HashSet<>();
+        if( addPhotoNames(Contact.CONTENT_URI, photos) && addPhotoNames(Contact.DELETED_URI, photos) ){
+            Log.i(TAG, "deleted " + PhotoStore.sweep(this, photos) + " unused photo files");
+        }
+
+        // refresh the groups of probable duplicates now the tombstones are gone;
+        // on its own service, so the scan can be cancelled without stopping the purge
+        DuplicateScanService.start(this);
+    }
+
+    // add the photo names of the contacts at uri to names; false if they couldn't be read
+    private boolean addPhotoNames(Uri uri, Set<String> names){
+        Cursor cursor = getContentResolver().query(uri, new String[]{ Contact.COLUMN_PHOTO },
+            Contact.COLUMN_PHOTO + " IS NOT NULL", null, null);
+        if( cursor == null ){
+            return false;
+        }
+        try {
+            while( cursor.moveToNext() ){
+                names.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.lawrence.addressbook.data;
+
+import android.net.Uri;
+
+import android.support.v4.util.LruCache;
+
+import com.example.lawrence.addressbook.data.DatabaseDescription.Contact;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// compiles the structured queries built with ContactQuery into SQL for the provider.
+// every predicate is compiled to the form SQLite can answer from an index:
+//  - name comparisons use NOCASE, the collation of contacts_name_index;
+//  - a prefix is a range, col >= prefix AND col < (prefix with its last char bumped),
+//    rather than a LIKE, which can't use these indexes;
+//  - phone and email equality compare the normalized, indexed columns.
+// values are always bound, never written into the SQL, so every query of the same
+// shape (the same columns, operators and order) has the same SQL. the plan for a
+// shape is compiled once and cached here, and SQLite, which caches prepared
+// statements by SQL per connection, doesn't parse and plan it again either.
+public final class QueryPlanner {
+
+    // most shapes kept; an app only builds a handful
+    static final int MAX_PLANS = 32;
+
+    // how a column can be queried
+    private static final class Field {
+        final String column;  // the column compared, which may be a derived one
+        final String collate; // " COLLATE NOCASE", or "" for the column's own collation
+        final boolean equalsOnly;
+
+        Field(String column, String collate, boolean equalsOnly){
+            this.column = column;
+            this.collate = collate;
+            this.equalsOnly = equalsOnly;
+        }
+
+        // the column with the collation its index uses
+        String expression(){
+            return column + collate;
+        }
+
+        boolean isNoCase(){
+            return collate.length() != 0;
+        }
+    }
+
+    // queryable columns, keyed by ContactQuery's column names
+    private static final Map<String, Field> FIELDS = new HashMap<>();
+    static {
+        FIELDS.put(Contact.COLUMN_NAME, new Field(Contact.COLUMN_NAME, " COLLATE NOCASE", false));
+        FIELDS.put(Contact.COLUMN_PHONE, new Field(Contact.COLUMN_PHONE_NORMALIZED, "", true));
+        FIELDS.put(Contact.COLUMN_EMAIL, new Field(Contact.COLUMN_EMAIL_NORMALIZED, "", true));
+        FIELDS.put(Contact.COLUMN_STREET, new Field(Contact.COLUMN_STREET, "", false));
+        FIELDS.put(Contact.COLUMN_CITY, new Field(Contact.COLUMN_CITY, "", false));
+        FIELDS.put(Contact.COLUMN_STATE, new Field(Contact.COLUMN_STATE, "", false));
+        FIELDS.put(Contact.COLUMN_ZIP, new Field(Contact.COLUMN_ZIP, "", false));
+    }
+
+    // one compiled shape of query
+    public static final class Plan {
+        // WHERE clause with a ? per value, and ORDER BY clause (null to leave it unsorted)
+        final String selection;
+        final String sortOrder;
+
+        // per ?: the query parameter whose value it binds, and how the value is bound
+        private final String[] mParameters;
+        private final int[] mBinds;
+
+        Plan(String selection, String sortOrder, String[] parameters, int[] binds){
+            this.selection = selection;
+            this.sortOrder = sortOrder;
+            mParameters = parameters;
+            mBinds = binds;
+        }
+
+        // the selection arguments for uri, a query of this plan's shape
+        String[] bind(Uri uri){
+            String[] args = new String[mParameters.length];
+            for( int i = 0; i < args.length; ++i ){
+                args[i] = bindValue(mBinds[i], uri.getQueryParameter(mParameters[i]));
+            }
+            return args;
+        }
+    }
+
+    // how a value is turned into a selection argument
+    private static final int BIND_VALUE = 0;
+    private static final int BIND_PHONE = 1;
+    private static final int BIND_EMAIL = 2;
+    private static final int BIND_UPPER_BOUND = 3;
+    private static final int BIND_UPPER_BOUND_NOCASE = 4;
+
+    // a normalized phone or email is never empty, so this matches nothing
+    private static final String NO_MATCH = "";
+
+    private static String bindValue(int bind, String value){
+        switch( bind ){
+            case BIND_PHONE:
+                String phone = ContactNormalizer.normalizePhone(value);
+                return phone == null ? NO_MATCH : phone;
+            case BIND_EMAIL:
+                String email = ContactNormalizer.normalizeEmail(value);
+                return email == null ? NO_MATCH : email;
+            case BIND_UPPER_BOUND:
+                return prefixUpperBound(value, false);
+            case BIND_UPPER_BOUND_NOCASE:
+                return prefixUpperBound(value, true);
+            default:
+                return value;
+        }
+    }
+
+    private final LruCache<String, Plan> mPlans = new LruCache<>(MAX_PLANS);
+
+    // plan() calls answered from the cache / that compiled a plan
+    private int mHits = 0;
+    private int mMisses = 0;
+
+    // the plan for uri, a Contact.QUERY_URI built by ContactQuery.
+    // throws IllegalArgumentException if it names a column or operator that can't be queried
+    public Plan plan(Uri uri){
+        // the parameters in a fixed order, so the same predicates added in any
+        // order are the same shape and compile to the same SQL
+        List<String> parameters = new ArrayList<>(uri.getQueryParameterNames());
+        parameters.remove(Contact.PARAM_LIMIT);
+        parameters.remove(Contact.PARAM_ORDER);
+        Collections.sort(parameters);
+        String order = uri.getQueryParameter(Contact.PARAM_ORDER);
+        String shape = parameters + (order == null ? "" : order);
+
+        synchronized( this ){
+            Plan plan = mPlans.get(shape);
+            if( plan != null ){
+                ++mHits;
+                return plan;
+            }
+            ++mMisses;
+        }
+
+        Plan plan = compile(parameters, order);
+        mPlans.put(shape, plan);
+        return plan;
+    }
+
+    public synchronized int getHits(){ return mHits; }
+
+    public synchronized int getMisses(){ return mMisses; }
+
+    // forget every plan, e.g. to measure what compiling them costs
+    public void clear(){
+        mPlans.evictAll();
+    }
+
+    private static Plan compile(List<String> parameters, String order){
+        StringBuilder selection = new StringBuilder();
+        List<String> bound = new ArrayList<>();
+        List<Integer> binds = new ArrayList<>();
+
+        for( String parameter : parameters ){
+            int colon = parameter.lastIndexOf(':');
+            Field field = colon < 0 ? null : FIELDS.get(parameter.substring(0, colon));
+            String operator = colon < 0 ? null : parameter.substring(colon + 1);
+            if( field == null || operator == null ||
+                (field.equalsOnly && !ContactQuery.OP_EQUALS.equals(operator)) ){
+                throw new IllegalArgumentException("Can't query " + parameter);
+            }
+
+            if( selection.length() != 0 ){
+                selection.append(" AND ");
+            }
+            String expression = field.expression();
+            switch( operator ){
+                case ContactQuery.OP_EQUALS:
+                    selection.append(expression).append("=?");
+                    bound.add(parameter);
+                    if( Contact.COLUMN_PHONE_NORMALIZED.equals(field.column) ){
+                        binds.add(BIND_PHONE);
+                    } else if( Contact.COLUMN_EMAIL_NORMALIZED.equals(field.column) ){
+                        binds.add(BIND_EMAIL);
+                    } else {
+                        binds.add(BIND_VALUE);
+                    }
+                    break;
+                case ContactQuery.OP_PREFIX:
+                    selection.append(expression).append(">=? AND ").append(expression).append("<?");
+                    bound.add(parameter);
+                    binds.add(BIND_VALUE);
+                    bound.add(parameter);
+                    binds.add(field.isNoCase() ? BIND_UPPER_BOUND_NOCASE : BIND_UPPER_BOUND);
+                    break;
+                case ContactQuery.OP_MIN:
+                    selection.append(expression).append(">=?");
+                    bound.add(parameter);
+                    binds.add(BIND_VALUE);
+                    break;
+                case ContactQuery.OP_MAX:
+                    selection.append(expression).append("<=?");
+                    bound.add(parameter);
+                    binds.add(BIND_VALUE);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Can't query " + parameter);
+            }
+        }
+
+        // _id breaks ties, in the same direction so SQLite can still walk the index
+        String sortOrder = null;
+        if( order != null ){
+            boolean descending = order.startsWith("-");
+            Field field = FIELDS.get(descending ? order.substring(1) : order);
+            if( field == null || field.equalsOnly ){
+                throw new IllegalArgumentException("Can't sort by " + order);
+            }
+            String direction = descending ? " DESC" : " ASC";
+            sortOrder = field.expression() + direction + ", " + Contact._ID + direction;
+        }
+
+        int[] bindArray = new int[binds.size()];
+        for( int i = 0; i < bindArray.length; ++i ){
+            bindArray[i] = binds.get(i);
+        }
+        return new Plan(selection.length() == 0 ? null : selection.toString(), sortOrder,
+            bound.toArray(new String[bound.size()]), bindArray);
+    }
+
+    // the smallest string greater than every string starting with prefix, in the column's
+    // collation: prefix with its last char bumped by one. NOCASE compares with ASCII
+    // letters lowercased, so the bound is built lowercased, and skips the uppercase
+    // letters, which NOCASE never compares as.
+    static String prefixUpperBound(String prefix, boolean noCase){
+        char[] chars = (noCase ? toLowerAscii(prefix) : prefix).toCharArray();
+        int end = chars.length;
+        // a trailing U+FFFF can't be bumped; bump the char before it instead
+        while( end > 0 && chars[end - 1] == Character.MAX_VALUE ){
+            --end;
+        }
+        if( end == 0 ){
+            return prefix + Character.MAX_VALUE; // near enough; no text sorts above it
+        }
+        char bumped = (char) (chars[end - 1] + 1);
+        if( noCase && bumped >= 'A' && bumped <= 'Z' ){
+            bumped = 'Z' + 1;
+        }
+        chars[end - 1] = bumped;
+        return new String(chars, 0, end);
+    }
+
+    private static String toLowerAscii(String s){
+        char[] chars = s.toCharArray();
+        for( int i = 0; i < chars.length; ++i ){
+            if( chars[i] >= 'A' && chars[i] <= 'Z' ){
+                chars[i] = (char) (chars[i] + ('a' - 'A'));
+            }
+        }
+        return new String(chars);
+    }
+}
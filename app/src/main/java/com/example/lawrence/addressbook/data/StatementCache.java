@@ -0,0 +1,116 @@
+package com.example.lawrence.addressbook.data;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// compiled SQLiteStatements for the provider's common writes, keyed by their SQL.
+// the SQL of each shape of write is always the same string, with the contact's _id
+// and values bound as parameters, so each shape is compiled once and then reused
+// instead of being recompiled for every contact.
+// a statement is taken out of the cache while it runs and put back afterwards, so the
+// cache's lock is never held while SQLite works. a write waits for the database's
+// primary connection, which a transaction on another thread may hold; if that thread
+// then needed this cache's lock too, the two would deadlock. a thread that finds its
+// statement in use by another one simply compiles its own.
+class StatementCache {
+
+    // most statements kept compiled; the least recently used one is closed first
+    static final int DEFAULT_MAX_STATEMENTS = 16;
+
+    private final int mMaxStatements;
+
+    // database the statements were compiled against
+    private SQLiteDatabase mDatabase;
+
+    // compiled statements, least recently used first
+    private final LinkedHashMap<String, SQLiteStatement> mStatements =
+        new LinkedHashMap<String, SQLiteStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SQLiteStatement> eldest){
+                if( size() > mMaxStatements ){
+                    eldest.getValue().close();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+    StatementCache(){
+        this(DEFAULT_MAX_STATEMENTS);
+    }
+
+    StatementCache(int maxStatements){
+        mMaxStatements = maxStatements;
+    }
+
+    // run an UPDATE or DELETE with the given bind arguments (String, Long, byte[], null, ...)
+    // and return the number of rows it changed
+    int executeUpdateDelete(SQLiteDatabase db, String sql, Object[] bindArgs){
+        SQLiteStatement statement = acquire(db, sql, bindArgs);
+        try {
+            return statement.executeUpdateDelete();
+        } finally {
+            release(db, sql, statement);
+        }
+    }
+
+    // run an INSERT with the given bind arguments and return the new row's id, or -1
+    long executeInsert(SQLiteDatabase db, String sql, Object[] bindArgs){
+        SQLiteStatement statement = acquire(db, sql, bindArgs);
+        try {
+            return statement.executeInsert();
+        } finally {
+            release(db, sql, statement);
+        }
+    }
+
+    // close every statement not in use; those in use are closed when they're released
+    synchronized void clear(){
+        for( SQLiteStatement statement : mStatements.values() ){
+            statement.close();
+        }
+        mStatements.clear();
+        mDatabase = null;
+    }
+
+    // take the statement for sql out of the cache (compiling it if there's none)
+    // and bind its arguments; only the calling thread uses it until it's released
+    private SQLiteStatement acquire(SQLiteDatabase db, String sql, Object[] bindArgs){
+        SQLiteStatement statement = take(db, sql);
+        if( statement == null ){
+            // compiling needs a connection too, so it's done outside the lock as well
+            statement = db.compileStatement(sql);
+        }
+
+        statement.clearBindings();
+        for( int i = 0; i < bindArgs.length; ++i ){
+            // bind indexes start at 1
+            DatabaseUtils.bindObjectToProgram(statement, i + 1, bindArgs[i]);
+        }
+        return statement;
+    }
+
+    private synchronized SQLiteStatement take(SQLiteDatabase db, String sql){
+        // statements belong to the database they were compiled against
+        if( db != mDatabase ){
+            clear();
+            mDatabase = db;
+        }
+        return mStatements.remove(sql);
+    }
+
+    // put a statement back in the cache after it ran, or close it if the cache has
+    // moved on to another database or another thread has put one back for sql first
+    private synchronized void release(SQLiteDatabase db, String sql, SQLiteStatement statement){
+        if( db != mDatabase || mStatements.containsKey(sql) ){
+            statement.close();
+            return;
+        }
+        statement.clearBindings(); // don't keep the bound values alive
+        mStatements.put(sql, statement);
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.lawrence.addressbook.data;
+
+// one contact as read from or written to a vCard.
+// the fields mirror the columns of DatabaseDescription.Contact; any of them may be null.
+public class VCardEntry {
+    public String name;
+    public String phone;
+    public String email;
+    public String street;
+    public String city;
+    public String state;
+    public String zip;
+
+    // clear every field so the entry can be reused for the next card
+    public void clear(){
+        name = null;
+        phone = null;
+        email = null;
+        street = null;
+        city = null;
+        state = null;
+        zip = null;
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.lawrence.addressbook.data;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// reads vCards (3.0 and 4.0) one at a time from a character stream.
+// only one card is held in memory at once, so files of any size can be read.
+// the properties that map onto DatabaseDescription.Contact's columns are kept:
+// FN (or N when there is no FN), the first TEL, the first EMAIL and the first ADR.
+// everything else is skipped.
+public class VCardReader implements Closeable {
+
+    private final BufferedReader mReader;
+
+    // line read ahead while looking for folded continuation lines
+    private String mNextLine;
+
+    public VCardReader(Reader reader){
+        mReader = reader instanceof BufferedReader ?
+            (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    // read the next card into entry.
+    // returns false, leaving entry cleared, when there are no more cards.
+    public boolean next(VCardEntry entry) throws IOException {
+        entry.clear();
+        boolean inCard = false;
+        String structuredName = null; // N, used if the card has no FN
+
+        String line;
+        while( (line = readUnfoldedLine()) != null ){
+            int colon = findValueStart(line);
+            if( colon < 0 ){
+                continue; // not a property line
+            }
+
+            String property = propertyName(line, colon);
+            String value = line.substring(colon + 1);
+
+            if( !inCard ){
+                inCard = property.equals("BEGIN") && value.trim().equalsIgnoreCase("VCARD");
+                continue;
+            }
+
+            switch( property ){
+                case "END":
+                    if( entry.name == null && structuredName != null ){
+                        entry.name = structuredName;
+                    }
+                    return true;
+                case "FN":
+                    if( entry.name == null ){
+                        entry.name = emptyToNull(unescape(value));
+                    }
+                    break;
+                case "N":
+                    if( structuredName == null ){
+                        structuredName = formatStructuredName(splitComponents(value));
+                    }
+                    break;
+                case "TEL":
+                    if( entry.phone == null ){
+                        entry.phone = emptyToNull(stripUriScheme(unescape(value), "tel:"));
+                    }
+                    break;
+                case "EMAIL":
+                    if( entry.email == null ){
+                        entry.email = emptyToNull(stripUriScheme(unescape(value), "mailto:"));
+                    }
+                    break;
+                case "ADR":
+                    if( entry.street == null && entry.city == null &&
+                        entry.state == null && entry.zip == null ){
+                        // po box; extended; street; locality; region; postal code; country
+                        List<String> components = splitComponents(value);
+                        entry.street = component(components, 2);
+                        entry.city = component(components, 3);
+                        entry.state = component(components, 4);
+                        entry.zip = component(components, 5);
+                    }
+                    break;
+                default:
+                    break; // property we don't store
+            }
+        }
+
+        // end of input, possibly in the middle of a truncated card
+        entry.clear();
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mReader.close();
+    }
+
+    // read one logical line: a physical line plus any folded continuation lines
+    // (lines starting with a space or tab) that follow it
+    private String readUnfoldedLine() throws IOException {
+        String line = mNextLine != null ? mNextLine : mReader.readLine();
+        mNextLine = null;
+        if( line == null ){
+            return null;
+        }
+
+        String next = mReader.readLine();
+        if( next == null || next.isEmpty() || (next.charAt(0) != ' ' && next.charAt(0) != '\t') ){
+            mNextLine = next;
+            return line;
+        }
+
+        StringBuilder unfolded = new StringBuilder(line);
+        do {
+            unfolded.append(next, 1, next.length()); // drop the single folding whitespace
+            next = mReader.readLine();
+        } while( next != null && !next.isEmpty() && (next.charAt(0) == ' ' || next.charAt(0) == '\t') );
+        mNextLine = next;
+        return unfolded.toString();
+    }
+
+    // index of the ':' between the property's name/parameters and its value,
+    // skipping any ':' inside quoted parameter values; -1 if there is none
+    private static int findValueStart(String line){
+        boolean quoted = false;
+        for( int i = 0; i < line.length(); ++i ){
+            char c = line.charAt(i);
+            if( c == '"' ){
+                quoted = !quoted;
+            } else if( c == ':' && !quoted ){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // upper-case property name without its group ("item1.") or parameters (";TYPE=work")
+    private static String propertyName(String line, int colon){
+        int end = line.indexOf(';');
+        if( end < 0 || end > colon ){
+            end = colon;
+        }
+        int start = line.lastIndexOf('.', end) + 1;
+        // names are ASCII; the default locale could turn "email" into "EMA\u0130L"
+        return line.substring(start, end).trim().toUpperCase(Locale.ROOT);
+    }
+
+    // split a structured value (N, ADR) on the ';'s that aren't escaped, unescaping each part
+    private static List<String> splitComponents(String value){
+        List<String> components = new ArrayList<>();
+        int start = 0;
+        for( int i = 0; i < value.length(); ++i ){
+            char c = value.charAt(i);
+            if( c == '\\' ){
+                ++i; // skip escaped character
+            } else if( c == ';' ){
+                components.add(unescape(value.substring(start, i)));
+                start = i + 1;
+            }
+        }
+        components.add(unescape(value.substring(start)));
+        return components;
+    }
+
+    private static String component(List<String> components, int index){
+        return index < components.size() ? emptyToNull(components.get(index)) : null;
+    }
+
+    // family; given; additional; prefixes; suffixes -> "prefixes given additional family suffixes"
+    private static String formatStructuredName(List<String> components){
+        StringBuilder name = new StringBuilder();
+        int[] order = { 3, 1, 2, 0, 4 };
+        for( int index : order ){
+            String part = component(components, index);
+            if( part != null ){
+                if( name.length() > 0 ){
+                    name.append(' ');
+                }
+                name.append(part);
+            }
+        }
+        return emptyToNull(name.toString());
+    }
+
+    // undo vCard text escaping: \n, \N, \, \; and \\
+    static String unescape(String value){
+        if( value.indexOf('\\') < 0 ){
+            return value;
+        }
+
+        StringBuilder unescaped = new StringBuilder(value.length());
+        for( int i = 0; i < value.length(); ++i ){
+            char c = value.charAt(i);
+            if( c == '\\' && i + 1 < value.length() ){
+                char escaped = value.charAt(++i);
+                unescaped.append(escaped == 'n' || escaped == 'N' ? '\n' : escaped);
+            } else {
+                unescaped.append(c);
+            }
+        }
+        return unescaped.toString();
+    }
+
+    // vCard 4.0 may give TEL and EMAIL as URIs
+    private static String stripUriScheme(String value, String scheme){
+        return value.regionMatches(true, 0, scheme, 0, scheme.length()) ?
+            value.substring(scheme.length()) : value;
+    }
+
+    private static String emptyToNull(String value){
+        if( value == null ){
+            return null;
+        }
+        value = value.trim();
+        return value.isEmpty() ? null : value;
+    }
+}
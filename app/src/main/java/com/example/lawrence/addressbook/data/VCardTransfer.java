@@ -0,0 +1,125 @@
+package com.example.lawrence.addressbook.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+
+import android.database.Cursor;
+
+import android.net.Uri;
+
+import com.example.lawrence.addressbook.data.DatabaseDescription.Contact;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+// imports and exports the address book as vCards through AddressBookContentProvider.
+// both directions stream: import holds one batch of contacts at a time and export
+// holds one page of contacts at a time, so memory use doesn't depend on the file size.
+public class VCardTransfer {
+
+    // contacts inserted per bulkInsert() transaction during import
+    static final int IMPORT_BATCH_SIZE = 500;
+
+    // contacts read per page during export
+    static final int EXPORT_PAGE_SIZE = 500;
+
+    private VCardTransfer(){ /* static methods only */ }
+
+    // read every card from reader and insert it as a contact.
+    // returns the number of contacts inserted.
+    public static int importContacts(ContentResolver resolver, Reader reader) throws IOException {
+        VCardReader vCardReader = new VCardReader(reader);
+        VCardEntry entry = new VCardEntry();
+        ContentValues[] batch = new ContentValues[IMPORT_BATCH_SIZE];
+        int batchSize = 0;
+        int imported = 0;
+
+        while( vCardReader.next(entry) ){
+            batch[batchSize++] = toContentValues(entry);
+
+            if( batchSize == batch.length ){
+                imported += resolver.bulkInsert(Contact.CONTENT_URI, batch);
+                batchSize = 0;
+            }
+        }
+
+        // insert the last, partly filled batch
+        if( batchSize > 0 ){
+            ContentValues[] lastBatch = new ContentValues[batchSize];
+            System.arraycopy(batch, 0, lastBatch, 0, batchSize);
+            imported += resolver.bulkInsert(Contact.CONTENT_URI, lastBatch);
+        }
+        return imported;
+    }
+
+    // write every contact to writer as a vCard of the given version
+    // (VCardWriter.VERSION_3_0 or VERSION_4_0), in list order.
+    // returns the number of contacts written. writer is flushed but not closed.
+    public static int exportContacts(ContentResolver resolver, Writer writer, String version)
+            throws IOException {
+        VCardWriter vCardWriter = new VCardWriter(writer, version);
+        VCardEntry entry = new VCardEntry();
+        ContactRow row = new ContactRow();
+        int exported = 0;
+
+        // walk the table a page at a time, each page starting after the last row of the one before.
+        // a null name can't be a key: NULL sorts before every name, so no name > key range
+        // starts after it. when a page ends on one, the next page is read by offset instead,
+        // as ContactPager does; nulls sort first, so that's only ever the first few pages.
+        String afterName = null;
+        long afterId = 0;
+        while( true ){
+            Uri pageUri = exported == 0 || afterName != null
+                ? Contact.buildPageUri(afterName, afterId, EXPORT_PAGE_SIZE)
+                : Contact.buildPageUri(exported, EXPORT_PAGE_SIZE);
+            Cursor cursor = resolver.query(pageUri, ContactProjection.DETAIL, null, null, null);
+            if( cursor == null ){
+                break;
+            }
+
+            int rows;
+            try {
+                rows = cursor.getCount();
+                row.wrap(cursor);
+                while( cursor.moveToNext() ){
+                    entry.name = row.getName();
+                    entry.phone = row.getPhone();
+                    entry.email = row.getEmail();
+                    entry.street = row.getStreet();
+                    entry.city = row.getCity();
+                    entry.state = row.getState();
+                    entry.zip = row.getZip();
+                    vCardWriter.write(entry);
+
+                    afterId = row.getId();
+                    afterName = entry.name;
+                }
+            } finally {
+                cursor.close();
+            }
+
+            exported += rows;
+            if( rows < EXPORT_PAGE_SIZE ){
+                break; // last page
+            }
+        }
+
+        vCardWriter.flush();
+        return exported;
+    }
+
+    // contact columns for one card.
+    // a card without a name gets an empty one: the list and paging expect every contact to have a name
+    static ContentValues toContentValues(VCardEntry entry){
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(Contact.COLUMN_NAME, entry.name != null ? entry.name : "");
+        contentValues.put(Contact.COLUMN_PHONE, entry.phone);
+        contentValues.put(Contact.COLUMN_EMAIL, entry.email);
+        contentValues.put(Contact.COLUMN_STREET, entry.street);
+        contentValues.put(Contact.COLUMN_CITY, entry.city);
+        contentValues.put(Contact.COLUMN_STATE, entry.state);
+        contentValues.put(Contact.COLUMN_ZIP, entry.zip);
+        return contentValues;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.lawrence.addressbook.data;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+// writes contacts as vCards (3.0 or 4.0) to a character stream, one card at a time.
+// nothing is kept after a card is written, so any number of cards can be written.
+public class VCardWriter implements Closeable, Flushable {
+
+    public static final String VERSION_3_0 = "3.0";
+    public static final String VERSION_4_0 = "4.0";
+
+    // vCard lines are folded once they reach this length
+    private static final int MAX_LINE_LENGTH = 75;
+
+    private static final String CRLF = "\r\n";
+
+    private final Writer mWriter;
+    private final String mVersion;
+
+    public VCardWriter(Writer writer, String version){
+        if( !VERSION_3_0.equals(version) && !VERSION_4_0.equals(version) ){
+            throw new IllegalArgumentException("Unsupported vCard version: " + version);
+        }
+        mWriter = writer instanceof BufferedWriter ? writer : new BufferedWriter(writer);
+        mVersion = version;
+    }
+
+    // write one card; null or empty fields are left out
+    public void write(VCardEntry entry) throws IOException {
+        mWriter.write("BEGIN:VCARD" + CRLF);
+        writeProperty("VERSION", mVersion);
+
+        String name = entry.name != null ? entry.name : "";
+        writeProperty("FN", escape(name));
+        // N is required by 3.0; the whole name goes in the family name component
+        writeProperty("N", escape(name) + ";;;;");
+
+        if( !isEmpty(entry.phone) ){
+            writeProperty("TEL", escape(entry.phone));
+        }
+        if( !isEmpty(entry.email) ){
+            writeProperty("EMAIL", escape(entry.email));
+        }
+        if( !isEmpty(entry.street) || !isEmpty(entry.city) ||
+            !isEmpty(entry.state) || !isEmpty(entry.zip) ){
+            // po box; extended; street; locality; region; postal code; country
+            writeProperty("ADR", ";;" + escape(entry.street) + ";" + escape(entry.city) + ";" +
+                escape(entry.state) + ";" + escape(entry.zip) + ";");
+        }
+
+        mWriter.write("END:VCARD" + CRLF);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        mWriter.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mWriter.close();
+    }
+
+    // write "NAME:value", folding it onto continuation lines if it is too long
+    private void writeProperty(String property, String value) throws IOException {
+        String line = property + ":" + value;
+
+        int start = 0;
+        int limit = MAX_LINE_LENGTH;
+        while( line.length() - start > limit ){
+            int end = start + limit;
+            // don't split a surrogate pair across lines
+            if( Character.isHighSurrogate(line.charAt(end - 1)) ){
+                --end;
+            }
+            mWriter.write(line, start, end - start);
+            mWriter.write(CRLF + " ");
+            start = end;
+            limit = MAX_LINE_LENGTH - 1; // continuation lines start with the folding space
+        }
+        mWriter.write(line, start, line.length() - start);
+        mWriter.write(CRLF);
+    }
+
+    // escape text for a vCard value: \, ; , and newlines
+    static String escape(String value){
+        if( value == null ){
+            return "";
+        }
+
+        StringBuilder escaped = null;
+        for( int i = 0; i < value.length(); ++i ){
+            char c = value.charAt(i);
+            String replacement;
+            switch( c ){
+                case '\\': replacement = "\\\\"; break;
+                case ';':  replacement = "\\;"; break;
+                case ',':  replacement = "\\,"; break;
+                case '\n': replacement = "\\n"; break;
+                case '\r': replacement = ""; break;
+                default:   replacement = null; break;
+            }
+
+            if( replacement != null && escaped == null ){
+                escaped = new StringBuilder(value.length() + 8);
+                escaped.append(value, 0, i);
+            }
+            if( escaped != null ){
+                if( replacement != null ){
+                    escaped.append(replacement);
+                } else {
+                    escaped.append(c);
+                }
+            }
+        }
+        return escaped == null ? value : escaped.toString();
+    }
+
+    private static boolean isEmpty(String value){
+        return value == null || value.isEmpty();
+    }
+}
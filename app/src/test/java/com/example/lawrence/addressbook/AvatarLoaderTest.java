@@ -0,0 +1,23 @@
+package com.example.lawrence.addressbook;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AvatarLoaderTest {
+
+    @Test
+    public void sampledPhotoStillCoversTheAvatar() {
+        // a 12 megapixel camera photo into a 120px avatar: 3000 / 16 = 187 >= 120, / 32 isn't
+        assertEquals(16, AvatarLoader.computeSampleSize(4000, 3000, 120));
+        assertEquals(16, AvatarLoader.computeSampleSize(3000, 4000, 120));
+        assertEquals(2, AvatarLoader.computeSampleSize(240, 240, 120));
+        assertEquals(1, AvatarLoader.computeSampleSize(239, 1000, 120));
+    }
+
+    @Test
+    public void smallPhotosAreNotSampled() {
+        assertEquals(1, AvatarLoader.computeSampleSize(120, 120, 120));
+        assertEquals(1, AvatarLoader.computeSampleSize(50, 80, 120));
+    }
+}
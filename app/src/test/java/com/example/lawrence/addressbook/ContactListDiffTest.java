@@ -0,0 +1,167 @@
+package com.example.lawrence.addressbook;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link ContactListDiff}.
+ */
+public class ContactListDiffTest {
+
+    // applies the events to a copy of the old list, and counts them
+    private static class ListRecorder implements ContactListDiff.Callback {
+        final List<Long> list = new ArrayList<>();
+        final long[] newIds;
+        int inserts, removes, moves, changes;
+
+        ListRecorder(long[] oldIds, long[] newIds){
+            for( long id : oldIds ){
+                list.add(id);
+            }
+            this.newIds = newIds;
+        }
+
+        @Override
+        public void onInserted(int position){
+            ++inserts;
+            list.add(position, null); // filled from newIds once every event is applied
+        }
+
+        @Override
+        public void onRemoved(int position){
+            ++removes;
+            list.remove(position);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition){
+            ++moves;
+            list.add(toPosition, list.remove(fromPosition));
+        }
+
+        @Override
+        public void onChanged(int position){
+            ++changes;
+            assertNotNull(list.get(position)); // changed rows existed before
+        }
+
+        long[] result(){
+            long[] ids = new long[list.size()];
+            for( int i = 0; i < ids.length; ++i ){
+                ids[i] = list.get(i) != null ? list.get(i) : newIds[i];
+            }
+            return ids;
+        }
+    }
+
+    @Test
+    public void singleInsertRemoveAndChange(){
+        long[] oldIds = { 1, 2, 3, 4 };
+
+        ListRecorder recorder = apply(oldIds, new int[]{ 1, 2, 3, 4 },
+                                      new long[]{ 1, 2, 5, 3, 4 }, new int[]{ 1, 2, 5, 3, 4 });
+        assertEquals(1, recorder.inserts);
+        assertEquals(0, recorder.removes + recorder.moves + recorder.changes);
+
+        recorder = apply(oldIds, new int[]{ 1, 2, 3, 4 }, new long[]{ 1, 3, 4 }, new int[]{ 1, 3, 4 });
+        assertEquals(1, recorder.removes);
+        assertEquals(0, recorder.inserts + recorder.moves + recorder.changes);
+
+        recorder = apply(oldIds, new int[]{ 1, 2, 3, 4 }, oldIds, new int[]{ 1, 2, 9, 4 });
+        assertEquals(1, recorder.changes);
+        assertEquals(0, recorder.inserts + recorder.removes + recorder.moves);
+    }
+
+    @Test
+    public void renameToOtherEndOfLongListIsOneMove(){
+        int size = 10000;
+        long[] oldIds = new long[size];
+        int[] oldHashes = new int[size];
+        for( int i = 0; i < size; ++i ){
+            oldIds[i] = i + 1;
+            oldHashes[i] = i;
+        }
+
+        // first contact renamed so that it now sorts last
+        long[] newIds = new long[size];
+        int[] newHashes = new int[size];
+        System.arraycopy(oldIds, 1, newIds, 0, size - 1);
+        System.arraycopy(oldHashes, 1, newHashes, 0, size - 1);
+        newIds[size - 1] = 1;
+        newHashes[size - 1] = -1;
+
+        ListRecorder recorder = apply(oldIds, oldHashes, newIds, newHashes);
+        assertEquals(1, recorder.moves);
+        assertEquals(1, recorder.changes);
+        assertEquals(0, recorder.inserts + recorder.removes);
+    }
+
+    @Test
+    public void randomEditsReproduceNewList(){
+        Random random = new Random(42);
+        for( int round = 0; round < 500; ++round ){
+            int size = random.nextInt(60);
+            List<Long> ids = new ArrayList<>();
+            for( int i = 0; i < size; ++i ){
+                ids.add((long) i);
+            }
+            long[] oldIds = toArray(ids);
+            int[] oldHashes = new int[size];
+
+            // remove, insert and move a few rows
+            long nextId = size;
+            int edits = random.nextInt(8);
+            for( int e = 0; e < edits; ++e ){
+                int kind = random.nextInt(3);
+                if( kind == 0 && !ids.isEmpty() ){
+                    ids.remove(random.nextInt(ids.size()));
+                } else if( kind == 1 ){
+                    ids.add(random.nextInt(ids.size() + 1), nextId++);
+                } else if( !ids.isEmpty() ){
+                    long id = ids.remove(random.nextInt(ids.size()));
+                    ids.add(random.nextInt(ids.size() + 1), id);
+                }
+            }
+            long[] newIds = toArray(ids);
+            int[] newHashes = new int[newIds.length];
+            for( int j = 0; j < newHashes.length; ++j ){
+                newHashes[j] = random.nextInt(10) == 0 ? 1 : 0;
+            }
+
+            apply(oldIds, oldHashes, newIds, newHashes);
+        }
+    }
+
+    @Test
+    public void tooManyChangesGivesNull(){
+        long[] oldIds = { 1, 2, 3 };
+        long[] newIds = { 4, 5, 6 };
+        assertNull(ContactListDiff.compute(oldIds, new int[3], newIds, new int[3], 5));
+    }
+
+    // diff, check the events turn the old list into the new one, and return the counts
+    private static ListRecorder apply(long[] oldIds, int[] oldHashes, long[] newIds, int[] newHashes){
+        ContactListDiff diff = ContactListDiff.compute(oldIds, oldHashes, newIds, newHashes, 1000);
+        assertNotNull(diff);
+        assertEquals(oldIds.length, diff.getOldSize());
+        assertEquals(newIds.length, diff.getNewSize());
+
+        ListRecorder recorder = new ListRecorder(oldIds, newIds);
+        diff.dispatch(recorder);
+        assertArrayEquals(newIds, recorder.result());
+        return recorder;
+    }
+
+    private static long[] toArray(List<Long> ids){
+        long[] array = new long[ids.size()];
+        for( int i = 0; i < array.length; ++i ){
+            array[i] = ids.get(i);
+        }
+        return array;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.lawrence.addressbook;
+
+import android.database.MatrixCursor;
+
+import com.example.lawrence.addressbook.data.ContactProjection;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+// MatrixCursor needs Robolectric
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ContactSnapshotTest {
+
+    @Test
+    public void rowsReadBackInAnyOrder() {
+        MatrixCursor cursor = new MatrixCursor(ContactProjection.LIST);
+        cursor.addRow(new Object[]{ 7L, "Ann", null });
+        cursor.addRow(new Object[]{ 3L, "b\u00f6b", "photo-3" });
+        cursor.addRow(new Object[]{ 9L, null, null });
+        cursor.addRow(new Object[]{ 4L, "", "photo-4" });
+        int[] hashes = new int[4];
+        ContactSnapshot snapshot = ContactSnapshot.read(cursor, hashes);
+
+        assertEquals(4, snapshot.getCount());
+        // 20 chars of names and photo names
+        assertEquals(48 + 8 * 4 + 2 * 20 + 4 * 8, snapshot.getByteSize());
+
+        assertTrue(snapshot.moveToPosition(3));
+        assertEquals(4, snapshot.getId());
+        assertEquals("", snapshot.getName());
+        assertEquals("photo-4", snapshot.getPhoto());
+
+        assertTrue(snapshot.moveToPosition(0));
+        assertEquals(7, snapshot.getId());
+        assertEquals("Ann", snapshot.getName());
+        assertNull(snapshot.getPhoto());
+
+        assertTrue(snapshot.moveToPosition(1));
+        assertEquals(3, snapshot.getId());
+        assertEquals("b\u00f6b", snapshot.getName());
+        assertEquals("photo-3", snapshot.getPhoto());
+
+        // a null name reads back as an empty one
+        assertTrue(snapshot.moveToPosition(2));
+        assertEquals(9, snapshot.getId());
+        assertEquals("", snapshot.getName());
+        assertNull(snapshot.getPhoto());
+
+        assertFalse(snapshot.moveToPosition(4));
+        assertFalse(snapshot.moveToPosition(-1));
+    }
+
+    @Test
+    public void hashesMatchContactsLoader() {
+        MatrixCursor cursor = new MatrixCursor(ContactProjection.LIST);
+        cursor.addRow(new Object[]{ 1L, "Ann", null });
+        cursor.addRow(new Object[]{ 2L, "Ann", "photo-2" });
+        int[] hashes = new int[2];
+        ContactSnapshot.read(cursor, hashes);
+
+        assertEquals(ContactsLoader.hashRow("Ann", null), hashes[0]);
+        assertEquals(ContactsLoader.hashRow("Ann", "photo-2"), hashes[1]);
+        assertTrue(hashes[0] != hashes[1]);
+    }
+
+    @Test
+    public void emptyListHasNoRows() {
+        ContactSnapshot snapshot = ContactSnapshot.read(new MatrixCursor(ContactProjection.LIST), new int[0]);
+        assertEquals(0, snapshot.getCount());
+        assertFalse(snapshot.moveToPosition(0));
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.lawrence.addressbook;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+public class SectionIndexTest {
+
+    @Test
+    public void sectionsStartAfterThePreviousOnes() {
+        SectionIndex index = SectionIndex.build(
+            new String[]{ "a", "B", "m" }, new int[]{ 3, 2, 5 });
+
+        assertEquals(3, index.getSectionCount());
+        assertEquals(10, index.getCount());
+        assertEquals("A", index.getLabel(0));
+        assertEquals("B", index.getLabel(1));
+        assertEquals("M", index.getLabel(2));
+        assertEquals(0, index.getPositionForSection(0));
+        assertEquals(3, index.getPositionForSection(1));
+        assertEquals(5, index.getPositionForSection(2));
+    }
+
+    @Test
+    public void nonLettersShareOneSection() {
+        // NOCASE sorts null and empty names, then digits and punctuation, before letters
+        SectionIndex index = SectionIndex.build(
+            new String[]{ null, "", "1", "+", "j" }, new int[]{ 1, 1, 4, 2, 1 });
+
+        assertEquals(2, index.getSectionCount());
+        assertEquals(SectionIndex.OTHER_LABEL, index.getLabel(0));
+        assertEquals("J", index.getLabel(1));
+        assertEquals(8, index.getPositionForSection(1));
+    }
+
+    @Test
+    public void labelsDontDependOnTheDefaultLocale() {
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            SectionIndex index = SectionIndex.build(new String[]{ "i" }, new int[]{ 1 });
+            assertEquals("I", index.getLabel(0));
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    public void positionsMapBackToTheirSection() {
+        SectionIndex index = SectionIndex.build(
+            new String[]{ "a", "c", "z" }, new int[]{ 2, 1, 3 });
+
+        int[] expected = { 0, 0, 1, 2, 2, 2 };
+        for( int position = 0; position < expected.length; ++position ){
+            assertEquals(expected[position], index.getSectionForPosition(position));
+        }
+        assertEquals(-1, SectionIndex.EMPTY.getSectionForPosition(0));
+    }
+
+    @Test
+    public void emptyGroupsAreSkipped() {
+        SectionIndex index = SectionIndex.build(new String[]{ "a", "b" }, new int[]{ 0, 2 });
+        assertEquals(1, index.getSectionCount());
+        assertEquals("B", index.getLabel(0));
+    }
+}
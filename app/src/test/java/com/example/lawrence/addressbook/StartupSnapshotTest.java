@@ -0,0 +1,57 @@
+package com.example.lawrence.addressbook;
+
+import android.content.Context;
+import android.database.MatrixCursor;
+
+import com.example.lawrence.addressbook.data.ContactProjection;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+// MatrixCursor and the files directory need Robolectric
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class StartupSnapshotTest {
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        StartupSnapshot.delete(mContext);
+    }
+
+    @Test
+    public void firstRowsReadBack() {
+        MatrixCursor cursor = new MatrixCursor(ContactProjection.LIST);
+        for( int i = 0; i < StartupSnapshot.ROWS + 10; ++i ){
+            cursor.addRow(new Object[]{ (long) i, "Contact " + i, i % 2 == 0 ? null : "photo-" + i });
+        }
+        StartupSnapshot.save(mContext, ContactSnapshot.read(cursor, null));
+
+        ContactSnapshot snapshot = StartupSnapshot.load(mContext);
+        assertEquals(StartupSnapshot.ROWS, snapshot.getCount());
+        for( int i = 0; i < StartupSnapshot.ROWS; ++i ){
+            assertTrue(snapshot.moveToPosition(i));
+            assertEquals(i, snapshot.getId());
+            assertEquals("Contact " + i, snapshot.getName());
+            assertEquals(i % 2 == 0 ? null : "photo-" + i, snapshot.getPhoto());
+        }
+    }
+
+    @Test
+    public void nothingToShowWithoutContacts() {
+        assertNull(StartupSnapshot.load(mContext));
+
+        StartupSnapshot.save(mContext, ContactSnapshot.read(new MatrixCursor(ContactProjection.LIST), null));
+        assertNull(StartupSnapshot.load(mContext));
+    }
+}
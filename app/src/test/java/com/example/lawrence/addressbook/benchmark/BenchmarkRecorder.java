@@ -0,0 +1,135 @@
+package com.example.lawrence.addressbook.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+// times benchmarks and writes their results as JSON.
+// each benchmark runs a few warmup iterations, then measured iterations; an iteration
+// runs a fixed number of operations and its time is divided by that number, giving one
+// ns/op sample per iteration. the JSON file holds the samples' min/mean/p50/p90/max so
+// results from different releases can be compared by a script.
+class BenchmarkRecorder {
+
+    // one iteration of a benchmark; run the operations for iteration number `iteration`
+    interface Body {
+        void run(int iteration) throws Exception;
+    }
+
+    static final int DEFAULT_WARMUP_ITERATIONS = 2;
+    static final int DEFAULT_ITERATIONS = 5;
+
+    private static class Result {
+        String name;
+        int rows;
+        int operations;
+        String unit = "ns/op";
+        long[] nanosPerOp; // the samples, in unit
+    }
+
+    private final String mSuite;
+    private final List<Result> mResults = new ArrayList<>();
+
+    // suite names the output file, e.g. "data-layer-10000" is written to data-layer-10000.json
+    BenchmarkRecorder(String suite){
+        mSuite = suite;
+    }
+
+    void measure(String name, int rows, int operationsPerIteration, Body body) throws Exception {
+        measure(name, rows, operationsPerIteration, DEFAULT_WARMUP_ITERATIONS, DEFAULT_ITERATIONS, body);
+    }
+
+    // rows is the dataset size the benchmark ran against
+    void measure(String name, int rows, int operationsPerIteration,
+                 int warmupIterations, int iterations, Body body) throws Exception {
+        for( int i = 0; i < warmupIterations; ++i ){
+            body.run(i);
+        }
+
+        Result result = new Result();
+        result.name = name;
+        result.rows = rows;
+        result.operations = operationsPerIteration;
+        result.nanosPerOp = new long[iterations];
+        for( int i = 0; i < iterations; ++i ){
+            long start = System.nanoTime();
+            body.run(warmupIterations + i);
+            result.nanosPerOp[i] = (System.nanoTime() - start) / operationsPerIteration;
+        }
+        mResults.add(result);
+
+        long[] sorted = result.nanosPerOp.clone();
+        Arrays.sort(sorted);
+        System.out.println(String.format(Locale.US, "%-24s %7d rows  %12d ns/op (p50)",
+            name, rows, sorted[sorted.length / 2]));
+    }
+
+    // record a single measured value, such as a size in bytes, alongside the timings
+    void record(String name, int rows, String unit, long value){
+        Result result = new Result();
+        result.name = name;
+        result.rows = rows;
+        result.operations = 1;
+        result.unit = unit;
+        result.nanosPerOp = new long[]{ value };
+        mResults.add(result);
+
+        System.out.println(String.format(Locale.US, "%-24s %7d rows  %12d %s", name, rows, value, unit));
+    }
+
+    // write every result to <directory>/<suite>.json and return the file
+    File write(File directory) throws IOException {
+        if( !directory.isDirectory() && !directory.mkdirs() ){
+            throw new IOException("can't create " + directory);
+        }
+        File file = new File(directory, mSuite + ".json");
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(toJson());
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    String toJson(){
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"suite\": \"").append(mSuite).append("\",\n");
+        json.append("  \"timestamp\": ").append(System.currentTimeMillis()).append(",\n");
+        json.append("  \"java\": \"").append(System.getProperty("java.version")).append("\",\n");
+        json.append("  \"os\": \"").append(System.getProperty("os.name")).append("\",\n");
+        json.append("  \"benchmarks\": [");
+        for( int r = 0; r < mResults.size(); ++r ){
+            Result result = mResults.get(r);
+            long[] sorted = result.nanosPerOp.clone();
+            Arrays.sort(sorted);
+            long total = 0;
+            for( long nanos : sorted ){
+                total += nanos;
+            }
+
+            json.append(r == 0 ? "\n" : ",\n");
+            json.append("    {\"name\": \"").append(result.name).append("\"");
+            json.append(", \"rows\": ").append(result.rows);
+            json.append(", \"operationsPerIteration\": ").append(result.operations);
+            json.append(", \"iterations\": ").append(sorted.length);
+            json.append(", \"unit\": \"").append(result.unit).append("\"");
+            json.append(", \"min\": ").append(sorted[0]);
+            json.append(", \"mean\": ").append(total / sorted.length);
+            json.append(", \"p50\": ").append(sorted[sorted.length / 2]);
+            json.append(", \"p90\": ").append(sorted[(sorted.length - 1) * 9 / 10]);
+            json.append(", \"max\": ").append(sorted[sorted.length - 1]);
+            json.append("}");
+        }
+        json.append("\n  ]\n}\n");
+        return json.toString();
+    }
+}
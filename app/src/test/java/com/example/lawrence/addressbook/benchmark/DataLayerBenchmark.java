@@ -0,0 +1,405 @@
+package com.example.lawrence.addressbook.benchmark;
+
+import android.content.ContentValues;
+import android.content.pm.ProviderInfo;
+
+import android.database.Cursor;
+
+import android.net.Uri;
+
+import com.example.lawrence.addressbook.BuildConfig;
+import com.example.lawrence.addressbook.ContactSnapshot;
+import com.example.lawrence.addressbook.data.AddressBookContentProvider;
+import com.example.lawrence.addressbook.data.ContactProjection;
+import com.example.lawrence.addressbook.data.ContactQuery;
+import com.example.lawrence.addressbook.data.DatabaseDescription;
+import com.example.lawrence.addressbook.data.DatabaseDescription.Contact;
+import com.example.lawrence.addressbook.data.QueryPlanner;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Benchmarks AddressBookContentProvider on the local JVM, against datasets of
+ * 1k, 10k and 100k contacts: bulk insert against one insert() per contact,
+ * loading the whole list sorted by name COLLATE NOCASE, reading the list as a
+ * Cursor and as a ContactSnapshot
+ * (load time, binding every row bottom to top, and the memory each holds),
+ * counting contacts per state and zip (through the by_state and by_zip Uris,
+ * and by pulling every row and grouping in Java), structured ContactQuery
+ * queries (with their plan cached, planned every time, and as SQL with the values
+ * written in), single-contact lookup, update, insert and delete.
+ * Excluded from the normal unit tests; see app/build.gradle for how to run them.
+ * Each dataset's results are written to benchmark-results/data-layer-<rows>.json.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class DataLayerBenchmark {
+
+    // operations per iteration of the single-row benchmarks
+    private static final int ROW_OPERATIONS = 100;
+
+    // the same contacts every run, so runs can be compared
+    private static final long SEED = 42;
+
+    // states the contacts are spread over
+    private static final String[] STATES = { "CA", "IL", "NY", "TX", "WA" };
+
+    // database the dataset is loaded into one insert() at a time, next to the main one
+    private static final String INSERT_EACH_DATABASE = "data_layer_insert_each.db";
+
+    private AddressBookContentProvider mProvider;
+    private Random mRandom;
+
+    @Before
+    public void setUp() {
+        mProvider = new AddressBookContentProvider();
+        ProviderInfo info = new ProviderInfo();
+        info.authority = DatabaseDescription.AUTHORITY;
+        mProvider.attachInfo(RuntimeEnvironment.application, info); // calls onCreate()
+        mRandom = new Random(SEED);
+    }
+
+    @Test
+    public void dataLayer_1k() throws Exception {
+        run(1000);
+    }
+
+    @Test
+    public void dataLayer_10k() throws Exception {
+        run(10000);
+    }
+
+    @Test
+    public void dataLayer_100k() throws Exception {
+        run(100000);
+    }
+
+    private void run(final int rows) throws Exception {
+        BenchmarkRecorder recorder = new BenchmarkRecorder("data-layer-" + rows);
+
+        // load the dataset; timed once, since a second load would double it
+        final ContentValues[] contacts = makeContacts(rows);
+        recorder.measure("bulkInsert", rows, rows, 0, 1, new BenchmarkRecorder.Body() {
+            @Override
+            public void run(int iteration) {
+                assertEquals(rows, mProvider.bulkInsert(Contact.CONTENT_URI, contacts));
+            }
+        });
+        measureInsertEach(recorder, contacts);
+
+        // the contact list's query: every row, LIST projection, sorted ignoring case
+        recorder.measure("listLoadNoCase", rows, rows, new BenchmarkRecorder.Body() {
+            @Override
+            public void run(int iteration) {
+                Cursor cursor = mProvider.query(Contact.CONTENT_URI, ContactProjection.LIST,
+                    null, null, Contact.COLUMN_NAME + " COLLATE NOCASE ASC");
+                try {
+                    while( cursor.moveToNext() ){
+                        cursor.getString(ContactProjection.LIST_NAME);
+                    }
+                } finally {
+                    cursor.close();
+                }
+            }
+        });
+
+        measureListSources(recorder, rows);
+
+        // per-region counts: GROUP BY in SQLite against pulling every row and counting in Java
+        measureRegionCounts(recorder, rows, "countByState", Contact.BY_STATE_URI,
+            Contact.COLUMN_STATE, STATES.length);
+        measureRegionCounts(recorder, rows, "countByZip", Contact.BY_ZIP_URI,
+            Contact.COLUMN_ZIP, Math.min(rows, 1000));
+
+        measureStructuredQueries(recorder, rows);
+
+        // the detail screen's query for one contact
+        recorder.measure("lookupById", rows, ROW_OPERATIONS, new BenchmarkRecorder.Body() {
+            @Override
+            public void run(int iteration) {
+                for( int i = 0; i < ROW_OPERATIONS; ++i ){
+                    Cursor cursor = mProvider.query(Contact.buildContactUri(randomId(rows)),
+                        ContactProjection.DETAIL, null, null, null);
+                    try {
+                        assertEquals(1, cursor.getCount());
+                    } finally {
+                        cursor.close();
+                    }
+                }
+            }
+        });
+
+        recorder.measure("updateById", rows, ROW_OPERATIONS, new BenchmarkRecorder.Body() {
+            @Override
+            public void run(int iteration) {
+                ContentValues contentValues = new ContentValues();
+                for( int i = 0; i < ROW_OPERATIONS; ++i ){
+                    contentValues.put(Contact.COLUMN_PHONE, "555-" + mRandom.nextInt(10000000));
+                    assertEquals(1, mProvider.update(
+                        Contact.buildContactUri(randomId(rows)), contentValues, null, null));
+                }
+            }
+        });
+
+        recorder.measure("insert", rows, ROW_OPERATIONS, new BenchmarkRecorder.Body() {
+            @Override
+            public void run(int iteration) {
+                for( int i = 0; i < ROW_OPERATIONS; ++i ){
+                    Uri uri = mProvider.insert(Contact.CONTENT_URI,
+                        contacts[mRandom.nextInt(contacts.length)]);
+                    assertNotNull(uri);
+                }
+            }
+        });
+
+        // every iteration deletes a different block of existing contacts
+        recorder.measure("deleteById", rows, ROW_OPERATIONS, new BenchmarkRecorder.Body() {
+            @Override
+            public void run(int iteration) {
+                int first = iteration * ROW_OPERATIONS + 1;
+                for( int id = first; id < first + ROW_OPERATIONS; ++id ){
+                    assertEquals(1, mProvider.delete(Contact.buildContactUri(id), null, null));
+                }
+            }
+        });
+
+        File file = recorder.write(new File(System.getProperty("benchmark.output", "build/benchmark-results")));
+        System.out.println("wrote " + file);
+    }
+
+    // the dataset loaded as an app without bulkInsert() would: one insert() per contact,
+    // each its own transaction and notification. into a database of its own, so the
+    // main one still holds the dataset once for everything measured after this.
+    private void measureInsertEach(BenchmarkRecorder recorder, final ContentValues[] contacts) throws Exception {
+        mProvider.useDatabase(INSERT_EACH_DATABASE);
+        try {
+            recorder.measure("insertEach", contacts.length, contacts.length, 0, 1, new BenchmarkRecorder.Body() {
+                @Override
+                public void run(int iteration) {
+                    for( ContentValues contentValues : contacts ){
+                        assertNotNull(mProvider.insert(Contact.CONTENT_URI, contentValues));
+                    }
+                }
+            });
+        } finally {
+            mProvider.useDatabase(null);
+            RuntimeEnvironment.application.deleteDatabase(INSERT_EACH_DATABASE);
+        }
+    }
+
+    // the contact list as a Cursor (what ContactsLoader delivers) against a ContactSnapshot:
+    // loading it, binding every row from the bottom up, as a scroll back to the top
+    // does, and the bytes each holds per contact
+    private void measureListSources(BenchmarkRecorder recorder, final int rows) throws Exception {
+        recorder.measure("listSnapshotLoad", rows, rows, new BenchmarkRecorder.Body() {
+            @Override
+            public void run(int iteration) {
+                Cursor cursor = queryList();
+                try {
+                    assertEquals(rows, ContactSnapshot.read(cursor, new int[rows]).getCount());
+                } finally {
+                    cursor.close();
+                }
+            }
+        });
+
+        final Cursor cursor = queryList();
+        try {
+            recorder.measure("bindAllCursor", rows, rows, new BenchmarkRecorder.Body() {
+                @Override
+                public void run(int iteration) {
+                    for( int i = rows - 1; i >= 0; --i ){
+                        cursor.moveToPosition(i);
+                        cursor.getLong(ContactProjection.LIST_ID);
+                        cursor.getString(ContactProjection.LIST_NAME);
+                        cursor.getString(ContactProjection.LIST_PHOTO);
+                    }
+                }
+            });
+
+            final ContactSnapshot snapshot = ContactSnapshot.read(cursor, new int[rows]);
+            recorder.measure("bindAllSnapshot", rows, rows, new BenchmarkRecorder.Body() {
+                @Override
+                public void run(int iteration) {
+                    for( int i = rows - 1; i >= 0; --i ){
+                        snapshot.moveToPosition(i);
+                        snapshot.getId();
+                        snapshot.getName();
+                        snapshot.getPhoto();
+                    }
+                }
+            });
+
+            // the snapshot, plus the int[] of hashes its loader keeps for diffing
+            recorder.record("listSnapshotBytes", rows, "bytes", snapshot.getByteSize() + 16 + 4L * rows);
+
+            // the cursor's rows as CursorWindow stores them: a 4 byte row offset and a
+            // 12 byte field slot per column, plus each string as UTF-8 with a terminator.
+            // only up to a window's worth (2MB by default) of it is in memory at a time,
+            // in native memory; crossing out of the window refills it from SQLite.
+            Charset utf8 = Charset.forName("UTF-8");
+            long windowBytes = 0;
+            for( int i = 0; cursor.moveToPosition(i); ++i ){
+                windowBytes += 4 + 12 * ContactProjection.LIST.length;
+                String name = cursor.getString(ContactProjection.LIST_NAME);
+                String photo = cursor.getString(ContactProjection.LIST_PHOTO);
+                windowBytes += name == null ? 0 : name.getBytes(utf8).length + 1;
+                windowBytes += photo == null ? 0 : photo.getBytes(utf8).length + 1;
+            }
+            recorder.record("listCursorWindowBytes", rows, "bytes", windowBytes);
+
+            // plus ContactsLoader's _ids and hashes of the last list, on the heap
+            recorder.record("listCursorLoaderBytes", rows, "bytes", 2 * 16 + 12L * rows);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // the same shape of ContactQuery with different values: with its plan cached, planned
+    // again for every query, and as a selection with the values written into the SQL,
+    // which SQLite has to prepare again for every query
+    private void measureStructuredQueries(BenchmarkRecorder recorder, int rows) throws Exception {
+        final QueryPlanner planner = AddressBookContentProvider.getQueryPlanner();
+        int hits = planner.getHits();
+        int misses = planner.getMisses();
+
+        recorder.measure("structuredQueryCachedPlan", rows, ROW_OPERATIONS, new BenchmarkRecorder.Body() {
+            @Override
+            public void run(int iteration) {
+                for( int i = 0; i < ROW_OPERATIONS; ++i ){
+                    readAll(mProvider.query(structuredQuery(i).toUri(), ContactProjection.LIST, null, null, null));
+                }
+            }
+        });
+
+        recorder.measure("structuredQueryReplanned", rows, ROW_OPERATIONS, new BenchmarkRecorder.Body() {
+            @Override
+            public void run(int iteration) {
+                for( int i = 0; i < ROW_OPERATIONS; ++i ){
+                    planner.clear();
+                    readAll(mProvider.query(structuredQuery(i).toUri(), ContactProjection.LIST, null, null, null));
+                }
+            }
+        });
+
+        recorder.measure("literalSelectionQuery", rows, ROW_OPERATIONS, new BenchmarkRecorder.Body() {
+            @Override
+            public void run(int iteration) {
+                for( int i = 0; i < ROW_OPERATIONS; ++i ){
+                    int zip = 60000 + i * 7 % 1000;
+                    String selection = Contact.COLUMN_STATE + "='" + STATES[i % STATES.length] + "' AND " +
+                        Contact.COLUMN_ZIP + ">='" + zip + "' AND " + Contact.COLUMN_ZIP + "<='" + (zip + 50) + "'";
+                    readAll(mProvider.query(Contact.CONTENT_URI, ContactProjection.LIST, selection, null,
+                        Contact.COLUMN_NAME + " COLLATE NOCASE ASC LIMIT 20"));
+                }
+            }
+        });
+
+        recorder.record("structuredQueryPlanHits", rows, "count", planner.getHits() - hits);
+        recorder.record("structuredQueryPlanMisses", rows, "count", planner.getMisses() - misses);
+    }
+
+    // contacts in one state within a band of zip codes, first 20 by name
+    private static ContactQuery structuredQuery(int i) {
+        int zip = 60000 + i * 7 % 1000;
+        return new ContactQuery()
+            .whereEquals(Contact.COLUMN_STATE, STATES[i % STATES.length])
+            .whereRange(Contact.COLUMN_ZIP, String.valueOf(zip), String.valueOf(zip + 50))
+            .orderBy(Contact.COLUMN_NAME, true)
+            .limit(20);
+    }
+
+    private static void readAll(Cursor cursor) {
+        try {
+            while( cursor.moveToNext() ){
+                cursor.getString(ContactProjection.LIST_NAME);
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private Cursor queryList() {
+        return mProvider.query(Contact.CONTENT_URI, ContactProjection.LIST,
+            null, null, Contact.COLUMN_NAME + " COLLATE NOCASE ASC");
+    }
+
+    // time counting the contacts per value of column, both through regionUri and by
+    // reading the column of every contact; both must find `regions` regions
+    private void measureRegionCounts(BenchmarkRecorder recorder, int rows, String name,
+                                     final Uri regionUri, final String column, final int regions) throws Exception {
+        recorder.measure(name + "GroupBy", rows, rows, new BenchmarkRecorder.Body() {
+            @Override
+            public void run(int iteration) {
+                Cursor cursor = mProvider.query(regionUri, null, null, null, null);
+                try {
+                    int total = 0;
+                    int sizeColumn = cursor.getColumnIndexOrThrow(Contact.COLUMN_REGION_SIZE);
+                    while( cursor.moveToNext() ){
+                        total += cursor.getInt(sizeColumn);
+                    }
+                    assertEquals(regions, cursor.getCount());
+                    assertEquals(rows, total);
+                } finally {
+                    cursor.close();
+                }
+            }
+        });
+
+        recorder.measure(name + "PullAll", rows, rows, new BenchmarkRecorder.Body() {
+            @Override
+            public void run(int iteration) {
+                Map<String, Integer> counts = new HashMap<>();
+                Cursor cursor = mProvider.query(Contact.CONTENT_URI,
+                    new String[]{ column }, null, null, null);
+                try {
+                    while( cursor.moveToNext() ){
+                        String region = cursor.getString(0);
+                        Integer count = counts.get(region);
+                        counts.put(region, count == null ? 1 : count + 1);
+                    }
+                } finally {
+                    cursor.close();
+                }
+                assertEquals(regions, counts.size());
+            }
+        });
+    }
+
+    // _id of one of the contacts loaded by bulkInsert
+    private long randomId(int rows) {
+        return mRandom.nextInt(rows) + 1;
+    }
+
+    private ContentValues[] makeContacts(int rows) {
+        String[] firstNames = { "Ann", "bob", "Carla", "dmitri", "emile", "Fatima", "greg", "Hiro" };
+        ContentValues[] values = new ContentValues[rows];
+        for( int i = 0; i < rows; ++i ){
+            ContentValues contentValues = new ContentValues();
+            contentValues.put(Contact.COLUMN_NAME,
+                firstNames[mRandom.nextInt(firstNames.length)] + " " + Integer.toString(mRandom.nextInt(), 36));
+            contentValues.put(Contact.COLUMN_PHONE, "555-" + (1000000 + i));
+            contentValues.put(Contact.COLUMN_EMAIL, "contact" + i + "@example.com");
+            contentValues.put(Contact.COLUMN_STREET, i + " Main St");
+            contentValues.put(Contact.COLUMN_CITY, "Springfield");
+            contentValues.put(Contact.COLUMN_STATE, STATES[i % STATES.length]);
+            contentValues.put(Contact.COLUMN_ZIP, String.valueOf(60000 + i % 1000));
+            values[i] = contentValues;
+        }
+        return values;
+    }
+}
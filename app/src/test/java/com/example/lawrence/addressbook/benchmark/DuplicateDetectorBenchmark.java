@@ -0,0 +1,70 @@
+package com.example.lawrence.addressbook.benchmark;
+
+import com.example.lawrence.addressbook.data.DuplicateDetector;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Benchmarks DuplicateDetector.detect() over 200k contacts, 1 in 20 of them with a
+ * reworded copy, in ns per contact. Blocking should keep a scan this size to seconds.
+ * Excluded from the normal unit tests; see app/build.gradle for how to run them.
+ * Results are written to benchmark-results/duplicates-200000.json.
+ */
+public class DuplicateDetectorBenchmark {
+
+    private static final int CONTACTS = 200000;
+    private static final int ITERATIONS = 3;
+
+    // the same contacts every run, so runs can be compared
+    private static final long SEED = 7;
+
+    private static final String[] FIRST_NAMES =
+        { "john", "mary", "li", "ahmed", "olga", "carlos", "emma", "raj", "yuki", "sam" };
+
+    @Test
+    public void detect_200k() throws Exception {
+        BenchmarkRecorder recorder = new BenchmarkRecorder("duplicates-" + CONTACTS);
+
+        // a detector only detects once, so each iteration gets its own, filled beforehand
+        // so only detect() is timed
+        final DuplicateDetector[] detectors = new DuplicateDetector[ITERATIONS];
+        final int[] copies = new int[ITERATIONS];
+        for( int i = 0; i < ITERATIONS; ++i ){
+            detectors[i] = new DuplicateDetector();
+            copies[i] = addContacts(detectors[i], new Random(SEED));
+        }
+        recorder.measure("duplicateDetect", CONTACTS, CONTACTS, 0, ITERATIONS, new BenchmarkRecorder.Body() {
+            @Override
+            public void run(int iteration) {
+                assertTrue(detectors[iteration].detect().groupCount >= copies[iteration]);
+            }
+        });
+
+        File file = recorder.write(new File(System.getProperty("benchmark.output", "build/benchmark-results")));
+        System.out.println("wrote " + file);
+    }
+
+    // add CONTACTS contacts, 1 in 20 followed by a copy with its name uppercased, its phone
+    // written differently and no email; returns the copies added
+    private static int addContacts(DuplicateDetector detector, Random random) {
+        int copies = 0;
+        long id = 1;
+        while( id <= CONTACTS ){
+            String name = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " +
+                Integer.toString(random.nextInt(1 << 20), 36);
+            String phone = String.valueOf(2000000000L + random.nextInt(1000000000));
+            String email = Integer.toString(random.nextInt(), 36) + "@example.com";
+            detector.add(id++, name, phone, email);
+            if( random.nextInt(20) == 0 ){
+                detector.add(id++, name.toUpperCase(), "+1 " + phone, null);
+                ++copies;
+            }
+        }
+        return copies;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.lawrence.addressbook.benchmark;
+
+import com.example.lawrence.addressbook.data.VCardEntry;
+import com.example.lawrence.addressbook.data.VCardReader;
+import com.example.lawrence.addressbook.data.VCardWriter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Benchmarks VCardWriter and VCardReader streaming a 100k-card file, in ns per card,
+ * and records the file's size.
+ * Excluded from the normal unit tests; see app/build.gradle for how to run them.
+ * Results are written to benchmark-results/vcard-100000.json.
+ */
+public class VCardBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int CARDS = 100000;
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("contacts", ".vcf");
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void vCard_100k() throws Exception {
+        BenchmarkRecorder recorder = new BenchmarkRecorder("vcard-" + CARDS);
+
+        recorder.measure("vCardWrite", CARDS, CARDS, new BenchmarkRecorder.Body() {
+            @Override
+            public void run(int iteration) throws IOException {
+                writeCards();
+            }
+        });
+        recorder.record("vCardFileBytes", CARDS, "bytes", mFile.length());
+
+        recorder.measure("vCardRead", CARDS, CARDS, new BenchmarkRecorder.Body() {
+            @Override
+            public void run(int iteration) throws IOException {
+                assertEquals(CARDS, readCards());
+            }
+        });
+
+        File file = recorder.write(new File(System.getProperty("benchmark.output", "build/benchmark-results")));
+        System.out.println("wrote " + file);
+    }
+
+    // write CARDS cards to mFile
+    private void writeCards() throws IOException {
+        VCardEntry entry = new VCardEntry();
+        VCardWriter writer = new VCardWriter(new BufferedWriter(
+            new OutputStreamWriter(new FileOutputStream(mFile), UTF_8), 64 * 1024),
+            VCardWriter.VERSION_3_0);
+        try {
+            for( int i = 0; i < CARDS; ++i ){
+                entry.name = "Contact " + i;
+                entry.phone = "555-" + (1000000 + i);
+                entry.email = "contact" + i + "@example.com";
+                entry.street = i + " Main St";
+                entry.city = "Springfield";
+                entry.state = "IL";
+                entry.zip = String.valueOf(60000 + i % 1000);
+                writer.write(entry);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    // read every card in mFile and return how many there were
+    private int readCards() throws IOException {
+        VCardEntry entry = new VCardEntry();
+        int read = 0;
+        VCardReader reader = new VCardReader(new BufferedReader(
+            new InputStreamReader(new FileInputStream(mFile), UTF_8), 64 * 1024));
+        try {
+            while( reader.next(entry) ){
+                ++read;
+            }
+        } finally {
+            reader.close();
+        }
+        return read;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.lawrence.addressbook.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ContactNormalizerTest {
+
+    @Test
+    public void phonesKeepOnlyTheirDigits() {
+        assertEquals("5551234567", ContactNormalizer.normalizePhone("(555) 123-4567"));
+        assertEquals("5551234567", ContactNormalizer.normalizePhone("+1 555.123.4567"));
+        assertEquals("4420123456789", ContactNormalizer.normalizePhone("+44 20 1234 56789"));
+        assertNull(ContactNormalizer.normalizePhone("555-12"));
+        assertNull(ContactNormalizer.normalizePhone(null));
+    }
+
+    @Test
+    public void emailsIgnoreCaseSpacesAndTags() {
+        assertEquals("john.smith@example.com",
+            ContactNormalizer.normalizeEmail(" John.Smith+work@Example.COM "));
+        assertNull(ContactNormalizer.normalizeEmail("not an email"));
+        assertNull(ContactNormalizer.normalizeEmail("@example.com"));
+    }
+
+    @Test
+    public void namesLoseCaseAccentsAndPunctuation() {
+        assertEquals("jose smith", ContactNormalizer.normalizeName("  Jos\u00e9   SMITH "));
+        assertEquals("o brien mary ann", ContactNormalizer.normalizeName("O'Brien, Mary-Ann"));
+        assertNull(ContactNormalizer.normalizeName(" - "));
+    }
+
+    @Test
+    public void soundexMatchesTheStandardCodes() {
+        assertEquals("R163", ContactNormalizer.soundex("robert"));
+        assertEquals("R163", ContactNormalizer.soundex("rupert"));
+        assertEquals("A261", ContactNormalizer.soundex("ashcraft"));
+        assertEquals("T522", ContactNormalizer.soundex("tymczak"));
+        assertEquals("P236", ContactNormalizer.soundex("pfister"));
+        assertEquals("L000", ContactNormalizer.soundex("lee"));
+    }
+
+    @Test
+    public void phoneticKeysIgnoreWordOrderAndMiddleNames() {
+        String key = ContactNormalizer.phoneticKey("john smith");
+        assertEquals(key, ContactNormalizer.phoneticKey("smith john"));
+        assertEquals(key, ContactNormalizer.phoneticKey("jon a smyth"));
+    }
+}
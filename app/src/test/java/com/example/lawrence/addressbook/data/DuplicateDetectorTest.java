@@ -0,0 +1,124 @@
+package com.example.lawrence.addressbook.data;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DuplicateDetectorTest {
+
+    @Test
+    public void groupsContactsSharingAnEmail() {
+        DuplicateDetector detector = new DuplicateDetector();
+        detector.add(1, "J. Smith", null, "jsmith@example.com");
+        detector.add(2, "John Smith", "555-123-4567", "JSmith@Example.com");
+        detector.add(3, "Someone Else", null, "other@example.com");
+
+        Map<Long, Long> groups = groupsOf(detector.detect());
+        assertEquals(2, groups.size());
+        assertEquals(Long.valueOf(1), groups.get(1L));
+        assertEquals(Long.valueOf(1), groups.get(2L));
+    }
+
+    @Test
+    public void sharedPhoneNeedsSimilarNames() {
+        DuplicateDetector detector = new DuplicateDetector();
+        detector.add(1, "Jon Smith", "(555) 123-4567", null);
+        detector.add(2, "Smith, John", "+1 555 123 4567", null);
+        // same household phone, different person
+        detector.add(3, "Alice Wong", "555 123 4567", null);
+
+        Map<Long, Long> groups = groupsOf(detector.detect());
+        assertEquals(2, groups.size());
+        assertEquals(Long.valueOf(1), groups.get(2L));
+    }
+
+    @Test
+    public void sameNameWithDifferentPhonesIsNotADuplicate() {
+        DuplicateDetector detector = new DuplicateDetector();
+        detector.add(1, "John Smith", "555-123-4567", null);
+        detector.add(2, "John Smith", "555-987-6543", null);
+        detector.add(3, "John Smith", null, null);
+
+        // 3 matches both by name, which joins all three
+        Map<Long, Long> groups = groupsOf(detector.detect());
+        assertEquals(3, groups.size());
+
+        detector = new DuplicateDetector();
+        detector.add(1, "John Smith", "555-123-4567", null);
+        detector.add(2, "John Smith", "555-987-6543", null);
+        assertEquals(0, detector.detect().groupCount);
+    }
+
+    @Test
+    public void groupsAreTransitive() {
+        DuplicateDetector detector = new DuplicateDetector();
+        detector.add(5, "Mary Jones", "555-000-1111", null);
+        detector.add(7, "Mary Jones", null, "mary@example.com");
+        detector.add(9, "M Jones", null, "MARY@example.com");
+
+        DuplicateDetector.Result result = detector.detect();
+        assertEquals(1, result.groupCount);
+        Map<Long, Long> groups = groupsOf(result);
+        assertEquals(Long.valueOf(5), groups.get(9L));
+    }
+
+    @Test
+    public void cancelledDetectionReturnsNull() {
+        DuplicateDetector detector = new DuplicateDetector();
+        detector.add(1, "A", "5551234567", null);
+        detector.add(2, "A", "5551234567", null);
+        detector.cancel();
+        assertNull(detector.detect());
+    }
+
+    @Test
+    public void similarityScoresCloseNamesHigh() {
+        assertEquals(1.0, DuplicateDetector.similarity("john smith", "john smith"), 0);
+        assertTrue(DuplicateDetector.similarity("john smith", "jon smith") > DuplicateDetector.SAME_NAME);
+        assertTrue(DuplicateDetector.similarity("john smith", "alice wong") < DuplicateDetector.SIMILAR_NAME);
+    }
+
+    // 1 in 20 contacts has a reworded copy; every copy must be found among the rest.
+    // how long a large scan takes is measured by DuplicateDetectorBenchmark
+    @Test
+    public void findsRewordedCopiesAmongManyContacts() {
+        DuplicateDetector detector = new DuplicateDetector();
+        int copies = addContactsWithCopies(detector, 5000, new Random(7));
+        DuplicateDetector.Result result = detector.detect();
+        assertTrue(copies > 0);
+        assertTrue(result.groupCount >= copies);
+    }
+
+    // add `contacts` random contacts to detector, 1 in 20 followed by a copy with its
+    // name uppercased, its phone written differently and no email; returns the copies added
+    private static int addContactsWithCopies(DuplicateDetector detector, int contacts, Random random) {
+        String[] first = { "john", "mary", "li", "ahmed", "olga", "carlos", "emma", "raj", "yuki", "sam" };
+        int copies = 0;
+        long id = 1;
+        while( id <= contacts ){
+            String name = first[random.nextInt(first.length)] + " " + Integer.toString(random.nextInt(1 << 20), 36);
+            String phone = String.valueOf(2000000000L + random.nextInt(1000000000));
+            String email = Integer.toString(random.nextInt(), 36) + "@example.com";
+            detector.add(id++, name, phone, email);
+            if( random.nextInt(20) == 0 ){
+                detector.add(id++, name.toUpperCase(), "+1 " + phone, null);
+                ++copies;
+            }
+        }
+        return copies;
+    }
+
+    private static Map<Long, Long> groupsOf(DuplicateDetector.Result result) {
+        Map<Long, Long> groups = new HashMap<>();
+        for( int i = 0; i < result.contactIds.length; ++i ){
+            groups.put(result.contactIds[i], result.groupIds[i]);
+        }
+        return groups;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.lawrence.addressbook.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for( long nanos = 0; nanos < 8; ++nanos ){
+            histogram.record(nanos);
+        }
+        assertEquals(3, histogram.getPercentile(50));
+        assertEquals(7, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void percentilesAreWithinOneBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1..100000 microseconds
+        for( long micros = 1; micros <= 100000; ++micros ){
+            histogram.record(micros * 1000);
+        }
+        assertEquals(100000, histogram.getCount());
+        assertWithin(50000000L, histogram.getPercentile(50));
+        assertWithin(95000000L, histogram.getPercentile(95));
+        assertWithin(99000000L, histogram.getPercentile(99));
+        assertEquals(100000000L, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void bucketsCoverEveryValue() {
+        long[] values = { 8, 9, 15, 16, 1000, 123456789, Long.MAX_VALUE / 3, Long.MAX_VALUE };
+        for( long value : values ){
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(value + " above its bucket", value <= LatencyHistogram.highestValueOf(bucket));
+            assertTrue(value + " below its bucket", value > LatencyHistogram.highestValueOf(bucket - 1));
+        }
+    }
+
+    @Test
+    public void clearForgetsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        histogram.clear();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+
+    // percentiles are the top of their bucket: never below the real value, at most 12.5% above
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual + " < " + expected, actual >= expected);
+        assertTrue(actual + " too far above " + expected, actual <= expected + expected / 8);
+    }
+}
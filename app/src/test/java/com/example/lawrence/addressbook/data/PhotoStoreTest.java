@@ -0,0 +1,128 @@
+package com.example.lawrence.addressbook.data;
+
+import android.content.Context;
+
+import com.example.lawrence.addressbook.BuildConfig;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+// the files and cache directories need Robolectric
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class PhotoStoreTest {
+
+    private static final int THUMBNAIL_SIZE = 120;
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        deleteAll(PhotoStore.getDirectory(mContext));
+        deleteAll(PhotoStore.getThumbnailDirectory(mContext, THUMBNAIL_SIZE));
+    }
+
+    @Test
+    public void savedPhotoIsCompleteUnderItsOwnName() throws IOException {
+        byte[] image = new byte[20000]; // more than one copy buffer
+        for( int i = 0; i < image.length; ++i ){
+            image[i] = (byte) i;
+        }
+
+        String name = PhotoStore.save(mContext, new ByteArrayInputStream(image));
+        String other = PhotoStore.save(mContext, new ByteArrayInputStream(image));
+
+        assertNotEquals(name, other);
+        assertArrayEquals(image, readFile(PhotoStore.getFile(mContext, name)));
+
+        // the temporary files were renamed, not left behind
+        for( String file : PhotoStore.getDirectory(mContext).list() ){
+            assertFalse(file, file.endsWith(".tmp"));
+        }
+    }
+
+    @Test
+    public void sweepDeletesOnlyOldUnreferencedFiles() throws IOException {
+        long old = System.currentTimeMillis() - PhotoStore.SWEEP_GRACE_MILLIS - 60 * 1000;
+        File referenced = createPhoto("referenced", old);
+        File unreferenced = createPhoto("unreferenced", old);
+        File justSaved = createPhoto("just-saved", System.currentTimeMillis());
+
+        File thumbnails = PhotoStore.getThumbnailDirectory(mContext, THUMBNAIL_SIZE);
+        File referencedThumbnail = createFile(new File(thumbnails, "referenced"), old);
+        File unreferencedThumbnail = createFile(new File(thumbnails, "unreferenced"), old);
+
+        Set<String> names = Collections.singleton("referenced");
+        assertEquals(2, PhotoStore.sweep(mContext, names));
+
+        assertTrue(referenced.exists());
+        assertTrue(referencedThumbnail.exists());
+        assertTrue("a photo younger than the grace period was swept", justSaved.exists());
+        assertFalse(unreferenced.exists());
+        assertFalse(unreferencedThumbnail.exists());
+
+        // nothing left to sweep
+        assertEquals(0, PhotoStore.sweep(mContext, names));
+    }
+
+    @Test
+    public void sweepWithoutPhotosDeletesNothing() {
+        assertEquals(0, PhotoStore.sweep(mContext, Collections.<String>emptySet()));
+    }
+
+    private File createPhoto(String name, long lastModified) throws IOException {
+        return createFile(PhotoStore.getFile(mContext, name), lastModified);
+    }
+
+    private static File createFile(File file, long lastModified) throws IOException {
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(1);
+        } finally {
+            out.close();
+        }
+        assertTrue(file.setLastModified(lastModified));
+        return file;
+    }
+
+    private static void deleteAll(File directory){
+        File[] files = directory.listFiles();
+        if( files != null ){
+            for( File file : files ){
+                file.delete();
+            }
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(bytes);
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+}
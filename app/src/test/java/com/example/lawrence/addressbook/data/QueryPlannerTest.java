@@ -0,0 +1,36 @@
+package com.example.lawrence.addressbook.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link QueryPlanner}'s prefix ranges.
+ */
+public class QueryPlannerTest {
+
+    @Test
+    public void upperBoundBumpsTheLastChar() {
+        assertEquals("Jp", QueryPlanner.prefixUpperBound("Jo", false));
+        assertEquals("6061", QueryPlanner.prefixUpperBound("6060", false));
+    }
+
+    @Test
+    public void noCaseUpperBoundIsLowercase() {
+        // NOCASE compares "JOHN" as "john", which must sort below the bound
+        assertEquals("jp", QueryPlanner.prefixUpperBound("JO", true));
+        assertEquals("j{", QueryPlanner.prefixUpperBound("jZ", true));
+    }
+
+    @Test
+    public void noCaseUpperBoundSkipsUppercaseLetters() {
+        // '@' + 1 is 'A', which NOCASE compares as 'a'; '[' is the next char it really sees
+        assertEquals("j[", QueryPlanner.prefixUpperBound("j@", true));
+        assertEquals("jA", QueryPlanner.prefixUpperBound("j@", false));
+    }
+
+    @Test
+    public void trailingMaxCharsAreDropped() {
+        assertEquals("b", QueryPlanner.prefixUpperBound("a\uffff\uffff", false));
+    }
+}
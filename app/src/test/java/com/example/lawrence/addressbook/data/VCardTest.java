@@ -0,0 +1,136 @@
+package com.example.lawrence.addressbook.data;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link VCardReader} and {@link VCardWriter}.
+ */
+public class VCardTest {
+
+    @Test
+    public void roundTripKeepsEveryField() throws Exception {
+        VCardEntry written = entry(
+            "Doe, Jane; \"JD\"", "+1 (555) 010-0000", "jane@example.com",
+            "1 Main St\nApt 2", "Springfield", "IL", "62701");
+
+        for( String version : new String[]{ VCardWriter.VERSION_3_0, VCardWriter.VERSION_4_0 } ){
+            StringWriter out = new StringWriter();
+            VCardWriter writer = new VCardWriter(out, version);
+            writer.write(written);
+            writer.flush();
+
+            VCardReader reader = new VCardReader(new StringReader(out.toString()));
+            VCardEntry read = new VCardEntry();
+            assertTrue(reader.next(read));
+            assertEntryEquals(written, read);
+            assertFalse(reader.next(read));
+        }
+    }
+
+    @Test
+    public void readsFoldedLinesGroupsAndStructuredNames() throws Exception {
+        String card =
+            "BEGIN:VCARD\r\n" +
+            "VERSION:4.0\r\n" +
+            "N:Public;John;Quinlan;Mr.;Esq.\r\n" +
+            "item1.TEL;TYPE=\"work,voice\";VALUE=uri:tel:+1-555-555-\r\n" +
+            " 5555\r\n" +
+            "EMAIL;TYPE=home:john@example.com\r\n" +
+            "EMAIL;TYPE=work:second@example.com\r\n" +
+            "ADR;TYPE=home:;;123 Main\\; Street;Any Town;CA;91921-1234;U.S.A.\r\n" +
+            "NOTE:ignored\r\n" +
+            "END:VCARD\r\n";
+
+        VCardReader reader = new VCardReader(new StringReader(card));
+        VCardEntry entry = new VCardEntry();
+        assertTrue(reader.next(entry));
+        assertEquals("Mr. John Quinlan Public Esq.", entry.name);
+        assertEquals("+1-555-555-5555", entry.phone);
+        assertEquals("john@example.com", entry.email);
+        assertEquals("123 Main; Street", entry.street);
+        assertEquals("Any Town", entry.city);
+        assertEquals("CA", entry.state);
+        assertEquals("91921-1234", entry.zip);
+    }
+
+    @Test
+    public void writerFoldsLongLines() throws Exception {
+        StringBuilder longName = new StringBuilder();
+        for( int i = 0; i < 40; ++i ){
+            longName.append("name").append(i).append(' ');
+        }
+        VCardEntry written = entry(longName.toString().trim(), null, null, null, null, null, null);
+
+        StringWriter out = new StringWriter();
+        VCardWriter writer = new VCardWriter(out, VCardWriter.VERSION_3_0);
+        writer.write(written);
+        writer.flush();
+
+        for( String line : out.toString().split("\r\n") ){
+            assertTrue(line, line.length() <= 75);
+        }
+
+        VCardEntry read = new VCardEntry();
+        assertTrue(new VCardReader(new StringReader(out.toString())).next(read));
+        assertEquals(written.name, read.name);
+    }
+
+    @Test
+    public void skipsTruncatedLastCard() throws Exception {
+        String cards =
+            "BEGIN:VCARD\nVERSION:3.0\nFN:First\nEND:VCARD\n" +
+            "BEGIN:VCARD\nVERSION:3.0\nFN:Cut off";
+
+        VCardReader reader = new VCardReader(new StringReader(cards));
+        VCardEntry entry = new VCardEntry();
+        assertTrue(reader.next(entry));
+        assertEquals("First", entry.name);
+        assertFalse(reader.next(entry));
+        assertNull(entry.name);
+    }
+
+    @Test
+    public void readsLowerCasePropertiesWhateverTheDefaultLocale() throws Exception {
+        String card = "begin:vcard\nversion:3.0\nfn:Ivan\nemail:ivan@example.com\nend:vcard\n";
+
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            VCardEntry entry = new VCardEntry();
+            assertTrue(new VCardReader(new StringReader(card)).next(entry));
+            assertEquals("Ivan", entry.name);
+            assertEquals("ivan@example.com", entry.email);
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    private static VCardEntry entry(String name, String phone, String email,
+                                    String street, String city, String state, String zip) {
+        VCardEntry entry = new VCardEntry();
+        entry.name = name;
+        entry.phone = phone;
+        entry.email = email;
+        entry.street = street;
+        entry.city = city;
+        entry.state = state;
+        entry.zip = zip;
+        return entry;
+    }
+
+    private static void assertEntryEquals(VCardEntry expected, VCardEntry actual) {
+        assertEquals(expected.name, actual.name);
+        assertEquals(expected.phone, actual.phone);
+        assertEquals(expected.email, actual.email);
+        assertEquals(expected.street, actual.street);
+        assertEquals(expected.city, actual.city);
+        assertEquals(expected.state, actual.state);
+        assertEquals(expected.zip, actual.zip);
+    }
+}